@@ -145,10 +145,7 @@ open class LookupStorage(
     }
 
     private fun doRemoveGarbage() {
-        for (hash in lookupMap.keys) {
-            lookupMap[hash] = lookupMap[hash]!!.filter { it in idToFile }.toSet()
-        }
-
+        // ids of removed files are not present in oldIdToNewId, so lookups are filtered and remapped in a single pass below
         val oldFileToId = fileToId.toMap()
         val oldIdToNewId = HashMap<Int, Int>(oldFileToId.size)
         idToFile.clean()
@@ -25,6 +25,7 @@ import java.io.DataInput
 import java.io.DataInputStream
 import java.io.DataOutput
 import java.io.File
+import java.io.IOException
 import java.util.*
 
 object LookupSymbolKeyDescriptor : KeyDescriptor<LookupSymbolKey> {
@@ -200,3 +201,65 @@ open class CollectionExternalizer<T>(
 object StringCollectionExternalizer : CollectionExternalizer<String>(EnumeratorStringDescriptor(), { HashSet() })
 
 object IntCollectionExternalizer : CollectionExternalizer<Int>(IntExternalizer, { HashSet() })
+
+/**
+ * Stores a set of non-negative ints (e.g. file ids) as a sorted list of varint-encoded deltas.
+ * Values are read back into a primitive array, which takes several times less memory than a set of boxed ints.
+ */
+object DeltaEncodedIntCollectionExternalizer : DataExternalizer<Collection<Int>> {
+    // Distinguishes the format from a plain sequence of ints, whose first byte is zero for ids below 2^24
+    private const val FORMAT_MARKER = 1
+
+    override fun save(output: DataOutput, value: Collection<Int>) {
+        val sorted = value.toIntArray()
+        sorted.sort()
+
+        var size = 0
+        for (i in sorted.indices) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size++] = sorted[i]
+            }
+        }
+
+        output.writeByte(FORMAT_MARKER)
+        output.writeVarInt(size)
+        var previous = 0
+        for (i in 0 until size) {
+            output.writeVarInt(sorted[i] - previous)
+            previous = sorted[i]
+        }
+    }
+
+    override fun read(input: DataInput): Collection<Int> {
+        val marker = input.readByte().toInt()
+        if (marker != FORMAT_MARKER) throw IOException("Unexpected int collection format: $marker")
+
+        val result = IntArray(input.readVarInt())
+        var previous = 0
+        for (i in result.indices) {
+            previous += input.readVarInt()
+            result[i] = previous
+        }
+        return result.asList()
+    }
+
+    private fun DataOutput.writeVarInt(value: Int) {
+        var remaining = value
+        while (remaining and 0x7F.inv() != 0) {
+            writeByte((remaining and 0x7F) or 0x80)
+            remaining = remaining ushr 7
+        }
+        writeByte(remaining)
+    }
+
+    private fun DataInput.readVarInt(): Int {
+        var result = 0
+        var shift = 0
+        while (true) {
+            val byte = readByte().toInt()
+            result = result or ((byte and 0x7F) shl shift)
+            if (byte and 0x80 == 0) return result
+            shift += 7
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.*
+
+class DeltaEncodedIntCollectionExternalizerTest {
+    @Test
+    fun testEmpty() {
+        assertEquals(emptyList<Int>(), saveAndRead(emptySet()))
+    }
+
+    @Test
+    fun testSortsAndRemovesDuplicates() {
+        assertEquals(listOf(0, 1, 5, 127, 128, 300), saveAndRead(listOf(300, 5, 128, 0, 5, 127, 1, 300)))
+    }
+
+    @Test
+    fun testLargeValues() {
+        val values = listOf(Int.MAX_VALUE, 1 shl 14, (1 shl 21) + 1, 1 shl 28, 42)
+        assertEquals(values.sorted(), saveAndRead(values))
+    }
+
+    @Test(expected = IOException::class)
+    fun testRejectsPlainIntFormat() {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { output ->
+            IntCollectionExternalizer.save(output, listOf(1, 2, 3))
+        }
+        DeltaEncodedIntCollectionExternalizer.read(DataInputStream(ByteArrayInputStream(bytes.toByteArray())))
+    }
+
+    private fun saveAndRead(values: Collection<Int>): Collection<Int> {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { output ->
+            DeltaEncodedIntCollectionExternalizer.save(output, values)
+        }
+        return DeltaEncodedIntCollectionExternalizer.read(DataInputStream(ByteArrayInputStream(bytes.toByteArray())))
+    }
+}
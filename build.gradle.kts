@@ -152,6 +152,7 @@ extra["versions.jsr305"] = "1.3.9"
 extra["versions.jansi"] = "1.16"
 extra["versions.jline"] = "3.3.1"
 extra["versions.junit"] = "4.12"
+extra["versions.org.openjdk.jmh"] = "1.21"
 extra["versions.javaslang"] = "2.0.6"
 extra["versions.ant"] = "1.8.2"
 extra["versions.android"] = "2.3.1"
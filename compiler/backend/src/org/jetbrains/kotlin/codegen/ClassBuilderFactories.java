@@ -94,7 +94,23 @@ public class ClassBuilderFactories {
     }
     
     @NotNull
-    public static ClassBuilderFactory BINARIES = new ClassBuilderFactory() {
+    public static ClassBuilderFactory BINARIES = new BinariesClassBuilderFactory(true);
+
+    /**
+     * Same as {@link #BINARIES}, but stack map frames are not computed, which saves a data flow analysis of every method by ASM.
+     * Frames are optional only in class files of version 50.0 (JVM target 1.6): the JVM falls back to verification by type inference
+     * for such classes, which makes their loading slower. Tools which convert bytecode to dex ignore frames anyway.
+     */
+    @NotNull
+    public static ClassBuilderFactory BINARIES_WITHOUT_FRAMES = new BinariesClassBuilderFactory(false);
+
+    private static class BinariesClassBuilderFactory implements ClassBuilderFactory {
+        private final boolean computeFrames;
+
+        private BinariesClassBuilderFactory(boolean computeFrames) {
+            this.computeFrames = computeFrames;
+        }
+
         @NotNull
         @Override
         public ClassBuilderMode getClassBuilderMode() {
@@ -104,7 +120,9 @@ public class ClassBuilderFactories {
         @NotNull
         @Override
         public ClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-            return new AbstractClassBuilder.Concrete(new BinaryClassWriter());
+            return new AbstractClassBuilder.Concrete(
+                    computeFrames ? new BinaryClassWriter() : new BinaryClassWriter(ClassWriter.COMPUTE_MAXS)
+            );
         }
 
         @Override
@@ -120,14 +138,18 @@ public class ClassBuilderFactories {
 
         @Override
         public void close() {}
-    };
+    }
 
     private ClassBuilderFactories() {
     }
 
     private static class BinaryClassWriter extends ClassWriter {
         public BinaryClassWriter() {
-            super(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+            this(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        }
+
+        public BinaryClassWriter(int flags) {
+            super(flags);
         }
 
         @Override
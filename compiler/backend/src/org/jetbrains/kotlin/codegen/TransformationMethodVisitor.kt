@@ -37,7 +37,7 @@ abstract class TransformationMethodVisitor(
     api: Int = Opcodes.API_VERSION
 ) : MethodVisitor(api) {
 
-    private val methodNode = MethodNode(access, name, desc, signature, exceptions).apply {
+    protected val methodNode = MethodNode(access, name, desc, signature, exceptions).apply {
         localVariables = ArrayList(5)
     }
 
@@ -65,11 +65,30 @@ abstract class TransformationMethodVisitor(
 
         super.visitEnd()
 
+        onMethodNodeFinished()
+    }
+
+    /**
+     * Called when the method node is complete. By default, the node is transformed and written to the delegate immediately.
+     * Overrides may do it later, possibly transforming on another thread, but must call [transform] before [emit]
+     */
+    protected open fun onMethodNodeFinished() {
+        transform()
+        emit()
+    }
+
+    protected fun transform() {
         try {
             if (shouldBeTransformed(methodNode)) {
                 performTransformations(methodNode)
             }
+        } catch (t: Throwable) {
+            throw CompilationException("Couldn't transform method node:\n" + methodNode.nodeText, t, null)
+        }
+    }
 
+    protected fun emit() {
+        try {
             methodNode.accept(EndIgnoringMethodVisitorDecorator(Opcodes.API_VERSION, delegate))
 
 
@@ -19,14 +19,81 @@ package org.jetbrains.kotlin.codegen.inline
 import com.intellij.util.containers.SLRUMap
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.org.objectweb.asm.commons.Method
+import java.security.MessageDigest
+import java.util.*
 
 data class MethodId(val ownerInternalName: String, val method: Method)
 
 class InlineCache {
-    val classBytes: SLRUMap<ClassId, ByteArray> = SLRUMap(30, 20)
+    val classBytes: SLRUMap<ClassId, CompiledClassBytes> = SLRUMap(30, 20)
     val methodNodeById: SLRUMap<MethodId, SMAPAndMethodNode> = SLRUMap(60, 50)
 }
 
+class CompiledClassBytes(val bytes: ByteArray) {
+    val contentHash: String by lazy(LazyThreadSafetyMode.NONE) {
+        MessageDigest.getInstance("MD5").digest(bytes).joinToString("") { "%02x".format(it) }
+    }
+}
+
+/**
+ * Method nodes of inline functions read from compiled classes, shared by all compilations in the process:
+ * by modules generated in parallel, and by subsequent compilations in the daemon.
+ *
+ * Entries are addressed by the content of the class file, so different versions of the same class used by different
+ * compilations never clash. Cached nodes are shared between threads and must only be copied, see `InlineCodegen.cloneMethodNode`.
+ * The cache is bounded by the total number of instructions of the cached methods, which is derived from the max heap size.
+ */
+class CompiledInlineMethodCache(private val maxTotalInstructions: Long) {
+    private data class Key(val classContentHash: String, val classInternalName: String, val method: Method)
+
+    private val entries = LinkedHashMap<Key, SMAPAndMethodNode>(256, 0.75f, true)
+    private var totalInstructions = 0L
+
+    fun getOrCreate(
+        classBytes: CompiledClassBytes,
+        classInternalName: String,
+        method: Method,
+        create: () -> SMAPAndMethodNode?
+    ): SMAPAndMethodNode? {
+        val key = Key(classBytes.contentHash, classInternalName, method)
+        synchronized(this) {
+            entries[key]?.let { return it }
+        }
+
+        // The method is read outside of the lock. If several threads read the same method, the first result is kept
+        val result = create() ?: return null
+        synchronized(this) {
+            entries[key]?.let { return it }
+            entries[key] = result
+            totalInstructions += result.node.instructions.size()
+
+            val iterator = entries.values.iterator()
+            while (totalInstructions > maxTotalInstructions && iterator.hasNext()) {
+                val eldest = iterator.next()
+                if (eldest === result) break
+                totalInstructions -= eldest.node.instructions.size()
+                iterator.remove()
+            }
+        }
+        return result
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        totalInstructions = 0
+    }
+
+    companion object {
+        // Estimated retained size of an instruction of a cached method node, including labels, line numbers and local variables
+        private const val BYTES_PER_INSTRUCTION = 64
+
+        // Up to 1/64 of the max heap size
+        @JvmStatic
+        val shared = CompiledInlineMethodCache(Runtime.getRuntime().maxMemory() / 64 / BYTES_PER_INSTRUCTION)
+    }
+}
+
 inline fun <K, V> SLRUMap<K, V>.getOrPut(key: K, defaultValue: () -> V): V {
     val value = get(key)
     return if (value == null) {
@@ -585,9 +585,10 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
             return (directMember as? ImportedFromObjectCallableDescriptor<*>)?.callableFromObject ?: directMember
         }
 
-        private fun cloneMethodNode(methodNode: MethodNode): MethodNode {
+        // Nodes of compiled inline functions are shared between threads (see CompiledInlineMethodCache), and copying mutates labels
+        private fun cloneMethodNode(methodNode: MethodNode): MethodNode = synchronized(methodNode) {
             methodNode.instructions.resetLabels()
-            return MethodNode(
+            MethodNode(
                 Opcodes.API_VERSION, methodNode.access, methodNode.name, methodNode.desc, methodNode.signature,
                 ArrayUtil.toStringArray(methodNode.exceptions)
             ).also(methodNode::accept)
@@ -615,21 +616,26 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
 
             val containerId = containingClasses.implClassId
 
-            val bytes = state.inlineCache.classBytes.getOrPut(containerId) {
-                findVirtualFile(state, containerId)?.contentsToByteArray()
-                    ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
+            val classBytes = state.inlineCache.classBytes.getOrPut(containerId) {
+                CompiledClassBytes(
+                    findVirtualFile(state, containerId)?.contentsToByteArray()
+                        ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
+                )
             }
 
-            val methodNode =
-                getMethodNode(bytes, asmMethod.name, asmMethod.descriptor, AsmUtil.asmTypeByClassId(containerId)) ?: return null
+            val classType = AsmUtil.asmTypeByClassId(containerId)
+            return CompiledInlineMethodCache.shared.getOrCreate(classBytes, classType.internalName, asmMethod) {
+                val methodNode = getMethodNode(classBytes.bytes, asmMethod.name, asmMethod.descriptor, classType)
+                    ?: return@getOrCreate null
 
-            // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
-            // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
-            if (isLegacySuspendInlineFunction(callableDescriptor)) {
-                insertLegacySuspendInlineMarks(methodNode.node)
-            }
+                // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
+                // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
+                if (isLegacySuspendInlineFunction(callableDescriptor)) {
+                    insertLegacySuspendInlineMarks(methodNode.node)
+                }
 
-            return methodNode
+                methodNode
+            }
         }
 
         private fun isBuiltInArrayIntrinsic(callableDescriptor: CallableMemberDescriptor): Boolean {
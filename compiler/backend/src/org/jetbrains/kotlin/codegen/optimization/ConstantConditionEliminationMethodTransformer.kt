@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.codegen.optimization
 
 import org.jetbrains.kotlin.codegen.inline.insnText
 import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.codegen.optimization.common.SparseMethodAnalyzer
 import org.jetbrains.kotlin.codegen.optimization.common.StrictBasicValue
 import org.jetbrains.kotlin.codegen.optimization.fixStack.peek
 import org.jetbrains.kotlin.codegen.optimization.fixStack.top
@@ -49,11 +50,11 @@ class ConstantConditionEliminationMethodTransformer : MethodTransformer() {
 
         private fun collectRewriteActions(): List<() -> Unit> =
             arrayListOf<() -> Unit>().also { actions ->
-                val frames = analyze(internalClassName, methodNode, ConstantPropagationInterpreter())
+                val frames = SparseMethodAnalyzer(internalClassName, methodNode, ConstantPropagationInterpreter()).analyze()
                 val insns = methodNode.instructions.toArray()
-                for (i in frames.indices) {
-                    val frame = frames[i] ?: continue
+                for (i in insns.indices) {
                     val insn = insns[i] as? JumpInsnNode ?: continue
+                    val frame = frames[i] ?: continue
                     when (insn.opcode) {
                         in Opcodes.IFEQ..Opcodes.IFLE ->
                             tryRewriteComparisonWithZero(insn, frame, actions)
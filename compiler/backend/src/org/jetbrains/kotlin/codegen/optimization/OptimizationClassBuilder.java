@@ -24,13 +24,20 @@ import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 
+import java.util.concurrent.ForkJoinPool;
+
 public class OptimizationClassBuilder extends DelegatingClassBuilder {
     private final ClassBuilder delegate;
     private final GenerationState generationState;
+    @Nullable
+    private final ParallelMethodTransformations parallelTransformations;
 
     public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull GenerationState generationState) {
         this.delegate = delegate;
         this.generationState = generationState;
+
+        ForkJoinPool pool = generationState.getMethodOptimizationPool();
+        this.parallelTransformations = pool != null ? new ParallelMethodTransformations(pool) : null;
     }
 
     @NotNull
@@ -51,7 +58,15 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
     ) {
         return new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
-                generationState, access, name, desc, signature, exceptions
+                generationState, access, name, desc, signature, exceptions, parallelTransformations
         );
     }
+
+    @Override
+    public void done() {
+        if (parallelTransformations != null) {
+            parallelTransformations.emitAll();
+        }
+        super.done();
+    }
 }
@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.codegen.optimization
 
 import org.jetbrains.kotlin.codegen.TransformationMethodVisitor
+import org.jetbrains.kotlin.codegen.optimization.boxing.InlineClassUnboxedTypes
 import org.jetbrains.kotlin.codegen.optimization.boxing.PopBackwardPropagationTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantBoxingMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.StackPeepholeOptimizationsTransformer
@@ -34,22 +35,30 @@ class OptimizationMethodVisitor(
     name: String,
     desc: String,
     signature: String?,
-    exceptions: Array<String>?
+    exceptions: Array<String>?,
+    private val parallelTransformations: ParallelMethodTransformations?
 ) : TransformationMethodVisitor(delegate, access, name, desc, signature, exceptions) {
     private val constructorCallNormalizationTransformer =
         UninitializedStoresMethodTransformer(generationState.constructorCallNormalizationMode)
 
+    private val disableOptimization = generationState.disableOptimization
+
+    // Transformations may run on a thread pool (see ParallelMethodTransformations), while descriptors and the type mapper
+    // of the generation state may only be used on the codegen thread. In that case the inline classes used by the method
+    // are resolved on the codegen thread before the method is submitted.
+    private var inlineClasses = InlineClassUnboxedTypes.resolving(generationState)
+
     val normalizationMethodTransformer = CompositeMethodTransformer(
         FixStackWithLabelNormalizationMethodTransformer(),
         MethodVerifier("AFTER mandatory stack transformations")
     )
 
-    val optimizationTransformer = CompositeMethodTransformer(
+    private fun createOptimizationTransformer() = CompositeMethodTransformer(
         CapturedVarsOptimizationMethodTransformer(),
-        RedundantNullCheckMethodTransformer(generationState),
+        RedundantNullCheckMethodTransformer(inlineClasses),
         RedundantCheckCastEliminationMethodTransformer(),
         ConstantConditionEliminationMethodTransformer(),
-        RedundantBoxingMethodTransformer(generationState),
+        RedundantBoxingMethodTransformer(inlineClasses),
         StackPeepholeOptimizationsTransformer(),
         PopBackwardPropagationTransformer(),
         DeadCodeEliminationMethodTransformer(),
@@ -58,12 +67,38 @@ class OptimizationMethodVisitor(
         MethodVerifier("AFTER optimizations")
     )
 
+    // Optimizations for methods which are too large for the full optimization pipeline.
+    // These transformers either do not analyze frames or use SparseMethodAnalyzer, which only keeps frames of basic block entries.
+    val largeMethodOptimizationTransformer = CompositeMethodTransformer(
+        RedundantCheckCastEliminationMethodTransformer(),
+        ConstantConditionEliminationMethodTransformer(),
+        StackPeepholeOptimizationsTransformer(),
+        DeadCodeEliminationMethodTransformer(),
+        RedundantGotoMethodTransformer(),
+        RedundantNopsCleanupMethodTransformer()
+    )
+
+    override fun onMethodNodeFinished() {
+        if (parallelTransformations != null) {
+            if (!disableOptimization) {
+                inlineClasses = InlineClassUnboxedTypes.snapshot(generationState, methodNode)
+            }
+            parallelTransformations.submit(this::transform, this::emit)
+        } else {
+            super.onMethodNodeFinished()
+        }
+    }
+
     override fun performTransformations(methodNode: MethodNode) {
         normalizationMethodTransformer.transform("fake", methodNode)
         constructorCallNormalizationTransformer.transform("fake", methodNode)
 
-        if (canBeOptimized(methodNode) && !generationState.disableOptimization) {
-            optimizationTransformer.transform("fake", methodNode)
+        if (!disableOptimization) {
+            if (canBeOptimized(methodNode)) {
+                createOptimizationTransformer().transform("fake", methodNode)
+            } else {
+                largeMethodOptimizationTransformer.transform("fake", methodNode)
+            }
         }
 
         DeadCodeEliminationMethodTransformer().transform("fake", methodNode)
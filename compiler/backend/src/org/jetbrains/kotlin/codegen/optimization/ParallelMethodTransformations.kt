@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+
+/**
+ * Transforms finished methods of a class on a thread pool, and writes them to the class when the class is done.
+ *
+ * Transformations of a method only work with its own method node and must not use descriptors or the type mapper of the generation
+ * state, which are not thread-safe (see [OptimizationMethodVisitor]). Writing is not thread-safe either (all methods of a class share
+ * the constant pool of the class writer), so it is done on the codegen thread in [emitAll], in the order in which methods were finished.
+ *
+ * The position of a method in the class file is defined when it is created, so methods and their code are the same as in the sequential
+ * mode. But constants used by method bodies are added to the constant pool later than in the sequential mode, after the other members
+ * of the class, so the constant pool order, and hence the bytes of the class file, may differ.
+ */
+class ParallelMethodTransformations(private val executor: ExecutorService) {
+    private class PendingMethod(val transformation: Future<*>, val emit: () -> Unit)
+
+    private val pending = ArrayList<PendingMethod>()
+
+    fun submit(transform: () -> Unit, emit: () -> Unit) {
+        pending.add(PendingMethod(executor.submit(transform), emit))
+    }
+
+    fun emitAll() {
+        try {
+            for (method in pending) {
+                try {
+                    method.transformation.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+                method.emit()
+            }
+        } finally {
+            pending.forEach { it.transformation.cancel(false) }
+            pending.clear()
+        }
+    }
+}
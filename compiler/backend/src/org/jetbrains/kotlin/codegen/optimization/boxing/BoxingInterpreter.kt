@@ -21,7 +21,6 @@ import org.jetbrains.kotlin.codegen.AsmUtil
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
 import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
 import org.jetbrains.kotlin.codegen.optimization.common.StrictBasicValue
-import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.resolve.jvm.AsmTypes
@@ -36,7 +35,7 @@ import java.util.*
 
 open class BoxingInterpreter(
     private val insnList: InsnList,
-    private val generationState: GenerationState
+    private val inlineClasses: InlineClassUnboxedTypes
 ) : OptimizationBasicInterpreter() {
     private val boxingPlaces = HashMap<Int, BoxedBasicValue>()
 
@@ -46,7 +45,7 @@ open class BoxingInterpreter(
         progressionIterator: ProgressionIteratorBasicValue?
     ): BasicValue =
         boxingPlaces.getOrPut(insnList.indexOf(insn)) {
-            val boxedBasicValue = CleanBoxedValue(type, insn, progressionIterator, generationState)
+            val boxedBasicValue = CleanBoxedValue(type, insn, progressionIterator, inlineClasses)
             onNewBoxedValue(boxedBasicValue)
             boxedBasicValue
         }
@@ -66,7 +65,7 @@ open class BoxingInterpreter(
         val firstArg = values.firstOrNull() ?: return value
 
         return when {
-            insn.isBoxing(generationState) -> {
+            insn.isBoxing(inlineClasses) -> {
                 /*
                 * It's possible to have chain of several boxings and it's important to retain these boxing methods, consider:
                 *
@@ -82,7 +81,7 @@ open class BoxingInterpreter(
                 values.markBoxedArgumentValues()
                 createNewBoxing(insn, value.type, null)
             }
-            insn.isUnboxing(generationState) && firstArg is BoxedBasicValue -> {
+            insn.isUnboxing(inlineClasses) && firstArg is BoxedBasicValue -> {
                 onUnboxing(insn, firstArg, value.type)
                 value
             }
@@ -93,7 +92,7 @@ open class BoxingInterpreter(
                     ?: throw AssertionError("firstArg should be progression iterator")
                 createNewBoxing(insn, progressionIterator.boxedElementType, progressionIterator)
             }
-            insn.isAreEqualIntrinsicForSameTypedBoxedValues(values) && canValuesBeUnboxedForAreEqual(values, generationState) -> {
+            insn.isAreEqualIntrinsicForSameTypedBoxedValues(values) && canValuesBeUnboxedForAreEqual(values, inlineClasses) -> {
                 onAreEqual(insn, values[0] as BoxedBasicValue, values[1] as BoxedBasicValue)
                 value
             }
@@ -170,11 +169,11 @@ private val UNBOXING_METHOD_NAMES =
 private val KCLASS_TO_JLCLASS = Type.getMethodDescriptor(AsmTypes.JAVA_CLASS_TYPE, AsmTypes.K_CLASS_TYPE)
 private val JLCLASS_TO_KCLASS = Type.getMethodDescriptor(AsmTypes.K_CLASS_TYPE, AsmTypes.JAVA_CLASS_TYPE)
 
-fun AbstractInsnNode.isUnboxing(state: GenerationState) =
-    isPrimitiveUnboxing() || isJavaLangClassUnboxing() || isInlineClassUnboxing(state)
+fun AbstractInsnNode.isUnboxing(inlineClasses: InlineClassUnboxedTypes) =
+    isPrimitiveUnboxing() || isJavaLangClassUnboxing() || isInlineClassUnboxing(inlineClasses)
 
-fun AbstractInsnNode.isBoxing(state: GenerationState) =
-    isPrimitiveBoxing() || isJavaLangClassBoxing() || isInlineClassBoxing(state)
+fun AbstractInsnNode.isBoxing(inlineClasses: InlineClassUnboxedTypes) =
+    isPrimitiveBoxing() || isJavaLangClassBoxing() || isInlineClassBoxing(inlineClasses)
 
 fun AbstractInsnNode.isPrimitiveUnboxing() =
     isMethodInsnWith(Opcodes.INVOKEVIRTUAL) {
@@ -223,36 +222,32 @@ fun AbstractInsnNode.isJavaLangClassBoxing() =
                 desc == JLCLASS_TO_KCLASS
     }
 
-private fun AbstractInsnNode.isInlineClassBoxing(state: GenerationState) =
+private fun AbstractInsnNode.isInlineClassBoxing(inlineClasses: InlineClassUnboxedTypes) =
     isMethodInsnWith(Opcodes.INVOKESTATIC) {
-        isInlineClassBoxingMethodDescriptor(state)
+        isInlineClassBoxingMethodDescriptor(inlineClasses)
     }
 
-private fun AbstractInsnNode.isInlineClassUnboxing(state: GenerationState) =
+private fun AbstractInsnNode.isInlineClassUnboxing(inlineClasses: InlineClassUnboxedTypes) =
     isMethodInsnWith(Opcodes.INVOKEVIRTUAL) {
-        isInlineClassUnboxingMethodDescriptor(state)
+        isInlineClassUnboxingMethodDescriptor(inlineClasses)
     }
 
-private fun MethodInsnNode.isInlineClassBoxingMethodDescriptor(state: GenerationState): Boolean {
+private fun MethodInsnNode.isInlineClassBoxingMethodDescriptor(inlineClasses: InlineClassUnboxedTypes): Boolean {
     if (name != KotlinTypeMapper.BOX_JVM_METHOD_NAME) return false
 
     val ownerType = Type.getObjectType(owner)
-    val descriptor = state.jvmBackendClassResolver.resolveToClassDescriptors(ownerType).singleOrNull() ?: return false
+    val unboxedType = inlineClasses.unboxedTypeOfInlineClass(ownerType) ?: return false
 
-    if (!descriptor.isInline) return false
-
-    return desc == Type.getMethodDescriptor(ownerType, state.typeMapper.mapType(descriptor.defaultType))
+    return desc == Type.getMethodDescriptor(ownerType, unboxedType)
 }
 
-private fun MethodInsnNode.isInlineClassUnboxingMethodDescriptor(state: GenerationState): Boolean {
+private fun MethodInsnNode.isInlineClassUnboxingMethodDescriptor(inlineClasses: InlineClassUnboxedTypes): Boolean {
     if (name != KotlinTypeMapper.UNBOX_JVM_METHOD_NAME) return false
 
     val ownerType = Type.getObjectType(owner)
-    val descriptor = state.jvmBackendClassResolver.resolveToClassDescriptors(ownerType).singleOrNull() ?: return false
-
-    if (!descriptor.isInline) return false
+    val unboxedType = inlineClasses.unboxedTypeOfInlineClass(ownerType) ?: return false
 
-    return desc == Type.getMethodDescriptor(state.typeMapper.mapType(descriptor.defaultType))
+    return desc == Type.getMethodDescriptor(unboxedType)
 }
 
 fun AbstractInsnNode.isNextMethodCallOfProgressionIterator(values: List<BasicValue>) =
@@ -291,8 +286,8 @@ fun AbstractInsnNode.isAreEqualIntrinsic() =
 
 private val shouldUseEqualsForWrappers = setOf(Type.DOUBLE_TYPE, Type.FLOAT_TYPE, AsmTypes.JAVA_CLASS_TYPE)
 
-fun canValuesBeUnboxedForAreEqual(values: List<BasicValue>, generationState: GenerationState): Boolean =
-    values.none { getUnboxedType(it.type, generationState) in shouldUseEqualsForWrappers }
+fun canValuesBeUnboxedForAreEqual(values: List<BasicValue>, inlineClasses: InlineClassUnboxedTypes): Boolean =
+    values.none { getUnboxedType(it.type, inlineClasses) in shouldUseEqualsForWrappers }
 
 fun AbstractInsnNode.isJavaLangComparableCompareToForSameTypedBoxedValues(values: List<BasicValue>) =
     isJavaLangComparableCompareTo() && areSameTypedPrimitiveBoxedValues(values)
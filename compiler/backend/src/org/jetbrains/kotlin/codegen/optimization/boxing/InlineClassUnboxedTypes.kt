@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.boxing
+
+import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.MethodInsnNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+/**
+ * Underlying types of inline classes, which are needed by optimizations to recognize boxing and unboxing of inline class values.
+ */
+interface InlineClassUnboxedTypes {
+    /**
+     * Returns the underlying type of the inline class with the given wrapper type, or null if it is not an inline class.
+     */
+    fun unboxedTypeOfInlineClass(wrapperType: Type): Type?
+
+    companion object {
+        /**
+         * Resolves classes on demand with the descriptors and the type mapper of [state].
+         * Those are not thread-safe, so the result may only be used on the codegen thread.
+         */
+        @JvmStatic
+        fun resolving(state: GenerationState): InlineClassUnboxedTypes = object : InlineClassUnboxedTypes {
+            override fun unboxedTypeOfInlineClass(wrapperType: Type): Type? {
+                val descriptor = state.jvmBackendClassResolver.resolveToClassDescriptors(wrapperType).singleOrNull() ?: return null
+                if (!descriptor.isInline) return null
+                return state.typeMapper.mapType(descriptor.defaultType)
+            }
+        }
+
+        /**
+         * Resolves the owners of all `box-impl` and `unbox-impl` calls of [methodNode] in advance.
+         * The result does not reference [state], so it can be used on any thread.
+         */
+        @JvmStatic
+        fun snapshot(state: GenerationState, methodNode: MethodNode): InlineClassUnboxedTypes {
+            val resolving = resolving(state)
+            val owners = HashSet<String>()
+            val unboxedTypes = HashMap<Type, Type>()
+            for (insn in methodNode.instructions.toArray()) {
+                if (insn !is MethodInsnNode) continue
+                if (insn.name != KotlinTypeMapper.BOX_JVM_METHOD_NAME && insn.name != KotlinTypeMapper.UNBOX_JVM_METHOD_NAME) continue
+                if (!owners.add(insn.owner)) continue
+
+                val wrapperType = Type.getObjectType(insn.owner)
+                resolving.unboxedTypeOfInlineClass(wrapperType)?.let { unboxedTypes[wrapperType] = it }
+            }
+            return object : InlineClassUnboxedTypes {
+                override fun unboxedTypeOfInlineClass(wrapperType: Type): Type? = unboxedTypes[wrapperType]
+            }
+        }
+    }
+}
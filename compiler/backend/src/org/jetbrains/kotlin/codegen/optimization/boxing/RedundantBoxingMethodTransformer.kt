@@ -35,10 +35,11 @@ import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
 import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
 import java.util.*
 
-class RedundantBoxingMethodTransformer(private val generationState: GenerationState) : MethodTransformer() {
+class RedundantBoxingMethodTransformer(private val inlineClasses: InlineClassUnboxedTypes) : MethodTransformer() {
+    constructor(generationState: GenerationState) : this(InlineClassUnboxedTypes.resolving(generationState))
 
     override fun transform(internalClassName: String, node: MethodNode) {
-        val interpreter = RedundantBoxingInterpreter(node.instructions, generationState)
+        val interpreter = RedundantBoxingInterpreter(node.instructions, inlineClasses)
         val frames = MethodTransformer.analyze(internalClassName, node, interpreter)
 
         interpretPopInstructionsForBoxedValues(interpreter, node, frames)
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.kotlin.codegen.inline.insnText
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value
+
+/**
+ * Forward data flow analysis which keeps frames only at the entries of basic blocks.
+ *
+ * The fixed point is computed over basic blocks with a worklist, so only block entry frames are merged and stored,
+ * and memory is proportional to the number of blocks instead of the number of instructions times the frame size.
+ * Frames of other instructions are recomputed on demand from the entry frame of their block (see [SparseFrames]).
+ *
+ * Frames are the same as the ones computed by [MethodAnalyzer] or ASM `Analyzer` (a frame describes the state before the instruction,
+ * unreachable instructions have no frame). Since frames are recomputed, the analyzer should only be used with interpreters
+ * which do not depend on the identity of values or on the order of interpretation, such as [OptimizationBasicInterpreter].
+ */
+class SparseMethodAnalyzer<V : Value>(
+    private val owner: String,
+    private val method: MethodNode,
+    private val interpreter: Interpreter<V>
+) {
+    private val insns: Array<AbstractInsnNode> = method.instructions.toArray()
+    private val nInsns = insns.size
+
+    private val handlers: Array<MutableList<TryCatchBlockNode>?> = arrayOfNulls(nInsns)
+
+    // Index of the basic block containing each instruction, and the index of the first instruction of each block
+    private val blockByInsn = IntArray(nInsns)
+    private lateinit var blockStarts: IntArray
+
+    fun analyze(): SparseFrames<V> {
+        if (nInsns == 0) return SparseFrames(this, emptyArray())
+
+        if (insns.any { it.opcode == Opcodes.JSR || it.opcode == Opcodes.RET })
+            throw AssertionError("Subroutines are deprecated since Java 6")
+
+        computeExceptionHandlersForEachInsn()
+        computeBasicBlocks()
+
+        val nBlocks = blockStarts.size
+        @Suppress("UNCHECKED_CAST")
+        val entryFrames = arrayOfNulls<Frame<V>>(nBlocks) as Array<Frame<V>?>
+        val queued = BooleanArray(nBlocks)
+        val queue = IntArray(nBlocks)
+        var top = 0
+
+        fun mergeIntoBlock(insn: Int, frame: Frame<V>) {
+            val block = blockByInsn[insn]
+            val oldFrame = entryFrames[block]
+            val changes =
+                if (oldFrame != null)
+                    oldFrame.merge(frame, interpreter)
+                else {
+                    entryFrames[block] = Frame(frame)
+                    true
+                }
+            if (changes && !queued[block]) {
+                queued[block] = true
+                queue[top++] = block
+            }
+        }
+
+        mergeIntoBlock(0, initialFrame())
+
+        val current = Frame<V>(method.maxLocals, method.maxStack)
+        val handler = Frame<V>(method.maxLocals, method.maxStack)
+        while (top > 0) {
+            val block = queue[--top]
+            queued[block] = false
+            current.init(entryFrames[block]!!)
+
+            val start = blockStarts[block]
+            val end = blockEnd(block)
+            for (insn in start until end) {
+                handlers[insn]?.forEach { tcb ->
+                    handler.init(current)
+                    handler.clearStack()
+                    handler.push(interpreter.newValue(Type.getObjectType(tcb.type ?: "java/lang/Throwable")))
+                    mergeIntoBlock(method.instructions.indexOf(tcb.handler), handler)
+                }
+
+                val insnNode = insns[insn]
+                execute(current, insnNode, insn)
+
+                if (insn == end - 1) {
+                    forEachSuccessor(insnNode, insn) { successor -> mergeIntoBlock(successor, current) }
+                }
+            }
+        }
+
+        return SparseFrames(this, entryFrames)
+    }
+
+    internal fun blockOf(insn: Int): Int = blockByInsn[insn]
+
+    internal fun blockStart(block: Int): Int = blockStarts[block]
+
+    internal fun blockEnd(block: Int): Int = if (block + 1 < blockStarts.size) blockStarts[block + 1] else nInsns
+
+    // Computes frames of all instructions of the block from its entry frame
+    internal fun replayBlock(block: Int, entryFrame: Frame<V>): Array<Frame<V>> {
+        val start = blockStarts[block]
+        val current = Frame(entryFrame)
+        return Array(blockEnd(block) - start) { offset ->
+            if (offset > 0) {
+                execute(current, insns[start + offset - 1], start + offset - 1)
+            }
+            Frame(current)
+        }
+    }
+
+    private fun execute(frame: Frame<V>, insnNode: AbstractInsnNode, insn: Int) {
+        val insnType = insnNode.type
+        if (insnType == AbstractInsnNode.LABEL || insnType == AbstractInsnNode.LINE || insnType == AbstractInsnNode.FRAME) return
+
+        try {
+            frame.execute(insnNode, interpreter)
+        } catch (e: AnalyzerException) {
+            throw AnalyzerException(e.node, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+        } catch (e: Exception) {
+            throw AnalyzerException(insnNode, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+        }
+    }
+
+    private inline fun forEachSuccessor(insnNode: AbstractInsnNode, insn: Int, action: (Int) -> Unit) {
+        when (insnNode) {
+            is JumpInsnNode -> {
+                if (insnNode.opcode != Opcodes.GOTO) action(fallThrough(insnNode, insn))
+                action(method.instructions.indexOf(insnNode.label))
+            }
+            is TableSwitchInsnNode -> {
+                action(method.instructions.indexOf(insnNode.dflt))
+                insnNode.labels.forEach { action(method.instructions.indexOf(it)) }
+            }
+            is LookupSwitchInsnNode -> {
+                action(method.instructions.indexOf(insnNode.dflt))
+                insnNode.labels.forEach { action(method.instructions.indexOf(it)) }
+            }
+            else ->
+                if (!isExit(insnNode.opcode)) action(fallThrough(insnNode, insn))
+        }
+    }
+
+    private fun fallThrough(insnNode: AbstractInsnNode, insn: Int): Int {
+        if (insn + 1 >= nInsns) throw AnalyzerException(insnNode, "Execution can fall off the end of the code")
+        return insn + 1
+    }
+
+    private fun isExit(opcode: Int) =
+        opcode == Opcodes.ATHROW || opcode in Opcodes.IRETURN..Opcodes.RETURN
+
+    private fun initialFrame(): Frame<V> {
+        val frame = Frame<V>(method.maxLocals, method.maxStack)
+        frame.setReturn(interpreter.newValue(Type.getReturnType(method.desc)))
+        var local = 0
+        if ((method.access and Opcodes.ACC_STATIC) == 0) {
+            frame.setLocal(local++, interpreter.newValue(Type.getObjectType(owner)))
+        }
+        for (arg in Type.getArgumentTypes(method.desc)) {
+            frame.setLocal(local++, interpreter.newValue(arg))
+            if (arg.size == 2) {
+                frame.setLocal(local++, interpreter.newValue(null))
+            }
+        }
+        while (local < method.maxLocals) {
+            frame.setLocal(local++, interpreter.newValue(null))
+        }
+        return frame
+    }
+
+    private fun computeExceptionHandlersForEachInsn() {
+        for (tcb in method.tryCatchBlocks) {
+            val begin = method.instructions.indexOf(tcb.start)
+            val end = method.instructions.indexOf(tcb.end)
+            for (j in begin until end) {
+                val insnHandlers = handlers[j] ?: ArrayList<TryCatchBlockNode>().also { handlers[j] = it }
+                insnHandlers.add(tcb)
+            }
+        }
+    }
+
+    // A block starts at the first instruction, at every jump, switch or exception handler target,
+    // and after every instruction which does not simply fall through to the next one
+    private fun computeBasicBlocks() {
+        val isBlockStart = BooleanArray(nInsns)
+        isBlockStart[0] = true
+
+        fun markLabel(label: LabelNode) {
+            isBlockStart[method.instructions.indexOf(label)] = true
+        }
+
+        for (i in 0 until nInsns) {
+            val insn = insns[i]
+            val endsBlock = when (insn) {
+                is JumpInsnNode -> {
+                    markLabel(insn.label)
+                    true
+                }
+                is TableSwitchInsnNode -> {
+                    markLabel(insn.dflt)
+                    insn.labels.forEach(::markLabel)
+                    true
+                }
+                is LookupSwitchInsnNode -> {
+                    markLabel(insn.dflt)
+                    insn.labels.forEach(::markLabel)
+                    true
+                }
+                else -> isExit(insn.opcode)
+            }
+            if (endsBlock && i + 1 < nInsns) {
+                isBlockStart[i + 1] = true
+            }
+        }
+        for (tcb in method.tryCatchBlocks) {
+            markLabel(tcb.handler)
+        }
+
+        val starts = ArrayList<Int>()
+        for (i in 0 until nInsns) {
+            if (isBlockStart[i]) starts.add(i)
+            blockByInsn[i] = starts.size - 1
+        }
+        blockStarts = starts.toIntArray()
+    }
+}
+
+/**
+ * Result of [SparseMethodAnalyzer]. Frames of the most recently accessed block are cached,
+ * so accessing frames of instructions in order recomputes every block only once.
+ */
+class SparseFrames<V : Value> internal constructor(
+    private val analyzer: SparseMethodAnalyzer<V>,
+    private val entryFrames: Array<Frame<V>?>
+) {
+    private var cachedBlock = -1
+    private var cachedFrames: Array<Frame<V>>? = null
+
+    fun isReachable(insn: Int): Boolean =
+        entryFrames[analyzer.blockOf(insn)] != null
+
+    operator fun get(insn: Int): Frame<V>? {
+        val block = analyzer.blockOf(insn)
+        val entryFrame = entryFrames[block] ?: return null
+
+        val frames = if (block == cachedBlock) cachedFrames!! else analyzer.replayBlock(block, entryFrame).also {
+            cachedBlock = block
+            cachedFrames = it
+        }
+        return frames[insn - analyzer.blockStart(block)]
+    }
+}
@@ -6,16 +6,12 @@
 package org.jetbrains.kotlin.codegen.optimization.common
 
 import org.jetbrains.kotlin.codegen.coroutines.SUSPEND_FUNCTION_COMPLETION_PARAMETER_NAME
-import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.kotlin.load.java.JvmAbi
+import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.Type
-import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
-import org.jetbrains.org.objectweb.asm.tree.IincInsnNode
-import org.jetbrains.org.objectweb.asm.tree.MethodNode
-import org.jetbrains.org.objectweb.asm.tree.VarInsnNode
+import org.jetbrains.org.objectweb.asm.tree.*
 import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
-import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
-import java.util.*
+import java.util.BitSet
 
 
 class VariableLivenessFrame(val maxLocals: Int) : VarFrame<VariableLivenessFrame> {
@@ -47,52 +43,250 @@ class VariableLivenessFrame(val maxLocals: Int) : VarFrame<VariableLivenessFrame
     override fun hashCode() = bitSet.hashCode()
 }
 
-fun analyzeLiveness(node: MethodNode): List<VariableLivenessFrame> {
-    val typeAnnotatedFrames = MethodTransformer.analyze("fake", node, OptimizationBasicInterpreter())
-    val visibleByDebuggerVariables = analyzeVisibleByDebuggerVariables(node, typeAnnotatedFrames)
-    return analyze(node, object : BackwardAnalysisInterpreter<VariableLivenessFrame> {
-        override fun newFrame(maxLocals: Int) = VariableLivenessFrame(maxLocals)
-        override fun def(frame: VariableLivenessFrame, insn: AbstractInsnNode) = defVar(frame, insn)
-        override fun use(frame: VariableLivenessFrame, insn: AbstractInsnNode) =
-            useVar(frame, insn, node, visibleByDebuggerVariables[node.instructions.indexOf(insn)])
-    })
-}
+fun analyzeLiveness(node: MethodNode): List<VariableLivenessFrame> =
+    LivenessAnalyzer(node).analyze()
+
+/**
+ * Backward liveness analysis over basic blocks.
+ *
+ * For every block only the variables used before being defined in the block (gen), the variables defined in the block (kill)
+ * and the variables alive at the block entry are stored, so memory is linear in the number of blocks instead of the number of
+ * instructions times the number of locals. Frames of instructions are computed on demand from the successors of their block.
+ * Variables visible in the debugger are considered used at every instruction of their range, if the value in the variable
+ * has the declared type.
+ *
+ * Blocks are split at try/catch range boundaries, so all instructions of a block have the same exception handlers.
+ * The results are the same as the ones of the per-instruction backward [analyze] for reachable instructions.
+ */
+private class LivenessAnalyzer(private val node: MethodNode) {
+    private val insns: Array<AbstractInsnNode> = node.instructions.toArray()
+    private val nInsns = insns.size
+    private val maxLocals = node.maxLocals
+
+    private val blockByInsn = IntArray(nInsns)
+    private lateinit var blockStarts: IntArray
+    private lateinit var successors: Array<IntArray>
+    private lateinit var handlers: Array<IntArray>
+
+    private lateinit var gen: Array<BitSet>
+    private lateinit var kill: Array<BitSet>
+    // A variable defined by the first instruction of a block is not alive in the exception handlers of the block at the block entry
+    private lateinit var firstDef: IntArray
+    private lateinit var liveIn: Array<BitSet>
+
+    private val visibleLocals = node.localVariables.filterNot { it.name.isInvisibleDebuggerVariable() }
+    private val visibleLocalSorts = IntArray(visibleLocals.size) { Type.getType(visibleLocals[it].desc).sort }
+    private val visibleLocalStarts = IntArray(visibleLocals.size) { node.instructions.indexOf(visibleLocals[it].start) }
+    private val visibleLocalEnds = IntArray(visibleLocals.size) { node.instructions.indexOf(visibleLocals[it].end) }
+    private lateinit var typeFrames: SparseFrames<BasicValue>
+
+    fun analyze(): List<VariableLivenessFrame> {
+        if (nInsns == 0) return emptyList()
+
+        typeFrames = SparseMethodAnalyzer("fake", node, OptimizationBasicInterpreter()).analyze()
+        computeBasicBlocks()
+        computeGenAndKill()
+
+        val nBlocks = blockStarts.size
+        liveIn = Array(nBlocks) { BitSet(maxLocals) }
+        // see Figure 9.16 from Dragon book
+        do {
+            var wereChanges = false
+            for (block in nBlocks - 1 downTo 0) {
+                val newLiveIn = liveOut(block)
+                newLiveIn.andNot(kill[block])
+                newLiveIn.or(gen[block])
+                val handlersLive = handlersLive(block)
+                if (firstDef[block] >= 0) handlersLive.clear(firstDef[block])
+                newLiveIn.or(handlersLive)
+
+                if (newLiveIn != liveIn[block]) {
+                    liveIn[block] = newLiveIn
+                    wereChanges = true
+                }
+            }
+        } while (wereChanges)
+
+        return LivenessFrames()
+    }
+
+    private inner class LivenessFrames : AbstractList<VariableLivenessFrame>() {
+        private var cachedBlock = -1
+        private var cachedFrames: Array<VariableLivenessFrame>? = null
+
+        override val size: Int get() = nInsns
 
-private fun analyzeVisibleByDebuggerVariables(
-    node: MethodNode,
-    typeAnnotatedFrames: Array<Frame<BasicValue>?>
-): Array<BitSet> {
-    val res = Array(node.instructions.size()) { BitSet(node.maxLocals) }
-    for (local in node.localVariables) {
-        if (local.name.isInvisibleDebuggerVariable()) continue
-        for (index in node.instructions.indexOf(local.start) until node.instructions.indexOf(local.end)) {
-            if (Type.getType(local.desc).sort == typeAnnotatedFrames[index]?.getLocal(local.index)?.type?.sort) {
-                res[index].set(local.index)
+        override fun get(index: Int): VariableLivenessFrame {
+            val block = blockByInsn[index]
+            val frames = if (block == cachedBlock) cachedFrames!! else computeFrames(block).also {
+                cachedBlock = block
+                cachedFrames = it
             }
+            return frames[index - blockStarts[block]]
         }
     }
-    return res
-}
 
-private fun defVar(frame: VariableLivenessFrame, insn: AbstractInsnNode) {
-    if (insn is VarInsnNode && insn.isStoreOperation()) {
-        frame.markDead(insn.`var`)
+    private fun computeFrames(block: Int): Array<VariableLivenessFrame> {
+        val start = blockStarts[block]
+        val end = blockEnd(block)
+        val handlersLive = handlersLive(block)
+        val current = liveOut(block)
+        val frames = arrayOfNulls<VariableLivenessFrame>(end - start)
+        for (insn in end - 1 downTo start) {
+            current.or(handlersLive)
+            val insnNode = insns[insn]
+            if (insnNode is VarInsnNode && insnNode.isStoreOperation()) {
+                current.clear(insnNode.`var`)
+            }
+            forEachUse(insnNode) { current.set(it) }
+            forEachVisibleLocal(insn) { current.set(it) }
+            frames[insn - start] = VariableLivenessFrame(maxLocals).apply { markAllAlive(current) }
+        }
+        @Suppress("UNCHECKED_CAST")
+        return frames as Array<VariableLivenessFrame>
+    }
+
+    private fun liveOut(block: Int): BitSet {
+        val result = handlersLive(block)
+        for (successor in successors[block]) {
+            result.or(liveIn[successor])
+        }
+        return result
     }
-}
 
-private fun useVar(
-    frame: VariableLivenessFrame,
-    insn: AbstractInsnNode,
-    node: MethodNode,
-    visibleByDebuggerVariables: BitSet
-) {
-    frame.markAllAlive(visibleByDebuggerVariables)
-
-    if (insn is VarInsnNode && insn.isLoadOperation()) {
-        frame.markAlive(insn.`var`)
-    } else if (insn is IincInsnNode) {
-        frame.markAlive(insn.`var`)
+    private fun handlersLive(block: Int): BitSet {
+        val result = BitSet(maxLocals)
+        for (handler in handlers[block]) {
+            result.or(liveIn[handler])
+        }
+        return result
     }
+
+    private fun computeGenAndKill() {
+        val nBlocks = blockStarts.size
+        gen = Array(nBlocks) { BitSet(maxLocals) }
+        kill = Array(nBlocks) { BitSet(maxLocals) }
+        firstDef = IntArray(nBlocks) { -1 }
+
+        // Instructions are processed in order, so variables visible in the debugger are tracked with the list of active ranges
+        val localsByStart = visibleLocals.indices.sortedBy { visibleLocalStarts[it] }
+        var nextLocal = 0
+        val activeLocals = ArrayList<Int>()
+
+        for (block in 0 until nBlocks) {
+            val blockGen = gen[block]
+            val blockKill = kill[block]
+            for (insn in blockStarts[block] until blockEnd(block)) {
+                while (nextLocal < localsByStart.size && visibleLocalStarts[localsByStart[nextLocal]] <= insn) {
+                    activeLocals.add(localsByStart[nextLocal++])
+                }
+                activeLocals.removeAll { visibleLocalEnds[it] <= insn }
+
+                // Uses of the instruction are not killed by its own definition
+                val insnNode = insns[insn]
+                forEachUse(insnNode) { if (!blockKill.get(it)) blockGen.set(it) }
+                for (local in activeLocals) {
+                    if (isVisibleLocal(local, insn) && !blockKill.get(visibleLocals[local].index)) {
+                        blockGen.set(visibleLocals[local].index)
+                    }
+                }
+
+                if (insnNode is VarInsnNode && insnNode.isStoreOperation()) {
+                    blockKill.set(insnNode.`var`)
+                    if (insn == blockStarts[block]) firstDef[block] = insnNode.`var`
+                }
+            }
+        }
+    }
+
+    private inline fun forEachUse(insnNode: AbstractInsnNode, action: (Int) -> Unit) {
+        if (insnNode is VarInsnNode && insnNode.isLoadOperation()) {
+            action(insnNode.`var`)
+        } else if (insnNode is IincInsnNode) {
+            action(insnNode.`var`)
+        }
+    }
+
+    private inline fun forEachVisibleLocal(insn: Int, action: (Int) -> Unit) {
+        for (local in visibleLocals.indices) {
+            if (insn >= visibleLocalStarts[local] && insn < visibleLocalEnds[local] && isVisibleLocal(local, insn)) {
+                action(visibleLocals[local].index)
+            }
+        }
+    }
+
+    private fun isVisibleLocal(local: Int, insn: Int): Boolean =
+        visibleLocalSorts[local] == typeFrames[insn]?.getLocal(visibleLocals[local].index)?.type?.sort
+
+    private fun blockEnd(block: Int): Int = if (block + 1 < blockStarts.size) blockStarts[block + 1] else nInsns
+
+    private fun computeBasicBlocks() {
+        val isBlockStart = BooleanArray(nInsns)
+        isBlockStart[0] = true
+
+        fun indexOf(label: LabelNode) = node.instructions.indexOf(label)
+
+        for (i in 0 until nInsns) {
+            val insn = insns[i]
+            val endsBlock = when (insn) {
+                is JumpInsnNode -> {
+                    isBlockStart[indexOf(insn.label)] = true
+                    true
+                }
+                is TableSwitchInsnNode -> {
+                    isBlockStart[indexOf(insn.dflt)] = true
+                    insn.labels.forEach { isBlockStart[indexOf(it)] = true }
+                    true
+                }
+                is LookupSwitchInsnNode -> {
+                    isBlockStart[indexOf(insn.dflt)] = true
+                    insn.labels.forEach { isBlockStart[indexOf(it)] = true }
+                    true
+                }
+                else -> isExit(insn.opcode)
+            }
+            if (endsBlock && i + 1 < nInsns) {
+                isBlockStart[i + 1] = true
+            }
+        }
+        for (tcb in node.tryCatchBlocks) {
+            isBlockStart[indexOf(tcb.handler)] = true
+            isBlockStart[indexOf(tcb.start)] = true
+            isBlockStart[indexOf(tcb.end)] = true
+        }
+
+        val starts = ArrayList<Int>()
+        for (i in 0 until nInsns) {
+            if (isBlockStart[i]) starts.add(i)
+            blockByInsn[i] = starts.size - 1
+        }
+        blockStarts = starts.toIntArray()
+
+        successors = Array(blockStarts.size) { block ->
+            val last = blockEnd(block) - 1
+            val insn = insns[last]
+            val targets = when (insn) {
+                is JumpInsnNode ->
+                    if (insn.opcode == Opcodes.GOTO) listOf(indexOf(insn.label)) else listOf(last + 1, indexOf(insn.label))
+                is TableSwitchInsnNode -> (insn.labels + insn.dflt).map(::indexOf)
+                is LookupSwitchInsnNode -> (insn.labels + insn.dflt).map(::indexOf)
+                else -> if (isExit(insn.opcode)) emptyList() else listOf(last + 1)
+            }
+            targets.filter { it < nInsns }.map { blockByInsn[it] }.distinct().toIntArray()
+        }
+
+        val handlerLists = Array(blockStarts.size) { ArrayList<Int>(0) }
+        for (tcb in node.tryCatchBlocks) {
+            val handler = blockByInsn[indexOf(tcb.handler)]
+            for (block in blockByInsn[indexOf(tcb.start)] until blockByInsn[indexOf(tcb.end)]) {
+                handlerLists[block].add(handler)
+            }
+        }
+        handlers = Array(blockStarts.size) { handlerLists[it].toIntArray() }
+    }
+
+    private fun isExit(opcode: Int) =
+        opcode == Opcodes.ATHROW || opcode in Opcodes.IRETURN..Opcodes.RETURN
 }
 
 private fun String.isInvisibleDebuggerVariable(): Boolean =
@@ -23,11 +23,10 @@ import org.jetbrains.kotlin.codegen.inline.isMarkedReturn
 import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalyzer
 import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
 import org.jetbrains.kotlin.codegen.pseudoInsns.PseudoInsn
+import org.jetbrains.kotlin.resolve.jvm.AsmTypes
 import org.jetbrains.org.objectweb.asm.Opcodes
-import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
-import org.jetbrains.org.objectweb.asm.tree.JumpInsnNode
-import org.jetbrains.org.objectweb.asm.tree.LabelNode
-import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
 import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
 import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
 import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter
@@ -82,12 +81,14 @@ internal class FixStackAnalyzer(
             return !(insnNode is JumpInsnNode && context.breakContinueGotoNodes.contains(insnNode))
         }
 
+        // Only the shape of the stack is needed to fix it, so local variables are not tracked: frames of large methods with
+        // many locals would take memory proportional to the number of instructions times the number of locals
         override fun newFrame(nLocals: Int, nStack: Int): Frame<BasicValue> =
-            FixStackFrame(nLocals, nStack)
+            FixStackFrame(nStack)
 
         private fun indexOf(node: AbstractInsnNode) = method.instructions.indexOf(node)
 
-        inner class FixStackFrame(nLocals: Int, nStack: Int) : Frame<BasicValue>(nLocals, nStack) {
+        inner class FixStackFrame(nStack: Int) : Frame<BasicValue>(0, nStack) {
             val extraStack = Stack<BasicValue>()
 
             override fun init(src: Frame<out BasicValue>): Frame<BasicValue> {
@@ -115,11 +116,31 @@ internal class FixStackAnalyzer(
                         // KT-9644: might throw "Incompatible return type" on non-local return, in fact we don't care.
                         if (insn.opcode == Opcodes.RETURN) return
                     }
+                    insn is VarInsnNode -> {
+                        executeVarInsn(insn, interpreter)
+                        return
+                    }
+                    insn.opcode == Opcodes.IINC ->
+                        return
                 }
 
                 super.execute(insn, interpreter)
             }
 
+            private fun executeVarInsn(insn: VarInsnNode, interpreter: Interpreter<BasicValue>) {
+                when (insn.opcode) {
+                    Opcodes.ILOAD -> push(interpreter.newValue(Type.INT_TYPE))
+                    Opcodes.LLOAD -> push(interpreter.newValue(Type.LONG_TYPE))
+                    Opcodes.FLOAD -> push(interpreter.newValue(Type.FLOAT_TYPE))
+                    Opcodes.DLOAD -> push(interpreter.newValue(Type.DOUBLE_TYPE))
+                    Opcodes.ALOAD -> push(interpreter.newValue(AsmTypes.OBJECT_TYPE))
+                    else -> pop()
+                }
+            }
+
+            // Local variables are not tracked, see newFrame
+            override fun setLocal(i: Int, value: BasicValue) {}
+
             val stackSizeWithExtra: Int get() = super.getStackSize() + extraStack.size
 
             fun getStackContent(): List<BasicValue> {
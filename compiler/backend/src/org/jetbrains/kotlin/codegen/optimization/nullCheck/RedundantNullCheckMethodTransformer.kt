@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.codegen.optimization.nullCheck
 import org.jetbrains.kotlin.codegen.coroutines.withInstructionAdapter
 import org.jetbrains.kotlin.codegen.inline.ReifiedTypeInliner
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
+import org.jetbrains.kotlin.codegen.optimization.boxing.InlineClassUnboxedTypes
 import org.jetbrains.kotlin.codegen.optimization.common.StrictBasicValue
 import org.jetbrains.kotlin.codegen.optimization.common.debugText
 import org.jetbrains.kotlin.codegen.optimization.common.isInsn
@@ -36,13 +37,15 @@ import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.commons.InstructionAdapter
 import org.jetbrains.org.objectweb.asm.tree.*
 
-class RedundantNullCheckMethodTransformer(private val generationState: GenerationState) : MethodTransformer() {
+class RedundantNullCheckMethodTransformer(private val inlineClasses: InlineClassUnboxedTypes) : MethodTransformer() {
+    constructor(generationState: GenerationState) : this(InlineClassUnboxedTypes.resolving(generationState))
+
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        while (TransformerPass(internalClassName, methodNode, generationState).run()) {
+        while (TransformerPass(internalClassName, methodNode, inlineClasses).run()) {
         }
     }
 
-    private class TransformerPass(val internalClassName: String, val methodNode: MethodNode, val generationState: GenerationState) {
+    private class TransformerPass(val internalClassName: String, val methodNode: MethodNode, val inlineClasses: InlineClassUnboxedTypes) {
         private var changes = false
 
         fun run(): Boolean {
@@ -60,7 +63,7 @@ class RedundantNullCheckMethodTransformer(private val generationState: Generatio
         }
 
         private fun analyzeNullabilities(): Map<AbstractInsnNode, StrictBasicValue> {
-            val frames = analyze(internalClassName, methodNode, NullabilityInterpreter(generationState))
+            val frames = analyze(internalClassName, methodNode, NullabilityInterpreter(inlineClasses))
             val insns = methodNode.instructions.toArray()
             val nullabilityMap = LinkedHashMap<AbstractInsnNode, StrictBasicValue>()
             for (i in insns.indices) {
@@ -44,6 +44,7 @@ import org.jetbrains.kotlin.serialization.deserialization.DeserializationConfigu
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
 import org.jetbrains.kotlin.types.KotlinType
 import java.io.File
+import java.util.concurrent.ForkJoinPool
 
 class GenerationState private constructor(
     val project: Project,
@@ -254,6 +255,12 @@ class GenerationState private constructor(
 
     val disableOptimization = configuration.get(JVMConfigurationKeys.DISABLE_OPTIMIZATION, false)
 
+    // Pool used to optimize bytecode of the methods of a class in parallel, see OptimizationClassBuilder
+    private val lazyMethodOptimizationPool = lazy {
+        configuration.get(JVMConfigurationKeys.PARALLEL_OPTIMIZATION_THREADS)?.takeIf { it > 1 }?.let(::ForkJoinPool)
+    }
+    val methodOptimizationPool: ForkJoinPool? by lazyMethodOptimizationPool
+
     val metadataVersion = configuration.get(CommonConfigurationKeys.METADATA_VERSION) ?: JvmMetadataVersion.INSTANCE
 
     init {
@@ -303,6 +310,9 @@ class GenerationState private constructor(
 
     fun destroy() {
         interceptedBuilderFactory.close()
+        if (lazyMethodOptimizationPool.isInitialized()) {
+            lazyMethodOptimizationPool.value?.shutdown()
+        }
     }
 
     private fun shouldOnlyCollectSignatures(origin: JvmDeclarationOrigin) =
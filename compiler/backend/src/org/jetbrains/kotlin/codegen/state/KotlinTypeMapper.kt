@@ -88,6 +88,32 @@ class KotlinTypeMapper @JvmOverloads constructor(
 ) {
     private val isReleaseCoroutines = languageVersionSettings.supportsFeature(LanguageFeature.ReleaseCoroutines)
 
+    // Like the rest of the type mapper, the cache is not thread-safe. Each module generated with -Xbackend-threads has its own
+    // type mapper, and -Xoptimization-threads workers do not map signatures
+    private val signatureCache = HashMap<SignatureKey, JvmMethodGenericSignature>()
+
+    var signatureCacheHits: Long = 0
+        private set
+
+    var signatureCacheMisses: Long = 0
+        private set
+
+    // Descriptors are compared by identity: a substituted or copied descriptor may have a different signature
+    private class SignatureKey(
+        val descriptor: FunctionDescriptor,
+        val kind: OwnerKind,
+        val skipGenericSignature: Boolean,
+        val hasSpecialBridge: Boolean
+    ) {
+        override fun equals(other: Any?): Boolean =
+            other is SignatureKey && other.descriptor === descriptor && other.kind == kind &&
+                    other.skipGenericSignature == skipGenericSignature && other.hasSpecialBridge == hasSpecialBridge
+
+        override fun hashCode(): Int =
+            ((System.identityHashCode(descriptor) * 31 + kind.hashCode()) * 31 + skipGenericSignature.hashCode()) * 31 +
+                    hasSpecialBridge.hashCode()
+    }
+
     private val typeMappingConfiguration = object : TypeMappingConfiguration<Type> {
         override fun commonSupertype(types: Collection<KotlinType>): KotlinType {
             return CommonSupertypes.commonSupertype(types)
@@ -703,6 +729,35 @@ class KotlinTypeMapper @JvmOverloads constructor(
         kind: OwnerKind,
         skipGenericSignature: Boolean,
         hasSpecialBridge: Boolean
+    ): JvmMethodGenericSignature {
+        if (!isSignatureCacheable(f)) {
+            return computeSignature(f, resolvedCall, kind, skipGenericSignature, hasSpecialBridge)
+        }
+
+        val key = SignatureKey(f, kind, skipGenericSignature, hasSpecialBridge)
+        signatureCache[key]?.let { signature ->
+            signatureCacheHits++
+            return signature
+        }
+        signatureCacheMisses++
+
+        val signature = computeSignature(f, resolvedCall, kind, skipGenericSignature, hasSpecialBridge)
+        signatureCache[key] = signature
+        return signature
+    }
+
+    // Signatures of constructors depend on closures of local and anonymous classes, which may change during codegen;
+    // polymorphic signatures depend on the call site. In the IR backend, lowerings may change declarations after their signatures are mapped
+    private fun isSignatureCacheable(f: FunctionDescriptor): Boolean =
+        !isIrBackend && f !is ConstructorDescriptor && f !is AccessorForCallableDescriptor<*> &&
+                !(languageVersionSettings.supportsFeature(LanguageFeature.PolymorphicSignature) && isPolymorphicSignature(f))
+
+    private fun computeSignature(
+        f: FunctionDescriptor,
+        resolvedCall: ResolvedCall<*>?,
+        kind: OwnerKind,
+        skipGenericSignature: Boolean,
+        hasSpecialBridge: Boolean
     ): JvmMethodGenericSignature {
         if (f.initialSignatureDescriptor != null && f != f.initialSignatureDescriptor) {
             // Overrides of special builtin in Kotlin classes always have special signature
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+plugins {
+    java
+    kotlin("jvm")
+    id("jps-compatible")
+}
+
+dependencies {
+    compile(project(":compiler:cli"))
+    compile(project(":compiler:backend"))
+    compile(project(":compiler:frontend"))
+    compile(project(":compiler:frontend.java"))
+    compile(project(":compiler:ir.tree"))
+    compile(project(":compiler:ir.psi2ir"))
+    compile(project(":core:metadata.jvm"))
+    compile(kotlinStdlib())
+    compile(commonDep("org.openjdk.jmh", "jmh-core"))
+    annotationProcessor(commonDep("org.openjdk.jmh", "jmh-generator-annprocess"))
+    compileOnly(intellijCoreDep()) { includeJars("intellij-core") }
+    compileOnly(intellijDep()) { includeJars("asm-all", rootProject = rootProject) }
+
+    runtime(intellijCoreDep()) { includeJars("intellij-core") }
+    runtime(intellijDep()) { includeJars("asm-all", "trove4j", "guava", "jdom", "log4j", "jna", rootProject = rootProject) }
+}
+
+sourceSets {
+    "main" { projectDefault() }
+    "test" { none() }
+}
+
+// Runs all benchmarks, or the ones matching the "benchmarks" project property (a JMH regexp), and writes the results to
+// build/benchmarks/results.json, e.g.
+//   ./gradlew :compiler:benchmarks:runBenchmarks -Pbenchmarks=Analysis
+val runBenchmarks by task<JavaExec> {
+    group = "verification"
+    description = "Runs JMH benchmarks of the compiler and writes JSON results"
+
+    val resultsFile = File(buildDir, "benchmarks/results.json")
+    doFirst { resultsFile.parentFile.mkdirs() }
+
+    workingDir = rootDir
+    classpath = sourceSets["main"].runtimeClasspath
+    main = "org.openjdk.jmh.Main"
+    args = listOfNotNull(
+        findProperty("benchmarks")?.toString(),
+        "-rf", "json",
+        "-rff", resultsFile.absolutePath
+    )
+}
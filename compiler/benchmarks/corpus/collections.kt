@@ -0,0 +1,78 @@
+package corpus.collections
+
+interface Shape {
+    val area: Double
+    fun scale(factor: Double): Shape
+}
+
+data class Circle(val radius: Double) : Shape {
+    override val area: Double get() = Math.PI * radius * radius
+    override fun scale(factor: Double) = Circle(radius * factor)
+}
+
+data class Rectangle(val width: Double, val height: Double) : Shape {
+    override val area: Double get() = width * height
+    override fun scale(factor: Double) = Rectangle(width * factor, height * factor)
+}
+
+sealed class Event {
+    class Added(val shape: Shape) : Event()
+    class Removed(val index: Int) : Event()
+    object Cleared : Event()
+}
+
+class Canvas : Iterable<Shape> {
+    private val shapes = mutableListOf<Shape>()
+    private val listeners = mutableListOf<(Event) -> Unit>()
+
+    fun onEvent(listener: (Event) -> Unit) {
+        listeners += listener
+    }
+
+    fun add(shape: Shape) {
+        shapes += shape
+        fire(Event.Added(shape))
+    }
+
+    fun removeAt(index: Int) {
+        shapes.removeAt(index)
+        fire(Event.Removed(index))
+    }
+
+    fun clear() {
+        shapes.clear()
+        fire(Event.Cleared)
+    }
+
+    private fun fire(event: Event) = listeners.forEach { it(event) }
+
+    override fun iterator(): Iterator<Shape> = shapes.iterator()
+}
+
+inline fun <T, R : Comparable<R>> Iterable<T>.topBy(count: Int, crossinline selector: (T) -> R): List<T> =
+    sortedByDescending { selector(it) }.take(count)
+
+fun describe(event: Event): String = when (event) {
+    is Event.Added -> "added ${event.shape}"
+    is Event.Removed -> "removed #${event.index}"
+    Event.Cleared -> "cleared"
+}
+
+fun statistics(canvas: Canvas): Map<String, Double> {
+    val byKind = canvas.groupBy { it::class.java.simpleName }
+    return byKind.mapValues { (_, shapes) -> shapes.sumByDouble { it.area } / shapes.size }
+}
+
+fun main() {
+    val canvas = Canvas()
+    val log = StringBuilder()
+    canvas.onEvent { log.appendln(describe(it)) }
+    for (i in 1..100) {
+        canvas.add(if (i % 3 == 0) Circle(i.toDouble()) else Rectangle(i.toDouble(), i / 2.0))
+    }
+    val largest = canvas.topBy(5) { it.area }.map { it.scale(0.5) }
+    println(largest)
+    println(statistics(canvas))
+    canvas.clear()
+    println(log)
+}
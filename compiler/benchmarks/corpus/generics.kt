@@ -0,0 +1,77 @@
+package corpus.generics
+
+import kotlin.properties.Delegates
+import kotlin.reflect.KProperty
+
+interface Repository<K : Comparable<K>, V : Any> {
+    operator fun get(key: K): V?
+    operator fun set(key: K, value: V)
+    fun entries(): Sequence<Pair<K, V>>
+}
+
+open class InMemoryRepository<K : Comparable<K>, V : Any> : Repository<K, V> {
+    protected val storage = sortedMapOf<K, V>()
+
+    override fun get(key: K): V? = storage[key]
+
+    override fun set(key: K, value: V) {
+        storage[key] = value
+    }
+
+    override fun entries(): Sequence<Pair<K, V>> = storage.entries.asSequence().map { it.key to it.value }
+}
+
+class CachingRepository<K : Comparable<K>, V : Any>(
+    private val delegate: Repository<K, V>,
+    private val capacity: Int
+) : Repository<K, V> by delegate {
+    private val cache = object : LinkedHashMap<K, V>(capacity, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, V>?) = size > capacity
+    }
+
+    override fun get(key: K): V? = cache[key] ?: delegate[key]?.also { cache[key] = it }
+}
+
+class Lazy2<T>(private val initializer: () -> T) {
+    private var value: Any? = UNINITIALIZED
+
+    @Suppress("UNCHECKED_CAST")
+    operator fun getValue(thisRef: Any?, property: KProperty<*>): T {
+        if (value === UNINITIALIZED) value = initializer()
+        return value as T
+    }
+
+    private object UNINITIALIZED
+}
+
+class Settings {
+    var retries: Int by Delegates.observable(3) { _, old, new -> check(new >= 0) { "$old -> $new" } }
+    val description: String by Lazy2 { "retries=$retries" }
+}
+
+fun <T : Comparable<T>> List<T>.isSortedAscending(): Boolean = zipWithNext().all { (a, b) -> a <= b }
+
+fun <A, B, C> compose(f: (B) -> C, g: (A) -> B): (A) -> C = { f(g(it)) }
+
+suspend fun <T> retry(times: Int, block: suspend () -> T): T {
+    var last: Throwable? = null
+    repeat(times) {
+        try {
+            return block()
+        } catch (e: Exception) {
+            last = e
+        }
+    }
+    throw last ?: IllegalStateException()
+}
+
+fun usage(): String {
+    val repository = CachingRepository(InMemoryRepository<String, List<Int>>(), capacity = 16)
+    for (i in 0 until 100) {
+        repository["key$i"] = (0..i).filter { it % 2 == 0 }
+    }
+    val lengths = compose<String, List<Int>?, Int>({ it?.size ?: 0 }, { repository[it] })
+    val total = (0 until 100).map { lengths("key$it") }.sum()
+    val settings = Settings().apply { retries = 5 }
+    return "${repository.entries().count()} $total ${settings.description} ${listOf(1, 2, 3).isSortedAscending()}"
+}
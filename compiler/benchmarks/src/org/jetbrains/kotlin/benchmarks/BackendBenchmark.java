@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.codegen.optimization.ConstantConditionEliminationMethodTransformer;
+import org.jetbrains.kotlin.codegen.optimization.DeadCodeEliminationMethodTransformer;
+import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantBoxingMethodTransformer;
+import org.jetbrains.kotlin.codegen.optimization.nullCheck.RedundantNullCheckMethodTransformer;
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
+import org.jetbrains.kotlin.codegen.state.GenerationState;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.jetbrains.org.objectweb.asm.tree.ClassNode;
+import org.jetbrains.org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BackendBenchmark {
+    private BenchmarkCompilation compilation;
+    private List<KtFile> files;
+    private AnalysisResult analysisResult;
+    private GenerationState state;
+    private List<ClassNode> classes;
+    private List<MethodTransformer> transformers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compilation = new BenchmarkCompilation();
+        files = compilation.parse();
+        analysisResult = compilation.analyze(files);
+        state = compilation.generate(files, analysisResult);
+        classes = compilation.generatedClasses(state);
+        transformers = Arrays.asList(
+                new DeadCodeEliminationMethodTransformer(),
+                new ConstantConditionEliminationMethodTransformer(),
+                new RedundantNullCheckMethodTransformer(state),
+                new RedundantBoxingMethodTransformer(state)
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        state.destroy();
+        compilation.dispose();
+    }
+
+    // Full JVM code generation, including inlining (MethodInliner) and the bytecode optimization pipeline
+    @Benchmark
+    public void codegen() {
+        compilation.generate(files, analysisResult).destroy();
+    }
+
+    // Optimization method transformers applied to the methods generated from the corpus
+    @Benchmark
+    public void methodTransformers(Blackhole blackhole) {
+        for (ClassNode classNode : classes) {
+            for (MethodNode method : copyMethods(classNode)) {
+                for (MethodTransformer transformer : transformers) {
+                    transformer.transform(classNode.name, method);
+                }
+                blackhole.consume(method);
+            }
+        }
+    }
+
+    private static List<MethodNode> copyMethods(ClassNode classNode) {
+        List<MethodNode> result = new ArrayList<>(classNode.methods.size());
+        for (MethodNode method : classNode.methods) {
+            if (method.instructions.size() == 0) continue;
+            String[] exceptions = method.exceptions.toArray(new String[0]);
+            MethodNode copy = new MethodNode(method.access, method.name, method.desc, method.signature, exceptions);
+            method.accept(copy);
+            result.add(copy);
+        }
+        return result;
+    }
+}
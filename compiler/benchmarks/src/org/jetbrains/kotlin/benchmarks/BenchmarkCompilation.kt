@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import com.intellij.openapi.util.Disposer
+import org.jetbrains.kotlin.analyzer.AnalysisResult
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.compiler.NoScopeRecordCliBindingTrace
+import org.jetbrains.kotlin.cli.jvm.compiler.TopDownAnalyzerFacadeForJVM
+import org.jetbrains.kotlin.cli.jvm.config.addJvmClasspathRoots
+import org.jetbrains.kotlin.codegen.ClassBuilderFactories
+import org.jetbrains.kotlin.codegen.CompilationErrorHandler
+import org.jetbrains.kotlin.codegen.KotlinCodegenFacade
+import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.config.*
+import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.psi2ir.Psi2IrTranslator
+import org.jetbrains.kotlin.utils.PathUtil
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.tree.ClassNode
+import java.io.File
+
+// A compiler environment for the given sources, by default the benchmark corpus (compiler/benchmarks/corpus), with the JDK and
+// the stdlib on the classpath. Benchmarks create it once per trial, so only the measured phase is repeated in each invocation.
+class BenchmarkCompilation @JvmOverloads constructor(
+    val corpus: List<Pair<String, String>> = readCorpus(),
+    newInference: Boolean = false
+) {
+    private val disposable = Disposer.newDisposable()
+
+    val environment: KotlinCoreEnvironment
+
+    init {
+        val configuration = CompilerConfiguration().apply {
+            put(CommonConfigurationKeys.MODULE_NAME, "benchmark")
+            put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
+            if (newInference) {
+                put(
+                    CommonConfigurationKeys.LANGUAGE_VERSION_SETTINGS,
+                    LanguageVersionSettingsImpl(
+                        LanguageVersion.LATEST_STABLE, ApiVersion.LATEST_STABLE,
+                        specificFeatures = mapOf(LanguageFeature.NewInference to LanguageFeature.State.ENABLED)
+                    )
+                )
+            }
+            addJvmClasspathRoots(PathUtil.getJdkClassesRootsFromCurrentJre())
+            addJvmClasspathRoots(listOf(PathUtil.getResourcePathForClass(Unit::class.java)))
+        }
+        environment = KotlinCoreEnvironment.createForProduction(disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+    }
+
+    fun parse(): List<KtFile> {
+        val psiFactory = KtPsiFactory(environment.project, markGenerated = false)
+        return corpus.map { (name, text) -> psiFactory.createFile(name, text) }
+    }
+
+    fun analyze(files: List<KtFile>): AnalysisResult =
+        TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+            environment.project,
+            files,
+            NoScopeRecordCliBindingTrace(),
+            environment.configuration,
+            environment::createPackagePartProvider
+        ).also { it.throwIfError() }
+
+    fun generate(files: List<KtFile>, analysisResult: AnalysisResult): GenerationState {
+        val state = GenerationState.Builder(
+            environment.project,
+            ClassBuilderFactories.BINARIES,
+            analysisResult.moduleDescriptor,
+            analysisResult.bindingContext,
+            files,
+            environment.configuration
+        ).build()
+        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION)
+        return state
+    }
+
+    fun generateIr(files: List<KtFile>, analysisResult: AnalysisResult): IrModuleFragment {
+        val psi2ir = Psi2IrTranslator(environment.configuration.languageVersionSettings)
+        val context = psi2ir.createGeneratorContext(analysisResult.moduleDescriptor, analysisResult.bindingContext)
+        return psi2ir.generateModuleFragment(context, files)
+    }
+
+    fun generatedClasses(state: GenerationState): List<ClassNode> =
+        state.factory.asList().filter { it.relativePath.endsWith(".class") }.map { outputFile ->
+            ClassNode().also { ClassReader(outputFile.asByteArray()).accept(it, ClassReader.SKIP_FRAMES) }
+        }
+
+    fun dispose() {
+        Disposer.dispose(disposable)
+    }
+
+    companion object {
+        const val CORPUS_PATH = "compiler/benchmarks/corpus"
+
+        const val DIAGNOSTICS_TEST_DATA_PATH = "compiler/testData/diagnostics"
+
+        private val DIAGNOSTIC_MARKUP = Regex("<!>|<!.*?!>")
+
+        private fun readCorpus(): List<Pair<String, String>> =
+            File(CORPUS_PATH).listFiles { file -> file.extension == "kt" }.orEmpty()
+                .sortedBy { it.name }
+                .map { it.name to it.readText() }
+                .also {
+                    check(it.isNotEmpty()) { "No benchmark sources in ${File(CORPUS_PATH).absolutePath}, run benchmarks from the repository root" }
+                }
+
+        // Sources of the given diagnostic tests (relative to compiler/testData/diagnostics) without the diagnostic markup
+        @JvmStatic
+        fun readDiagnosticTests(paths: List<String>): List<Pair<String, String>> =
+            paths.map { path ->
+                val file = File(DIAGNOSTICS_TEST_DATA_PATH, path)
+                check(file.isFile) { "No diagnostic test ${file.absolutePath}, run benchmarks from the repository root" }
+                file.name to file.readText().replace(DIAGNOSTIC_MARKUP, "")
+            }
+
+        // Used heap after full GCs; the difference of two such values approximates the size of the objects allocated in between
+        // which are still reachable
+        @JvmStatic
+        fun usedHeapAfterGc(): Long {
+            val runtime = Runtime.getRuntime()
+            repeat(3) { System.gc() }
+            return runtime.totalMemory() - runtime.freeMemory()
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import com.intellij.psi.tree.IElementType;
+import kotlin.Pair;
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.lexer.KotlinLexer;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FrontendBenchmark {
+    private BenchmarkCompilation compilation;
+    private List<KtFile> files;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compilation = new BenchmarkCompilation();
+        files = compilation.parse();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        compilation.dispose();
+    }
+
+    @Benchmark
+    public void lexer(Blackhole blackhole) {
+        KotlinLexer lexer = new KotlinLexer();
+        for (Pair<String, String> source : compilation.getCorpus()) {
+            lexer.start(source.getSecond());
+            IElementType token;
+            while ((token = lexer.getTokenType()) != null) {
+                blackhole.consume(token);
+                lexer.advance();
+            }
+        }
+    }
+
+    @Benchmark
+    public List<KtFile> parsing() {
+        return compilation.parse();
+    }
+
+    @Benchmark
+    public AnalysisResult analysis() {
+        return compilation.analyze(files);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class InferenceBenchmark {
+    // Diagnostic tests with nested generic calls and lambdas, which are expensive for the new inference
+    private static final List<String> CASES = Arrays.asList(
+            "tests/inference/nestedCalls/kt3395.kt",
+            "tests/inference/nestedCalls/makeNullableIfSafeCall.kt",
+            "tests/inference/regressions/kt2179.kt",
+            "tests/inference/regressions/kt3007.kt",
+            "tests/inference/dependOnExpectedType.kt",
+            "tests/inference/mapFunction.kt",
+            "tests/inference/coercionToUnit/nonPropagationOfCoercionToUnitInsideNestedLambda.kt",
+            "testsWithStdLib/coroutines/inference/nestedLambdaInferenceWithListMap.kt",
+            "testsWithStdLib/coroutines/inference/variableCallInsideBuilderFunction.kt"
+    );
+
+    private BenchmarkCompilation compilation;
+    private List<KtFile> files;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compilation = new BenchmarkCompilation(BenchmarkCompilation.readDiagnosticTests(CASES), true);
+        files = compilation.parse();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        compilation.dispose();
+    }
+
+    @Benchmark
+    public AnalysisResult newInference() {
+        return compilation.analyze(files);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.ir.declarations.IrModuleFragment;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IrBenchmark {
+    private BenchmarkCompilation compilation;
+    private List<KtFile> files;
+    private AnalysisResult analysisResult;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compilation = new BenchmarkCompilation();
+        files = compilation.parse();
+        analysisResult = compilation.analyze(files);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        compilation.dispose();
+    }
+
+    // IR generation (psi2ir) for the corpus; run with "-prof gc" to see the allocated memory per operation
+    @Benchmark
+    public IrModuleFragment psi2ir() {
+        return compilation.generateIr(files, analysisResult);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapUsage {
+        // Heap retained by the IR of the corpus, including symbols and types
+        public long retainedBytes;
+    }
+
+    // Reports the heap retained by the IR of the corpus as the "retainedBytes" secondary result
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public void retainedIr(HeapUsage heapUsage, Blackhole blackhole) {
+        long before = BenchmarkCompilation.usedHeapAfterGc();
+        IrModuleFragment module = compilation.generateIr(files, analysisResult);
+        heapUsage.retainedBytes = BenchmarkCompilation.usedHeapAfterGc() - before;
+        blackhole.consume(module);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import kotlin.Metadata;
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmProtoBufUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+    // A large multi-file class part and a regular class from the stdlib
+    private Metadata packageMetadata;
+    private Metadata classMetadata;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException {
+        packageMetadata = Class.forName("kotlin.collections.CollectionsKt___CollectionsKt").getAnnotation(Metadata.class);
+        classMetadata = Class.forName("kotlin.text.Regex").getAnnotation(Metadata.class);
+    }
+
+    @Benchmark
+    public Object readPackageProto() {
+        return JvmProtoBufUtil.readPackageDataFrom(packageMetadata.d1(), packageMetadata.d2());
+    }
+
+    @Benchmark
+    public Object readClassProto() {
+        return JvmProtoBufUtil.readClassDataFrom(classMetadata.d1(), classMetadata.d2());
+    }
+
+    // Reading with a member index, as the compiler does, parses no functions, properties and type aliases
+    @Benchmark
+    public Object readPackageProtoWithMemberIndex() {
+        return JvmProtoBufUtil.readPackageDataWithMemberIndexFrom(packageMetadata.d1(), packageMetadata.d2());
+    }
+
+    @Benchmark
+    public Object readClassProtoWithMemberIndex() {
+        return JvmProtoBufUtil.readClassDataWithMemberIndexFrom(classMetadata.d1(), classMetadata.d2());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns;
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
+import org.jetbrains.kotlin.descriptors.annotations.Annotations;
+import org.jetbrains.kotlin.types.*;
+import org.jetbrains.kotlin.types.checker.NewKotlinTypeChecker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TypeCheckerBenchmark {
+    private KotlinType listOfString;
+    private KotlinType collectionOfNullableAny;
+    private KotlinType iterableOfInt;
+    private KotlinType arrayOfString;
+    private KotlinType arrayOfOutAny;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        KotlinBuiltIns builtIns = DefaultBuiltIns.getInstance();
+        listOfString = KotlinTypeFactory.simpleNotNullType(
+                Annotations.Companion.getEMPTY(), builtIns.getList(),
+                Collections.singletonList(new TypeProjectionImpl(builtIns.getStringType())));
+        collectionOfNullableAny = KotlinTypeFactory.simpleNotNullType(
+                Annotations.Companion.getEMPTY(), builtIns.getCollection(),
+                Collections.singletonList(new TypeProjectionImpl(builtIns.getNullableAnyType())));
+        iterableOfInt = KotlinTypeFactory.simpleNotNullType(
+                Annotations.Companion.getEMPTY(), builtIns.getIterable(),
+                Collections.singletonList(new TypeProjectionImpl(builtIns.getIntType())));
+        arrayOfString = builtIns.getArrayType(Variance.INVARIANT, builtIns.getStringType());
+        arrayOfOutAny = builtIns.getArrayType(Variance.OUT_VARIANCE, builtIns.getAnyType());
+    }
+
+    @Benchmark
+    public boolean covariantCollectionSubtype() {
+        return NewKotlinTypeChecker.INSTANCE.isSubtypeOf(listOfString, collectionOfNullableAny);
+    }
+
+    @Benchmark
+    public boolean notSubtype() {
+        return NewKotlinTypeChecker.INSTANCE.isSubtypeOf(listOfString, iterableOfInt);
+    }
+
+    @Benchmark
+    public boolean projectedArraySubtype() {
+        return NewKotlinTypeChecker.INSTANCE.isSubtypeOf(arrayOfString, arrayOfOutAny);
+    }
+
+    @Benchmark
+    public boolean equalTypes() {
+        return NewKotlinTypeChecker.INSTANCE.equalTypes(listOfString, listOfString);
+    }
+}
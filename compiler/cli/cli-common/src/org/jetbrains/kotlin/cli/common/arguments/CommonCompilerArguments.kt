@@ -184,7 +184,7 @@ abstract class CommonCompilerArguments : CommonToolArguments() {
     @Argument(
         value = "-Xdump-perf",
         valueDescription = "<path>",
-        description = "Dump detailed performance statistics to the specified file"
+        description = "Dump detailed performance statistics to the specified file, as JSON in the Chrome trace format if the file name ends with .json"
     )
     var dumpPerf: String? by NullableStringFreezableVar(null)
 
@@ -281,6 +281,33 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var allowNoSourceFiles: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xbackend-threads",
+        valueDescription = "<N>",
+        description = "Generate code for the modules of a multi-module chunk (-Xbuild-file) in parallel using N threads (non-IR backend only, no effect on single-module compilation)"
+    )
+    var backendThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xclasspath-index-dir",
+        valueDescription = "<path>",
+        description = "Directory to store the index of packages in classpath jars, reused by subsequent compilations"
+    )
+    var classpathIndexDirectory: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xoptimization-threads",
+        valueDescription = "<N>",
+        description = "Optimize bytecode of the methods of each generated class in parallel using N threads. Generated classes are equivalent, but their constant pool order may differ"
+    )
+    var optimizationThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xno-stack-map-frames",
+        description = "Don't compute stack map frames for JVM target 1.6. Speeds up code generation, but the JVM verifies such classes slower"
+    )
+    var noStackMapFrames: Boolean by FreezableVar(false)
+
     override fun configureAnalysisFlags(collector: MessageCollector): MutableMap<AnalysisFlag<*>, Any> {
         val result = super.configureAnalysisFlags(collector)
         result[JvmAnalysisFlags.strictMetadataVersionSemantics] = strictMetadataVersionSemantics
@@ -177,7 +177,7 @@ class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
         }
 
         if (produceKind == ProduceKind.JS || produceKind == ProduceKind.DEFAULT) {
-            val phaseConfig = createPhaseConfig(jsPhases, arguments, messageCollector)
+            val phaseConfig = createPhaseConfig(jsPhases, arguments, messageCollector, performanceManager)
 
             val compiledModule = compile(
                 project,
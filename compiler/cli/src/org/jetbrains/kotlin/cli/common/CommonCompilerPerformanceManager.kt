@@ -8,17 +8,37 @@ package org.jetbrains.kotlin.cli.common
 import org.jetbrains.kotlin.util.PerformanceCounter
 import java.io.File
 import java.lang.management.ManagementFactory
+import java.util.*
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 abstract class CommonCompilerPerformanceManager(private val presentableName: String) {
+    // Modules of a chunk and IR files may be processed concurrently, so measurements can be reported from several threads
     @Suppress("MemberVisibilityCanBePrivate")
-    protected val measurements: MutableList<PerformanceMeasurement> = mutableListOf()
-    protected var isEnabled: Boolean = false
+    protected val measurements: MutableList<PerformanceMeasurement> = Collections.synchronizedList(mutableListOf())
+    var isEnabled: Boolean = false
+        private set
     private var initStartNanos = PerformanceCounter.currentTime()
     private var analysisStart: Long = 0
+    private var analysisStartAllocatedBytes: Long? = null
     private var generationStart: Long = 0
+    private var generationStartAllocatedBytes: Long? = null
+    private val generationWorkersAllocatedBytes = AtomicLong()
+    private val traceEvents: MutableList<TraceEvent> = Collections.synchronizedList(mutableListOf())
+    // Phases which run once per file are reported once per file, but are aggregated by name in the measurements
+    private val phases = LinkedHashMap<String, PhaseTotal>()
+    private val peakSampledHeapBytes = AtomicLong()
+    private val signatureCacheHits = AtomicLong()
+    private val signatureCacheMisses = AtomicLong()
 
-    fun getMeasurementResults(): List<PerformanceMeasurement> = measurements
+    private class TraceEvent(val name: String, val threadId: Long, val startNanos: Long, val durationNanos: Long)
+
+    private class PhaseTotal(val depth: Int) {
+        var count = 0
+        var durationNanos = 0L
+    }
+
+    fun getMeasurementResults(): List<PerformanceMeasurement> = synchronized(measurements) { measurements.toList() }
 
     fun enableCollectingPerformanceStatistics() {
         isEnabled = true
@@ -34,29 +54,139 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         if (!isEnabled) return
         recordGcTime()
         recordJitCompilationTime()
+        recordPhaseMeasurements()
+        recordSignatureCacheUsage()
+        recordPeakMemoryUsage()
         recordPerfCountersMeasurements()
     }
 
     open fun notifyAnalysisStarted() {
         analysisStart = PerformanceCounter.currentTime()
+        analysisStartAllocatedBytes = currentThreadAllocatedBytes()
     }
 
     open fun notifyAnalysisFinished(files: Int, lines: Int, additionalDescription: String?) {
         val time = PerformanceCounter.currentTime() - analysisStart
-        measurements += CodeAnalysisMeasurement(files, lines, TimeUnit.NANOSECONDS.toMillis(time), additionalDescription)
+        val allocatedBytes = allocatedBytesSince(analysisStartAllocatedBytes)
+        measurements += CodeAnalysisMeasurement(files, lines, TimeUnit.NANOSECONDS.toMillis(time), additionalDescription, allocatedBytes)
+        recordTraceEvent("Analysis " + (additionalDescription ?: "").trim(), analysisStart, time)
+    }
+
+    // Called after the analysis with the number of entries in each slice of the binding context, largest slices first
+    fun notifySliceSizes(sliceSizes: () -> Map<String, Int>) {
+        if (!isEnabled) return
+        measurements += SliceSizesMeasurement(sliceSizes())
     }
 
     open fun notifyGenerationStarted() {
         generationStart = PerformanceCounter.currentTime()
+        generationStartAllocatedBytes = currentThreadAllocatedBytes()
+        generationWorkersAllocatedBytes.set(0)
     }
 
     open fun notifyGenerationFinished(lines: Int, files: Int, additionalDescription: String) {
         val time = PerformanceCounter.currentTime() - generationStart
-        measurements += CodeGenerationMeasurement(lines, files, TimeUnit.NANOSECONDS.toMillis(time), additionalDescription)
+        val allocatedBytes = allocatedBytesSince(generationStartAllocatedBytes)?.let { it + generationWorkersAllocatedBytes.get() }
+        measurements += CodeGenerationMeasurement(lines, files, TimeUnit.NANOSECONDS.toMillis(time), additionalDescription, allocatedBytes)
+        recordTraceEvent("Generation " + additionalDescription.trim(), generationStart, time)
+    }
+
+    // Called on a thread which generates code for the compiler thread, e.g. for a module with -Xbackend-threads, before the work.
+    // The result is passed to notifyGenerationWorkerFinished, so that the allocations of the thread count in the generation measurement
+    fun notifyGenerationWorkerStarted(): Long? = currentThreadAllocatedBytes()
+
+    fun notifyGenerationWorkerFinished(startAllocatedBytes: Long?) {
+        allocatedBytesSince(startAllocatedBytes)?.let { generationWorkersAllocatedBytes.addAndGet(it) }
+    }
+
+    // Called after code generation of a module with the number of hits and misses of the method signature cache of its type mapper
+    fun notifySignatureCacheUsage(hits: Long, misses: Long) {
+        if (!isEnabled) return
+        signatureCacheHits.addAndGet(hits)
+        signatureCacheMisses.addAndGet(misses)
+    }
+
+    // Called by the IR phaser (see PhaseConfig.phaseTimeListener) after each run of a named phase, nested phases are reported before
+    // the phase containing them. Phases of the frontend and of the CLI are reported in the same way, see measurePhase.
+    // Every run is a separate trace event, while the measurements contain the total time of each phase.
+    fun notifyPhaseFinished(phaseName: String, depth: Int, startNanos: Long, durationNanos: Long) {
+        if (!isEnabled) return
+        synchronized(phases) {
+            val total = phases.getOrPut(phaseName) { PhaseTotal(depth) }
+            total.count++
+            total.durationNanos += durationNanos
+        }
+        recordTraceEvent(phaseName, startNanos, durationNanos)
     }
 
+    // Measures a phase which is not run by the IR phaser, e.g. parsing or writing of class files
+    inline fun <T> measurePhase(phaseName: String, body: () -> T): T {
+        val startNanos = PerformanceCounter.currentTime()
+        try {
+            return body()
+        } finally {
+            notifyPhaseFinished(phaseName, 0, startNanos, PerformanceCounter.currentTime() - startNanos)
+        }
+    }
+
+    // Writes the report as JSON if the destination has the ".json" extension, and as plain text otherwise.
+    // The JSON report is a valid Chrome trace file (chrome://tracing), which additionally contains all measurements in
+    // the "measurements" array
     fun dumpPerformanceReport(destination: File) {
-        destination.writeBytes(createPerformanceReport())
+        val report = if (destination.extension.equals("json", ignoreCase = true)) createJsonPerformanceReport()
+        else createPerformanceReport()
+        destination.writeBytes(report)
+    }
+
+    private fun recordTraceEvent(name: String, startNanos: Long, durationNanos: Long) {
+        if (!isEnabled) return
+        traceEvents += TraceEvent(name, Thread.currentThread().id, startNanos, durationNanos)
+        sampleHeapUsage()
+    }
+
+    private fun sampleHeapUsage() {
+        val used = ManagementFactory.getMemoryMXBean().heapMemoryUsage.used
+        while (true) {
+            val peak = peakSampledHeapBytes.get()
+            if (used <= peak || peakSampledHeapBytes.compareAndSet(peak, used)) return
+        }
+    }
+
+    // Allocations are measured per thread: the thread running the compiler, and generation workers which report themselves
+    private fun currentThreadAllocatedBytes(): Long? {
+        if (!isEnabled) return null
+        val bean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean ?: return null
+        if (!bean.isThreadAllocatedMemorySupported || !bean.isThreadAllocatedMemoryEnabled) return null
+        return bean.getThreadAllocatedBytes(Thread.currentThread().id).takeIf { it >= 0 }
+    }
+
+    private fun allocatedBytesSince(start: Long?): Long? {
+        if (start == null) return null
+        return currentThreadAllocatedBytes()?.let { it - start }
+    }
+
+    // Heap usage is sampled at the end of analysis, generation and every phase. Peaks of the individual memory pools cannot be
+    // summed up instead, because they are reached at different times.
+    private fun recordPeakMemoryUsage() {
+        sampleHeapUsage()
+        measurements += PeakMemoryMeasurement(peakSampledHeapBytes.get())
+    }
+
+    private fun recordPhaseMeasurements() {
+        synchronized(phases) {
+            for ((name, total) in phases) {
+                measurements += PhaseMeasurement(name, total.depth, total.count, total.durationNanos)
+            }
+            phases.clear()
+        }
+    }
+
+    private fun recordSignatureCacheUsage() {
+        val hits = signatureCacheHits.getAndSet(0)
+        val misses = signatureCacheMisses.getAndSet(0)
+        if (hits + misses > 0) {
+            measurements += SignatureCacheMeasurement(hits, misses)
+        }
     }
 
     private fun recordGcTime() {
@@ -85,6 +215,68 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
 
     private fun createPerformanceReport(): ByteArray = buildString {
         appendln("$presentableName performance report")
-        measurements.map { it.render() }.sorted().forEach { appendln(it) }
+        val (phases, other) = getMeasurementResults().partition { it is PhaseMeasurement }
+        other.map { it.render() }.sorted().forEach { appendln(it) }
+        phases.forEach { appendln(it.render()) }
     }.toByteArray()
+
+    private fun createJsonPerformanceReport(): ByteArray = buildString {
+        val measurements = getMeasurementResults()
+        val traceEvents = synchronized(traceEvents) { traceEvents.toList() }
+        val origin = traceEvents.minBy { it.startNanos }?.startNanos ?: 0
+        append("{\n")
+        append("  \"compiler\": ").appendJsonValue(presentableName).append(",\n")
+        append("  \"displayTimeUnit\": \"ms\",\n")
+        append("  \"measurements\": [")
+        measurements.forEachIndexed { index, measurement ->
+            append(if (index == 0) "\n    " else ",\n    ")
+            append("{")
+            measurement.renderProperties().entries.filter { it.value != null }.forEachIndexed { i, (key, value) ->
+                if (i > 0) append(", ")
+                appendJsonValue(key).append(": ").appendJsonValue(value)
+            }
+            append("}")
+        }
+        append("\n  ],\n")
+        append("  \"traceEvents\": [")
+        traceEvents.forEachIndexed { index, event ->
+            append(if (index == 0) "\n    " else ",\n    ")
+            append("{\"name\": ").appendJsonValue(event.name)
+            append(", \"ph\": \"X\", \"pid\": 1, \"tid\": ").append(event.threadId)
+            append(", \"ts\": ").append((event.startNanos - origin) / 1000)
+            append(", \"dur\": ").append(event.durationNanos / 1000)
+            append("}")
+        }
+        append("\n  ]\n")
+        append("}\n")
+    }.toByteArray()
+
+    private fun StringBuilder.appendJsonValue(value: Any?): StringBuilder {
+        when (value) {
+            null -> append("null")
+            is Number, is Boolean -> append(value.toString())
+            is Map<*, *> -> {
+                append('{')
+                value.entries.forEachIndexed { index, (key, entryValue) ->
+                    if (index > 0) append(", ")
+                    appendJsonValue(key.toString()).append(": ").appendJsonValue(entryValue)
+                }
+                append('}')
+            }
+            else -> {
+                append('"')
+                for (c in value.toString()) {
+                    when {
+                        c == '"' -> append("\\\"")
+                        c == '\\' -> append("\\\\")
+                        c == '\n' -> append("\\n")
+                        c < ' ' -> append(String.format("\\u%04x", c.toInt()))
+                        else -> append(c)
+                    }
+                }
+                append('"')
+            }
+        }
+        return this
+    }
 }
@@ -8,6 +8,7 @@ package org.jetbrains.kotlin.cli.common
 import org.jetbrains.kotlin.backend.common.phaser.AnyNamedPhase
 import org.jetbrains.kotlin.backend.common.phaser.CompilerPhase
 import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.backend.common.phaser.PhaseTimeListener
 import org.jetbrains.kotlin.backend.common.phaser.toPhaseMap
 import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
@@ -16,7 +17,8 @@ import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 fun createPhaseConfig(
     compoundPhase: CompilerPhase<*, *, *>,
     arguments: CommonCompilerArguments,
-    messageCollector: MessageCollector
+    messageCollector: MessageCollector,
+    performanceManager: CommonCompilerPerformanceManager? = null
 ): PhaseConfig {
     fun report(message: String) = messageCollector.report(CompilerMessageSeverity.ERROR, message)
 
@@ -42,6 +44,13 @@ fun createPhaseConfig(
     val needProfiling = arguments.profilePhases
     val checkConditions = arguments.checkPhaseConditions
     val checkStickyConditions = arguments.checkStickyPhaseConditions
+    val phaseTimeListener = if (performanceManager != null && (arguments.reportPerf || arguments.dumpPerf != null)) {
+        object : PhaseTimeListener {
+            override fun phaseFinished(phaseName: String, depth: Int, startNanos: Long, durationNanos: Long) {
+                performanceManager.notifyPhaseFinished(phaseName, depth, startNanos, durationNanos)
+            }
+        }
+    } else null
 
     return PhaseConfig(
         compoundPhase,
@@ -57,7 +66,8 @@ fun createPhaseConfig(
         namesOfElementsExcludedFromDumping,
         needProfiling,
         checkConditions,
-        checkStickyConditions
+        checkStickyConditions,
+        phaseTimeListener
     ).also {
         if (arguments.listPhases) {
             it.list()
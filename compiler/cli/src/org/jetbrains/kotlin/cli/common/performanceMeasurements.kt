@@ -7,44 +7,114 @@ package org.jetbrains.kotlin.cli.common
 
 interface PerformanceMeasurement {
     fun render(): String
+
+    // Values of the measurement for machine-readable reports, see CommonCompilerPerformanceManager.dumpPerformanceReport
+    fun renderProperties(): Map<String, Any?> = mapOf("kind" to "OTHER", "text" to render())
 }
 
 
 class JitCompilationMeasurement(private val milliseconds: Long) : PerformanceMeasurement {
     override fun render(): String = "JIT time is $milliseconds ms"
+
+    override fun renderProperties(): Map<String, Any?> = mapOf("kind" to "JIT", "ms" to milliseconds)
 }
 
 
 class CompilerInitializationMeasurement(private val milliseconds: Long) : PerformanceMeasurement {
     override fun render(): String = "INIT: Compiler initialized in $milliseconds ms"
+
+    override fun renderProperties(): Map<String, Any?> = mapOf("kind" to "INIT", "ms" to milliseconds)
 }
 
 
-class CodeAnalysisMeasurement(private val files: Int, val lines: Int, private val milliseconds: Long, private val description: String?) :
-    PerformanceMeasurement {
+class CodeAnalysisMeasurement(
+    private val files: Int,
+    val lines: Int,
+    private val milliseconds: Long,
+    private val description: String?,
+    private val allocatedBytes: Long? = null
+) : PerformanceMeasurement {
 
     private val speed: Double = lines.toDouble() * 1000 / milliseconds
 
     override fun render(): String =
         "ANALYZE: $files files ($lines lines) ${description ?: ""}in $milliseconds ms - ${"%.3f".format(speed)} loc/s"
+
+    override fun renderProperties(): Map<String, Any?> = mapOf(
+        "kind" to "ANALYZE", "files" to files, "lines" to lines, "ms" to milliseconds,
+        "description" to description?.trim(), "allocatedBytes" to allocatedBytes
+    )
 }
 
 
-class CodeGenerationMeasurement(private val files: Int, val lines: Int, private val milliseconds: Long, private val description: String?) :
-    PerformanceMeasurement {
+class CodeGenerationMeasurement(
+    private val files: Int,
+    val lines: Int,
+    private val milliseconds: Long,
+    private val description: String?,
+    private val allocatedBytes: Long? = null
+) : PerformanceMeasurement {
 
     private val speed: Double = lines.toDouble() * 1000 / milliseconds
 
     override fun render(): String =
         "GENERATE: $files files ($lines lines) ${description}in $milliseconds ms - ${"%.3f".format(speed)} loc/s"
+
+    override fun renderProperties(): Map<String, Any?> = mapOf(
+        "kind" to "GENERATE", "files" to files, "lines" to lines, "ms" to milliseconds,
+        "description" to description?.trim(), "allocatedBytes" to allocatedBytes
+    )
 }
 
 
 class GarbageCollectionMeasurement(private val garbageCollectionKind: String, private val milliseconds: Long) : PerformanceMeasurement {
     override fun render(): String = "GC time for $garbageCollectionKind is $milliseconds ms"
+
+    override fun renderProperties(): Map<String, Any?> = mapOf("kind" to "GC", "collector" to garbageCollectionKind, "ms" to milliseconds)
 }
 
 
 class PerformanceCounterMeasurement(private val counterReport: String) : PerformanceMeasurement {
     override fun render(): String = counterReport
+
+    override fun renderProperties(): Map<String, Any?> = mapOf("kind" to "COUNTER", "text" to counterReport)
+}
+
+
+class SignatureCacheMeasurement(private val hits: Long, private val misses: Long) : PerformanceMeasurement {
+    override fun render(): String = "SIGNATURE CACHE: $hits hits, $misses misses"
+
+    override fun renderProperties(): Map<String, Any?> = mapOf("kind" to "SIGNATURE_CACHE", "hits" to hits, "misses" to misses)
+}
+
+
+// Total time of all runs of a phase, per-file phases run once for every file
+class PhaseMeasurement(val phaseName: String, val depth: Int, val count: Int, val durationNanos: Long) : PerformanceMeasurement {
+    private val milliseconds: Long get() = durationNanos / 1_000_000
+
+    override fun render(): String =
+        "PHASE: ${"  ".repeat(depth)}$phaseName in $milliseconds ms" + (if (count > 1) " ($count runs)" else "")
+
+    override fun renderProperties(): Map<String, Any?> =
+        mapOf("kind" to "PHASE", "name" to phaseName, "depth" to depth, "runs" to count, "ms" to milliseconds)
+}
+
+
+class PeakMemoryMeasurement(private val heapBytes: Long) : PerformanceMeasurement {
+    override fun render(): String = "MEMORY: peak sampled heap usage is ${heapBytes / (1024 * 1024)} MB"
+
+    override fun renderProperties(): Map<String, Any?> = mapOf("kind" to "MEMORY", "peakSampledHeapBytes" to heapBytes)
+}
+
+
+class SliceSizesMeasurement(private val sliceSizes: Map<String, Int>) : PerformanceMeasurement {
+    override fun render(): String =
+        "SLICES: " + sliceSizes.entries.take(RENDERED_SLICES).joinToString { (slice, size) -> "$slice $size" } +
+                (if (sliceSizes.size > RENDERED_SLICES) ", ..." else "")
+
+    override fun renderProperties(): Map<String, Any?> = mapOf("kind" to "SLICES", "sizes" to sliceSizes)
+
+    private companion object {
+        const val RENDERED_SLICES = 10
+    }
 }
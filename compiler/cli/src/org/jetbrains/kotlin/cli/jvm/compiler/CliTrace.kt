@@ -15,6 +15,7 @@ import org.jetbrains.kotlin.resolve.BindingTraceContext
 import org.jetbrains.kotlin.resolve.CodeAnalyzerInitializer
 import org.jetbrains.kotlin.resolve.lazy.KotlinCodeAnalyzer
 import org.jetbrains.kotlin.util.slicedMap.ReadOnlySlice
+import org.jetbrains.kotlin.util.slicedMap.SlicePartitionedSlicedMap
 import org.jetbrains.kotlin.util.slicedMap.WritableSlice
 import kotlin.properties.Delegates
 
@@ -57,9 +58,16 @@ class NoScopeRecordCliBindingTrace : CliBindingTrace() {
     }
 }
 
-open class CliBindingTrace @TestOnly constructor() : BindingTraceContext() {
+open class CliBindingTrace private constructor(private val slicedMap: SlicePartitionedSlicedMap) : BindingTraceContext(slicedMap) {
+    @TestOnly
+    constructor() : this(SlicePartitionedSlicedMap(false, FREQUENT_SLICES))
+
     private var kotlinCodeAnalyzer: KotlinCodeAnalyzer? = null
 
+    // Number of entries in each slice, largest slices first
+    val sliceSizes: Map<WritableSlice<*, *>, Int>
+        get() = slicedMap.sliceSizes
+
     override fun toString(): String {
         return CliBindingTrace::class.java.name
     }
@@ -85,3 +93,15 @@ open class CliBindingTrace @TestOnly constructor() : BindingTraceContext() {
         return value
     }
 }
+
+// Slices which have an entry for most expressions or calls, each of them is stored in its own table (see SlicePartitionedSlicedMap)
+private val FREQUENT_SLICES = listOf<WritableSlice<*, *>>(
+    BindingContext.EXPRESSION_TYPE_INFO,
+    BindingContext.EXPECTED_EXPRESSION_TYPE,
+    BindingContext.PROCESSED,
+    BindingContext.USED_AS_EXPRESSION,
+    BindingContext.CALL,
+    BindingContext.RESOLVED_CALL,
+    BindingContext.REFERENCE_TARGET,
+    BindingContext.TYPE
+)
@@ -91,6 +91,7 @@ import org.jetbrains.kotlin.cli.jvm.modules.CliJavaModuleResolver
 import org.jetbrains.kotlin.cli.jvm.modules.CoreJrtFileSystem
 import org.jetbrains.kotlin.codegen.extensions.ClassBuilderInterceptorExtension
 import org.jetbrains.kotlin.codegen.extensions.ExpressionCodegenExtension
+import org.jetbrains.kotlin.codegen.inline.CompiledInlineMethodCache
 import org.jetbrains.kotlin.compiler.plugin.ComponentRegistrar
 import org.jetbrains.kotlin.config.APPEND_JAVA_SOURCE_ROOTS_HANDLER_KEY
 import org.jetbrains.kotlin.config.CompilerConfiguration
@@ -241,8 +242,10 @@ class KotlinCoreEnvironment private constructor(
                 initialRoots.partition { (file) -> file.isDirectory || file.extension != JavaFileType.DEFAULT_EXTENSION }
 
         // REPL and kapt2 update classpath dynamically
-        rootsIndex = JvmDependenciesDynamicCompoundIndex().apply {
-            addIndex(JvmDependenciesIndexImpl(roots))
+        val jarPackagesStorage =
+            configuration.get(JVMConfigurationKeys.CLASSPATH_INDEX_DIRECTORY)?.let { JarPackagesIndexStorage.getInstance(it) }
+        rootsIndex = JvmDependenciesDynamicCompoundIndex(jarPackagesStorage).apply {
+            addIndex(JvmDependenciesIndexImpl(roots, jarPackagesStorage))
             updateClasspathFromRootsIndex(this)
         }
 
@@ -503,8 +506,10 @@ class KotlinCoreEnvironment private constructor(
             synchronized(APPLICATION_LOCK) {
                 val environment = ourApplicationEnvironment ?: return
                 ourApplicationEnvironment = null
+                KotlinBinaryClassCache.clearCache()
                 Disposer.dispose(environment.parentDisposable)
                 ZipHandler.clearFileAccessorCache()
+                CompiledInlineMethodCache.shared.clear()
             }
         }
 
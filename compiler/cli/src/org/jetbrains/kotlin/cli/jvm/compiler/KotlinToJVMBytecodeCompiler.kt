@@ -34,6 +34,7 @@ import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
 import org.jetbrains.kotlin.backend.jvm.JvmIrCodegenFactory
 import org.jetbrains.kotlin.backend.jvm.jvmPhases
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.CommonCompilerPerformanceManager
 import org.jetbrains.kotlin.cli.common.ExitCode
 import org.jetbrains.kotlin.cli.common.checkKotlinPackageUsage
 import org.jetbrains.kotlin.cli.common.config.addKotlinSourceRoot
@@ -47,6 +48,7 @@ import org.jetbrains.kotlin.cli.jvm.config.*
 import org.jetbrains.kotlin.codegen.*
 import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.GenerationStateEventCallback
+import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
 import org.jetbrains.kotlin.config.*
 import org.jetbrains.kotlin.fileClasses.JvmFileClassUtil
 import org.jetbrains.kotlin.fir.FirSession
@@ -70,6 +72,7 @@ import org.jetbrains.kotlin.platform.TargetPlatform
 import org.jetbrains.kotlin.platform.jvm.JvmPlatforms
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtTreeVisitorVoid
 import org.jetbrains.kotlin.resolve.PlatformDependentAnalyzerServices
 import org.jetbrains.kotlin.resolve.jvm.KotlinJavaPsiFacade
 import org.jetbrains.kotlin.resolve.jvm.platform.JvmPlatformAnalyzerServices
@@ -78,16 +81,46 @@ import org.jetbrains.kotlin.utils.tryConstructClassFromStringArgs
 import java.io.File
 import java.lang.reflect.InvocationTargetException
 import java.net.URLClassLoader
+import java.util.concurrent.Callable
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 object KotlinToJVMBytecodeCompiler {
+    private val outputFlushLock = Any()
+
     private fun writeOutput(
         configuration: CompilerConfiguration,
         outputFiles: OutputFileCollection,
-        mainClassProvider: MainClassProvider?
+        mainClassProvider: MainClassProvider?,
+        outputJar: StreamingJarWriter? = null
+    ) = measureWriting(configuration) {
+        doWriteOutput(configuration, outputFiles, mainClassProvider, outputJar)
+    }
+
+    private inline fun measureWriting(configuration: CompilerConfiguration, write: () -> Unit) {
+        val performanceManager = configuration.get(CLIConfigurationKeys.PERF_MANAGER)
+        if (performanceManager == null) write() else performanceManager.measurePhase("Write output files", write)
+    }
+
+    private fun doWriteOutput(
+        configuration: CompilerConfiguration,
+        outputFiles: OutputFileCollection,
+        mainClassProvider: MainClassProvider?,
+        outputJar: StreamingJarWriter?
     ) {
         val reportOutputFiles = configuration.getBoolean(CommonConfigurationKeys.REPORT_OUTPUT_FILES)
         val jarPath = configuration.get(JVMConfigurationKeys.OUTPUT_JAR)
         val messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
+        if (jarPath != null && outputJar != null) {
+            outputJar.write(outputFiles) { mainClassProvider?.mainClassFqName }
+            outputJar.finish()
+            if (reportOutputFiles) {
+                messageCollector.report(OUTPUT, OutputMessageUtil.formatOutputMessage(outputJar.sourceFiles, jarPath))
+            }
+            return
+        }
         if (jarPath != null) {
             val includeRuntime = configuration.get(JVMConfigurationKeys.INCLUDE_RUNTIME, false)
             CompileEnvironmentUtil.writeToJar(jarPath, includeRuntime, mainClassProvider?.mainClassFqName, outputFiles)
@@ -102,15 +135,32 @@ object KotlinToJVMBytecodeCompiler {
         outputFiles.writeAll(outputDir, messageCollector, reportOutputFiles)
     }
 
-    private fun createOutputFilesFlushingCallbackIfPossible(configuration: CompilerConfiguration): GenerationStateEventCallback {
+    private fun createOutputFilesFlushingCallbackIfPossible(
+        environment: KotlinCoreEnvironment,
+        configuration: CompilerConfiguration,
+        outputJar: StreamingJarWriter?
+    ): GenerationStateEventCallback {
+        if (outputJar != null) {
+            return GenerationStateEventCallback { state ->
+                measureWriting(configuration) {
+                    outputJar.write(SimpleOutputFileCollection(state.factory.currentOutput)) {
+                        MainClassProvider(state, environment).mainClassFqName
+                    }
+                }
+                state.factory.releaseGeneratedOutput()
+            }
+        }
         if (configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY) == null) {
             return GenerationStateEventCallback.DO_NOTHING
         }
         return GenerationStateEventCallback { state ->
-            val currentOutput = SimpleOutputFileCollection(state.factory.currentOutput)
-            writeOutput(configuration, currentOutput, null)
-            if (!configuration.get(JVMConfigurationKeys.RETAIN_OUTPUT_IN_MEMORY, false)) {
-                state.factory.releaseGeneratedOutput()
+            // Modules of a chunk may be generated concurrently, see generateInParallel
+            synchronized(outputFlushLock) {
+                val currentOutput = SimpleOutputFileCollection(state.factory.currentOutput)
+                writeOutput(configuration, currentOutput, null)
+                if (!configuration.get(JVMConfigurationKeys.RETAIN_OUTPUT_IN_MEMORY, false)) {
+                    state.factory.releaseGeneratedOutput()
+                }
             }
         }
     }
@@ -185,6 +235,19 @@ object KotlinToJVMBytecodeCompiler {
 
         val localFileSystem = VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.FILE_PROTOCOL)
 
+        val backendThreads = projectConfiguration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1)
+        if (backendThreads > 1 && chunk.size > 1 && !projectConfiguration.getBoolean(JVMConfigurationKeys.IR)) {
+            val moduleSources = newLinkedHashMapWithExpectedSize<Module, List<KtFile>>(chunk.size)
+            for (module in chunk) {
+                val ktFiles = module.getSourceFiles(environment, localFileSystem, true, buildFile)
+                if (!checkKotlinPackageUsage(environment, ktFiles)) return false
+                moduleSources[module] = ktFiles
+            }
+
+            outputs.putAll(generateInParallel(environment, projectConfiguration, buildFile, result, moduleSources, backendThreads))
+            return writeOutputs(environment, projectConfiguration, chunk, outputs)
+        }
+
         for (module in chunk) {
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
@@ -198,6 +261,94 @@ object KotlinToJVMBytecodeCompiler {
         return writeOutputs(environment, projectConfiguration, chunk, outputs)
     }
 
+    // Generates the modules of a multi-module chunk on several threads. All files of one module are generated on the same thread,
+    // because they share the mutable state of the module's GenerationState (binding trace, inline cache, class file factory).
+    // Modules share only the analysis result and the environment, which is safe because:
+    // - the analysis is complete and has no errors, so declarations from sources have been resolved by the top-down analyzer and
+    //   codegen only reads the binding context; each state records into its own DelegatingBindingTrace;
+    // - the remaining lazy computations, such as members of deserialized classes, are memoized by LockBasedStorageManager
+    //   under its lock, and they do not record into the binding context;
+    // - caches shared through the environment (KotlinBinaryClassCache, the jar file system, CompiledInlineMethodCache) are
+    //   synchronized, and output is flushed under outputFlushLock.
+    // States are returned in the order of the chunk, so output and diagnostics do not depend on scheduling.
+    private fun generateInParallel(
+        environment: KotlinCoreEnvironment,
+        projectConfiguration: CompilerConfiguration,
+        buildFile: File?,
+        result: AnalysisResult,
+        moduleSources: Map<Module, List<KtFile>>,
+        threads: Int
+    ): Map<Module, GenerationState> {
+        val performanceManager = environment.configuration.get(CLIConfigurationKeys.PERF_MANAGER)
+        performanceManager?.notifyGenerationStarted()
+
+        val executor = Executors.newFixedThreadPool(minOf(threads, moduleSources.size)) { runnable ->
+            Thread(runnable, "Kotlin backend worker").apply { isDaemon = true }
+        }
+        val states = newLinkedHashMapWithExpectedSize<Module, GenerationState>(moduleSources.size)
+        val futures = ArrayList<Pair<Module, Future<GenerationState>>>(moduleSources.size)
+        try {
+            for ((module, ktFiles) in moduleSources) {
+                val moduleConfiguration = projectConfiguration.applyModuleProperties(module, buildFile)
+                futures += module to executor.submit(Callable {
+                    ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+                    val workerAllocatedBytes = performanceManager?.notifyGenerationWorkerStarted()
+                    val state = createGenerationState(environment, moduleConfiguration, result, ktFiles, module)
+                    try {
+                        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION)
+                        performanceManager?.notifySignatureCacheUsage(state.typeMapper)
+                    } catch (e: Throwable) {
+                        state.destroy()
+                        throw e
+                    } finally {
+                        performanceManager?.notifyGenerationWorkerFinished(workerAllocatedBytes)
+                    }
+                    state
+                })
+            }
+            for ((module, future) in futures) {
+                states[module] = try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } catch (e: Throwable) {
+            // Do not leave workers running after the failure: cancel everything not started yet, wait for the rest
+            // and destroy every state that was generated, whether it has been collected or not
+            futures.forEach { (_, future) -> future.cancel(false) }
+            for ((module, future) in futures) {
+                if (module in states) continue
+                try {
+                    future.get().destroy()
+                } catch (ignored: CancellationException) {
+                } catch (ignored: ExecutionException) {
+                } catch (ignored: InterruptedException) {
+                    Thread.currentThread().interrupt()
+                    break
+                }
+            }
+            states.values.forEach(GenerationState::destroy)
+            throw e
+        } finally {
+            executor.shutdown()
+        }
+
+        val allFiles = moduleSources.values.flatten()
+        performanceManager?.notifyGenerationFinished(
+            allFiles.size,
+            environment.countLinesOfCode(allFiles),
+            additionalDescription = "targets " + moduleSources.keys.joinToString { it.getModuleName() + "-" + it.getModuleType() } + " "
+        )
+
+        for (state in states.values) {
+            reportGenerationDiagnostics(environment, result, state)
+        }
+
+        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+        return states
+    }
+
     private fun writeOutputs(
         environment: KotlinCoreEnvironment,
         projectConfiguration: CompilerConfiguration,
@@ -345,7 +496,7 @@ object KotlinToJVMBytecodeCompiler {
 
             val codegenFactory = JvmIrCodegenFactory(moduleConfiguration.get(CLIConfigurationKeys.PHASE_CONFIG) ?: PhaseConfig(jvmPhases))
             val generationState = GenerationState.Builder(
-                environment.project, ClassBuilderFactories.BINARIES,
+                environment.project, binariesClassBuilderFactory(moduleConfiguration),
                 moduleFragment.descriptor, dummyBindingContext, ktFiles,
                 moduleConfiguration
             ).codegenFactory(
@@ -353,7 +504,7 @@ object KotlinToJVMBytecodeCompiler {
             ).withModule(
                 module
             ).onIndependentPartCompilationEnd(
-                createOutputFilesFlushingCallbackIfPossible(moduleConfiguration)
+                createOutputFilesFlushingCallbackIfPossible(environment, moduleConfiguration, null)
             ).build()
 
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
@@ -424,16 +575,30 @@ object KotlinToJVMBytecodeCompiler {
 
         if (!checkKotlinPackageUsage(environment, environment.getSourceFiles())) return false
 
-        val generationState = analyzeAndGenerate(environment) ?: return false
-
+        val outputJar = createStreamingJarWriterIfPossible(environment)
         try {
-            writeOutput(environment.configuration, generationState.factory, MainClassProvider(generationState, environment))
-            return true
+            val generationState = analyzeAndGenerate(environment, outputJar) ?: return false
+
+            try {
+                writeOutput(environment.configuration, generationState.factory, MainClassProvider(generationState, environment), outputJar)
+                return true
+            } finally {
+                generationState.destroy()
+            }
         } finally {
-            generationState.destroy()
+            outputJar?.abort()
         }
     }
 
+    // Generated classes are written to the jar after every source file, unless the output has to be kept in memory
+    private fun createStreamingJarWriterIfPossible(environment: KotlinCoreEnvironment): StreamingJarWriter? {
+        val configuration = environment.configuration
+        val jarPath = configuration.get(JVMConfigurationKeys.OUTPUT_JAR) ?: return null
+        if (configuration.get(JVMConfigurationKeys.RETAIN_OUTPUT_IN_MEMORY, false)) return null
+
+        return StreamingJarWriter(jarPath, configuration.get(JVMConfigurationKeys.INCLUDE_RUNTIME, false))
+    }
+
     fun compileAndExecuteScript(environment: KotlinCoreEnvironment, scriptArgs: List<String>): ExitCode {
         val scriptClass = compileScript(environment) ?: return ExitCode.COMPILATION_ERROR
 
@@ -524,14 +689,17 @@ object KotlinToJVMBytecodeCompiler {
     }
 
     @Suppress("MemberVisibilityCanBePrivate") // Used in ExecuteKotlinScriptMojo
-    fun analyzeAndGenerate(environment: KotlinCoreEnvironment): GenerationState? {
+    fun analyzeAndGenerate(environment: KotlinCoreEnvironment): GenerationState? =
+        analyzeAndGenerate(environment, null)
+
+    private fun analyzeAndGenerate(environment: KotlinCoreEnvironment, outputJar: StreamingJarWriter?): GenerationState? {
         val result = repeatAnalysisIfNeeded(analyze(environment, null), environment, null) ?: return null
 
         if (!result.shouldGenerateCode) return null
 
         result.throwIfError()
 
-        return generate(environment, environment.configuration, result, environment.getSourceFiles(), null)
+        return generate(environment, environment.configuration, result, environment.getSourceFiles(), null, outputJar)
     }
 
     fun analyze(environment: KotlinCoreEnvironment, targetDescription: String?): AnalysisResult? {
@@ -542,6 +710,17 @@ object KotlinToJVMBytecodeCompiler {
         val performanceManager = environment.configuration.get(CLIConfigurationKeys.PERF_MANAGER)
         performanceManager?.notifyAnalysisStarted()
 
+        if (performanceManager != null && performanceManager.isEnabled) {
+            // Files are parsed lazily when the analysis first needs them, so their parsing would be counted in the phases of
+            // the analysis. With the report enabled, the files are parsed in advance, including lazily parsed blocks and lambdas
+            performanceManager.measurePhase("Parse files") {
+                for (file in sourceFiles) {
+                    file.accept(object : KtTreeVisitorVoid() {})
+                }
+            }
+        }
+
+        val trace = NoScopeRecordCliBindingTrace()
         val analyzerWithCompilerReport = AnalyzerWithCompilerReport(collector, environment.configuration.languageVersionSettings)
         analyzerWithCompilerReport.analyzeAndReport(sourceFiles) {
             val project = environment.project
@@ -555,7 +734,7 @@ object KotlinToJVMBytecodeCompiler {
             TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
                 project,
                 sourceFiles,
-                NoScopeRecordCliBindingTrace(),
+                trace,
                 environment.configuration,
                 environment::createPackagePartProvider,
                 sourceModuleSearchScope = scope
@@ -563,6 +742,7 @@ object KotlinToJVMBytecodeCompiler {
         }
 
         performanceManager?.notifyAnalysisFinished(sourceFiles.size, environment.countLinesOfCode(sourceFiles), targetDescription)
+        performanceManager?.notifySliceSizes { trace.sliceSizes.mapKeys { (slice, _) -> slice.toString() } }
 
         val analysisResult = analyzerWithCompilerReport.analysisResult
 
@@ -605,26 +785,10 @@ object KotlinToJVMBytecodeCompiler {
         configuration: CompilerConfiguration,
         result: AnalysisResult,
         sourceFiles: List<KtFile>,
-        module: Module?
+        module: Module?,
+        outputJar: StreamingJarWriter? = null
     ): GenerationState {
-        val isIR = configuration.getBoolean(JVMConfigurationKeys.IR) ||
-                configuration.getBoolean(CommonConfigurationKeys.USE_FIR)
-        val generationState = GenerationState.Builder(
-            environment.project,
-            ClassBuilderFactories.BINARIES,
-            result.moduleDescriptor,
-            result.bindingContext,
-            sourceFiles,
-            configuration
-        )
-            .codegenFactory(
-                if (isIR) JvmIrCodegenFactory(
-                    configuration.get(CLIConfigurationKeys.PHASE_CONFIG) ?: PhaseConfig(jvmPhases)
-                ) else DefaultCodegenFactory
-            )
-            .withModule(module)
-            .onIndependentPartCompilationEnd(createOutputFilesFlushingCallbackIfPossible(configuration))
-            .build()
+        val generationState = createGenerationState(environment, configuration, result, sourceFiles, module, outputJar)
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
@@ -632,6 +796,7 @@ object KotlinToJVMBytecodeCompiler {
         performanceManager?.notifyGenerationStarted()
 
         KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION)
+        performanceManager?.notifySignatureCacheUsage(generationState.typeMapper)
 
         performanceManager?.notifyGenerationFinished(
             sourceFiles.size,
@@ -641,6 +806,53 @@ object KotlinToJVMBytecodeCompiler {
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
+        reportGenerationDiagnostics(environment, result, generationState)
+
+        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+        return generationState
+    }
+
+    private fun CommonCompilerPerformanceManager.notifySignatureCacheUsage(typeMapper: KotlinTypeMapper) {
+        notifySignatureCacheUsage(typeMapper.signatureCacheHits, typeMapper.signatureCacheMisses)
+    }
+
+    private fun binariesClassBuilderFactory(configuration: CompilerConfiguration): ClassBuilderFactory {
+        val jvmTarget = configuration.get(JVMConfigurationKeys.JVM_TARGET) ?: JvmTarget.DEFAULT
+        return if (configuration.getBoolean(JVMConfigurationKeys.NO_STACK_MAP_FRAMES) && jvmTarget == JvmTarget.JVM_1_6)
+            ClassBuilderFactories.BINARIES_WITHOUT_FRAMES
+        else
+            ClassBuilderFactories.BINARIES
+    }
+
+    private fun createGenerationState(
+        environment: KotlinCoreEnvironment,
+        configuration: CompilerConfiguration,
+        result: AnalysisResult,
+        sourceFiles: List<KtFile>,
+        module: Module?,
+        outputJar: StreamingJarWriter? = null
+    ): GenerationState {
+        val isIR = configuration.getBoolean(JVMConfigurationKeys.IR) ||
+                configuration.getBoolean(CommonConfigurationKeys.USE_FIR)
+        return GenerationState.Builder(
+            environment.project,
+            binariesClassBuilderFactory(configuration),
+            result.moduleDescriptor,
+            result.bindingContext,
+            sourceFiles,
+            configuration
+        )
+            .codegenFactory(
+                if (isIR) JvmIrCodegenFactory(
+                    configuration.get(CLIConfigurationKeys.PHASE_CONFIG) ?: PhaseConfig(jvmPhases)
+                ) else DefaultCodegenFactory
+            )
+            .withModule(module)
+            .onIndependentPartCompilationEnd(createOutputFilesFlushingCallbackIfPossible(environment, configuration, outputJar))
+            .build()
+    }
+
+    private fun reportGenerationDiagnostics(environment: KotlinCoreEnvironment, result: AnalysisResult, generationState: GenerationState) {
         AnalyzerWithCompilerReport.reportDiagnostics(
             FilteredJvmDiagnostics(
                 generationState.collectedExtraJvmDiagnostics,
@@ -652,9 +864,6 @@ object KotlinToJVMBytecodeCompiler {
         AnalyzerWithCompilerReport.reportBytecodeVersionErrors(
             generationState.extraJvmDiagnosticsTrace.bindingContext, environment.messageCollector
         )
-
-        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
-        return generationState
     }
 
     private val KotlinCoreEnvironment.messageCollector: MessageCollector
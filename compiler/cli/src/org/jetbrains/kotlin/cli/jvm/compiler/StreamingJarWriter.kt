@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.utils.closeQuietly
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+// Writes the output of a compilation to a jar while the code is being generated, so that generated classes can be released
+// after every source file instead of being kept in memory until the whole jar is written (see CompileEnvironmentUtil.writeToJar).
+// Entries are written to a temporary file next to the jar, which replaces the jar only when the compilation is finished.
+internal class StreamingJarWriter(private val jarPath: File, private val includeRuntime: Boolean) {
+    private var tempFile: File? = null
+    private var stream: JarOutputStream? = null
+    private val entries = HashSet<String>()
+
+    // Sources of all files written to the jar so far, reported as the sources of the jar
+    val sourceFiles = LinkedHashSet<File>()
+
+    // [mainClass] is only computed when the jar is created, i.e. on the first write
+    fun write(outputFiles: OutputFileCollection, mainClass: () -> FqName?) {
+        val stream = stream ?: open(mainClass())
+        try {
+            for (outputFile in outputFiles.asList()) {
+                sourceFiles.addAll(outputFile.sourceFiles)
+                // Written entries can't be replaced, unlike files of the output kept in memory.
+                // Clashing class names are reported by the frontend, so a duplicate entry means a bug in codegen
+                if (!entries.add(outputFile.relativePath)) {
+                    throw CompileEnvironmentException(
+                        "Failed to generate jar file: ${outputFile.relativePath} is generated more than once " +
+                                "(from ${outputFile.sourceFiles.joinToString()})"
+                    )
+                }
+
+                stream.putNextEntry(JarEntry(outputFile.relativePath))
+                stream.write(outputFile.asByteArray())
+            }
+        } catch (e: IOException) {
+            throw CompileEnvironmentException("Failed to generate jar file", e)
+        }
+    }
+
+    fun finish() {
+        val stream = stream ?: open(null)
+        try {
+            if (includeRuntime) {
+                CompileEnvironmentUtil.writeRuntimeToJar(stream)
+            }
+            stream.close()
+            Files.move(tempFile!!.toPath(), jarPath.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } catch (e: IOException) {
+            throw CompileEnvironmentException("Failed to generate jar file", e)
+        } finally {
+            this.stream = null
+            tempFile?.delete()
+        }
+    }
+
+    // Called when the compilation fails, the jar is left untouched in this case
+    fun abort() {
+        closeQuietly(stream)
+        stream = null
+        tempFile?.delete()
+    }
+
+    private fun open(mainClass: FqName?): JarOutputStream {
+        val file = try {
+            File.createTempFile(jarPath.name, ".tmp", jarPath.absoluteFile.parentFile)
+        } catch (e: IOException) {
+            throw CompileEnvironmentException("Invalid jar path $jarPath", e)
+        }
+        tempFile = file
+        return JarOutputStream(FileOutputStream(file), CompileEnvironmentUtil.createManifest(mainClass)).also { stream = it }
+    }
+}
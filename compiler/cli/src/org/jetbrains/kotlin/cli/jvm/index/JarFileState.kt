@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.zip.CRC32
+
+// State of a jar which data cached from the jar is validated against, e.g. by JarPackagesIndexStorage and by JarCacheTracker
+// of the daemon. The checksum is the CRC32 of the central directory, which contains names, offsets and CRCs of all entries.
+// Modification time and size only need the file attributes, so they are checked first, and the checksum is computed only when
+// they have changed. A jar rebuilt with the same entries therefore keeps its cached data.
+class JarFileState(val timestamp: Long, val length: Long, val checksum: Long) {
+    // Returns the current state of the jar if it has the same contents as in this state, and null if the jar has changed
+    fun validate(jar: File): JarFileState? {
+        val timestamp = jar.lastModified()
+        val length = jar.length()
+        if (timestamp == this.timestamp && length == this.length) return this
+
+        val current = read(jar, timestamp, length) ?: return null
+        return current.takeIf { it.checksum == checksum }
+    }
+
+    companion object {
+        // CRC32 values are never negative, so validation of a state without checksum fails as soon as the attributes change
+        private const val NO_CHECKSUM = -1L
+
+        private const val END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50
+        private const val END_OF_CENTRAL_DIRECTORY_SIZE = 22
+        private const val MAX_ZIP_COMMENT_LENGTH = 0xFFFF
+
+        // Returns null for files which do not exist, are not zip archives, or are zip64 archives
+        @JvmStatic
+        fun read(jar: File): JarFileState? = read(jar, jar.lastModified(), jar.length())
+
+        // Like read, but for files which are not zip archives (e.g. the module image of the JDK) or do not exist, the state has
+        // no checksum, and only the modification time and the size are checked by validate
+        @JvmStatic
+        fun readOrAttributesOnly(file: File): JarFileState {
+            val timestamp = file.lastModified()
+            val length = file.length()
+            return read(file, timestamp, length) ?: JarFileState(timestamp, length, NO_CHECKSUM)
+        }
+
+        private fun read(jar: File, timestamp: Long, length: Long): JarFileState? {
+            if (timestamp == 0L) return null
+            val checksum = computeCentralDirectoryChecksum(jar) ?: return null
+            return JarFileState(timestamp, length, checksum)
+        }
+
+        // Reading the central directory only requires the end of the file, unlike hashing the whole jar
+        private fun computeCentralDirectoryChecksum(jar: File): Long? =
+            try {
+                RandomAccessFile(jar, "r").use { file ->
+                    val tailLength = minOf(file.length(), (END_OF_CENTRAL_DIRECTORY_SIZE + MAX_ZIP_COMMENT_LENGTH).toLong()).toInt()
+                    val tail = ByteArray(tailLength)
+                    file.seek(file.length() - tailLength)
+                    file.readFully(tail)
+
+                    val tailBuffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN)
+                    var end = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE
+                    while (end >= 0 && tailBuffer.getInt(end) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                        end--
+                    }
+                    if (end < 0) return null
+
+                    val directorySize = tailBuffer.getInt(end + 12).toLong() and 0xFFFFFFFFL
+                    val directoryOffset = tailBuffer.getInt(end + 16).toLong() and 0xFFFFFFFFL
+                    if (directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) return null
+                    if (directoryOffset + directorySize > file.length()) return null
+
+                    val crc = CRC32()
+                    val chunk = ByteArray(8192)
+                    file.seek(directoryOffset)
+                    var remaining = directorySize
+                    while (remaining > 0) {
+                        val read = file.read(chunk, 0, minOf(remaining, chunk.size.toLong()).toInt())
+                        if (read < 0) return null
+                        crc.update(chunk, 0, read)
+                        remaining -= read
+                    }
+                    crc.value
+                }
+            } catch (e: IOException) {
+                null
+            }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.io.URLUtil
+import java.io.*
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.ZipFile
+
+// Persistent cache of the package directories contained in classpath jars, shared between compilations using the same storage directory.
+// JvmDependenciesIndexImpl uses it to skip jars which certainly do not contain a package without opening them.
+// Every jar is stored in a separate file and is validated by its path and the checksum of its central directory, so a changed jar
+// only invalidates its own entry. Packages already loaded in memory are validated as described in JarFileState, so the checksum is
+// not recomputed while the modification time and size of the jar are the same.
+// Use getInstance to share the storage between compilations in the same process.
+class JarPackagesIndexStorage(private val storageDirectory: File) {
+    private class JarPackages(val state: JarFileState, val packages: Set<String>)
+
+    private val loaded = ConcurrentHashMap<String, JarPackages>()
+
+    // Returns relative paths of all directories in the jar ("org", "org/jetbrains", ...), or null if the root is not the root
+    // of a local jar or the jar cannot be read
+    fun getPackages(root: VirtualFile): Set<String>? {
+        if (root.fileSystem.protocol != StandardFileSystems.JAR_PROTOCOL) return null
+        // Packages are stored relative to the jar root, roots pointing inside a jar cannot be filtered with them
+        if (root.path.substringAfter(URLUtil.JAR_SEPARATOR, "").isNotEmpty()) return null
+        return getPackages(File(root.path.substringBefore(URLUtil.JAR_SEPARATOR)))
+    }
+
+    fun getPackages(jar: File): Set<String>? {
+        val path = jar.absolutePath
+        loaded[path]?.let { cached ->
+            val state = cached.state.validate(jar)
+            if (state != null) {
+                // The jar may have been rebuilt with the same entries
+                if (state !== cached.state) {
+                    loaded[path] = JarPackages(state, cached.packages)
+                }
+                return cached.packages
+            }
+        }
+
+        val state = JarFileState.read(jar) ?: return null
+        val storageFile = File(storageDirectory, jar.name + "-" + Integer.toHexString(path.hashCode()) + ".packages")
+        val jarPackages = load(storageFile, path, state)
+            ?: computePackages(jar)?.let { packages ->
+                JarPackages(state, packages).also { save(storageFile, path, it) }
+            }
+            ?: return null
+
+        loaded[path] = jarPackages
+        return jarPackages.packages
+    }
+
+    private fun load(storageFile: File, path: String, state: JarFileState): JarPackages? {
+        if (!storageFile.isFile) return null
+
+        return try {
+            // The file is read into memory instead of being mapped: a mapped file cannot be replaced on Windows until
+            // the mapping is garbage collected, so saving the packages of a changed jar would fail
+            val buffer = ByteBuffer.wrap(storageFile.readBytes())
+            if (buffer.int != MAGIC || buffer.int != VERSION) return null
+            if (buffer.long != state.checksum) return null
+            if (buffer.readString() != path) return null
+
+            val count = buffer.int
+            if (count < 0 || count > buffer.remaining() / 4) return null
+            val packages = HashSet<String>(count * 4 / 3 + 1)
+            repeat(count) {
+                packages.add(buffer.readString())
+            }
+            JarPackages(state, packages)
+        } catch (e: IOException) {
+            null
+        } catch (e: RuntimeException) {
+            // Truncated or otherwise corrupted storage file, will be overwritten
+            null
+        }
+    }
+
+    private fun save(storageFile: File, path: String, jarPackages: JarPackages) {
+        try {
+            storageDirectory.mkdirs()
+            val tempFile = File.createTempFile(storageFile.name, ".tmp", storageDirectory)
+            try {
+                DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { output ->
+                    output.writeInt(MAGIC)
+                    output.writeInt(VERSION)
+                    output.writeLong(jarPackages.state.checksum)
+                    output.writeString(path)
+                    output.writeInt(jarPackages.packages.size)
+                    for (packagePath in jarPackages.packages) {
+                        output.writeString(packagePath)
+                    }
+                }
+                Files.move(tempFile.toPath(), storageFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                tempFile.delete()
+            }
+        } catch (e: IOException) {
+            // The storage is only an optimization, the next compilation will try to save the packages again
+        }
+    }
+
+    private fun computePackages(jar: File): Set<String>? =
+        try {
+            ZipFile(jar).use { zip ->
+                val packages = HashSet<String>()
+                for (entry in zip.entries()) {
+                    val name = entry.name
+                    var separator = name.indexOf('/')
+                    while (separator > 0) {
+                        packages.add(name.substring(0, separator))
+                        separator = name.indexOf('/', separator + 1)
+                    }
+                }
+                packages
+            }
+        } catch (e: IOException) {
+            null
+        }
+
+    private fun ByteBuffer.readString(): String {
+        val size = int
+        if (size < 0 || size > remaining()) throw BufferUnderflowException()
+        val bytes = ByteArray(size)
+        get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun DataOutput.writeString(value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        writeInt(bytes.size)
+        write(bytes)
+    }
+
+    companion object {
+        private const val MAGIC = 0x4B4A5049 // "KJPI"
+        private const val VERSION = 3
+
+        private val instances = ConcurrentHashMap<File, JarPackagesIndexStorage>()
+
+        // Storages are shared between compilations in the same process (e.g. in the daemon) to avoid re-reading storage files
+        @JvmStatic
+        fun getInstance(storageDirectory: File): JarPackagesIndexStorage =
+            instances.getOrPut(storageDirectory.absoluteFile) { JarPackagesIndexStorage(storageDirectory.absoluteFile) }
+    }
+}
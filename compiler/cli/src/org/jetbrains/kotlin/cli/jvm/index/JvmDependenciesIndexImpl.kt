@@ -29,7 +29,10 @@ import java.util.*
 // speeds up finding files/classes in classpath/java source roots
 // NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
 // the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
-class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
+class JvmDependenciesIndexImpl(
+    _roots: List<JavaRoot>,
+    private val jarPackagesStorage: JarPackagesIndexStorage? = null
+) : JvmDependenciesIndex {
     //these fields are computed based on _roots passed to constructor which are filled in later
     private val roots: List<JavaRoot> by lazy { _roots.toList() }
 
@@ -68,6 +71,10 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         Array(roots.size) { THashMap<String, VirtualFile?>() }
     }
 
+    // package directories of binary jar roots loaded from jarPackagesStorage, null if unknown for the root
+    private val rootPackages: Array<Set<String>?> by lazy { arrayOfNulls<Set<String>>(roots.size) }
+    private val rootPackagesLoaded: BitSet by lazy { BitSet(roots.size) }
+
     override fun traverseDirectoriesInPackage(
         packageFqName: FqName,
         acceptedRootTypes: Set<JavaRoot.RootType>,
@@ -175,6 +182,10 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
 
         var currentFile = pathRoot.file
 
+        // allows to skip roots not containing the package without opening them, see JarPackagesIndexStorage
+        val knownPackages = if (prefixPathSegments == null) getKnownPackages(rootIndex) else null
+        val packagePath = if (knownPackages != null) StringBuilder() else null
+
         for (pathIndex in packagesPath.indices) {
             val subPackageName = packagesPath[pathIndex]
             if (prefixPathSegments != null && pathIndex < prefixPathSegments.size) {
@@ -183,6 +194,11 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
                     return null
                 }
             } else {
+                if (knownPackages != null && packagePath != null) {
+                    if (pathIndex > 0) packagePath.append('/')
+                    packagePath.append(subPackageName)
+                    if (packagePath.toString() !in knownPackages) return null
+                }
                 currentFile = currentFile.findChildPackage(subPackageName, pathRoot.type) ?: return null
             }
 
@@ -196,6 +212,20 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         return currentFile
     }
 
+    private fun getKnownPackages(rootIndex: Int): Set<String>? {
+        if (jarPackagesStorage == null) return null
+
+        if (!rootPackagesLoaded[rootIndex]) {
+            rootPackagesLoaded.set(rootIndex)
+            val root = roots[rootIndex]
+            if (root.type == JavaRoot.RootType.BINARY) {
+                rootPackages[rootIndex] = jarPackagesStorage.getPackages(root.file)
+            }
+        }
+
+        return rootPackages[rootIndex]
+    }
+
     private fun VirtualFile.findChildPackage(subPackageName: String, rootType: JavaRoot.RootType): VirtualFile? {
         val childDirectory = findChild(subPackageName) ?: return null
 
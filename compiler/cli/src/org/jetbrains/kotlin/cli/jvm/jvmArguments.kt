@@ -152,6 +152,17 @@ fun CompilerConfiguration.configureAdvancedJvmOptions(arguments: K2JVMCompilerAr
         arguments.noExceptionOnExplicitEqualsForBoxedNull
     )
     put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, arguments.noOptimize)
+    put(JVMConfigurationKeys.NO_STACK_MAP_FRAMES, arguments.noStackMapFrames)
+
+    if (arguments.noStackMapFrames) {
+        val jvmTarget = get(JVMConfigurationKeys.JVM_TARGET) ?: JvmTarget.DEFAULT
+        if (jvmTarget != JvmTarget.JVM_1_6) {
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                STRONG_WARNING,
+                "The '-Xno-stack-map-frames' option is ignored because stack map frames are required for JVM target ${jvmTarget.description}"
+            )
+        }
+    }
 
     if (!JVMConstructorCallNormalizationMode.isSupportedValue(arguments.constructorCallNormalizationMode)) {
         getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
@@ -196,5 +207,30 @@ fun CompilerConfiguration.configureAdvancedJvmOptions(arguments: K2JVMCompilerAr
     put(CLIConfigurationKeys.ALLOW_KOTLIN_PACKAGE, arguments.allowKotlinPackage)
     put(JVMConfigurationKeys.USE_SINGLE_MODULE, arguments.singleModule)
 
+    arguments.backendThreads?.let { value ->
+        val threads = value.toIntOrNull()
+        if (threads == null || threads < 1) {
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                ERROR,
+                "Invalid number of backend threads: $value, expected a positive integer"
+            )
+        } else {
+            put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, threads)
+        }
+    }
+
+    arguments.optimizationThreads?.let { value ->
+        val threads = value.toIntOrNull()
+        if (threads == null || threads < 1) {
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                ERROR,
+                "Invalid number of optimization threads: $value, expected a positive integer"
+            )
+        } else {
+            put(JVMConfigurationKeys.PARALLEL_OPTIMIZATION_THREADS, threads)
+        }
+    }
+
     arguments.declarationsOutputPath?.let { put(JVMConfigurationKeys.DECLARATIONS_JSON_PATH, it) }
+    arguments.classpathIndexDirectory?.let { put(JVMConfigurationKeys.CLASSPATH_INDEX_DIRECTORY, File(it)) }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+// Ratio of the heap which was in use after the last garbage collection to the maximum heap size
+internal fun heapUsageAfterLastGc(): Double {
+    val maxMemory = Runtime.getRuntime().maxMemory()
+    if (maxMemory == Long.MAX_VALUE) return 0.0
+
+    val used = ManagementFactory.getMemoryPoolMXBeans()
+        .filter { it.type == MemoryType.HEAP && it.isCollectionUsageThresholdSupported }
+        .map { it.collectionUsage?.used ?: 0L }
+        .sum()
+    return used.toDouble() / maxMemory
+}
+
+// Limits compilations running in parallel in the daemon (e.g. from parallel Gradle workers) by the heap budget.
+// A compilation is always admitted when nothing else is running; additional ones are admitted while there are free slots and
+// the heap usage after the last GC is below [maxHeapUsageAfterGc], otherwise they wait until a running compilation finishes.
+// While a [whenIdle] action is waiting or running, no new compilations are admitted.
+class CompilationAdmissionControl(
+    private val maxParallelCompilations: Int = Runtime.getRuntime().availableProcessors(),
+    private val maxHeapUsageAfterGc: Double = DEFAULT_MAX_HEAP_USAGE_AFTER_GC,
+    private val heapUsage: () -> Double = ::heapUsageAfterLastGc
+) {
+    private val lock = ReentrantLock()
+    private val compilationFinished = lock.newCondition()
+    private var running = 0
+    // number of whenIdle actions waiting for running compilations to finish or running
+    private var draining = 0
+
+    val runningCompilations: Int get() = lock.withLock { running }
+
+    val isDraining: Boolean get() = lock.withLock { draining > 0 }
+
+    inline fun <R> withAdmission(body: () -> R): R {
+        acquire()
+        try {
+            return body()
+        } finally {
+            release()
+        }
+    }
+
+    fun acquire() {
+        lock.withLock {
+            while (draining > 0 || running > 0 && (running >= maxParallelCompilations || heapUsage() > maxHeapUsageAfterGc)) {
+                // heap usage may also drop without any compilation finishing, so it is rechecked periodically
+                compilationFinished.await(HEAP_RECHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)
+            }
+            running++
+        }
+    }
+
+    fun release() {
+        lock.withLock {
+            running--
+            compilationFinished.signalAll()
+        }
+    }
+
+    // Runs [body] when no compilation is running. New compilations are not admitted from the moment this is called until [body]
+    // finishes, so under steady load the wait is bounded by the compilations already running.
+    // Must not be called from an admitted compilation, since it would wait for itself.
+    fun <R> whenIdle(body: () -> R): R {
+        lock.withLock {
+            draining++
+            try {
+                while (running > 0) {
+                    compilationFinished.await()
+                }
+            } catch (e: Throwable) {
+                draining--
+                compilationFinished.signalAll()
+                throw e
+            }
+        }
+        // The lock is not held while the body runs, so that waiting compilations do not block on it
+        try {
+            return body()
+        } finally {
+            lock.withLock {
+                draining--
+                compilationFinished.signalAll()
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_HEAP_USAGE_AFTER_GC = 0.5
+        private const val HEAP_RECHECK_INTERVAL_MS = 500L
+    }
+}
@@ -18,8 +18,6 @@ package org.jetbrains.kotlin.daemon
 
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.util.Disposer
-import com.intellij.openapi.vfs.impl.ZipHandler
-import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
 import org.jetbrains.kotlin.build.DEFAULT_KOTLIN_SOURCE_FILES_EXTENSIONS
 import org.jetbrains.kotlin.build.JvmSourceRoot
 import org.jetbrains.kotlin.cli.common.CLICompiler
@@ -37,7 +35,6 @@ import org.jetbrains.kotlin.cli.common.repl.ReplCompileResult
 import org.jetbrains.kotlin.cli.common.repl.ReplEvalResult
 import org.jetbrains.kotlin.cli.js.K2JSCompiler
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
-import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
 import org.jetbrains.kotlin.cli.metadata.K2MetadataCompiler
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.daemon.common.*
@@ -129,6 +126,12 @@ abstract class CompileServiceImplBase(
 
     protected val classpathWatcher = LazyClasspathWatcher(compilerId.compilerClasspath)
 
+    protected val jarCacheTracker = JarCacheTracker()
+
+    protected val admissionControl = CompilationAdmissionControl()
+
+    protected val incrementalCompilationFlags = IncrementalCompilationFlags()
+
     enum class Aliveness {
         // !!! ordering of values is used in state comparison
         Dying,
@@ -310,13 +313,19 @@ abstract class CompileServiceImplBase(
         parseCommandLineArguments(compilerArguments.asList(), k2PlatformArgs)
         val argumentParseError = validateArguments(k2PlatformArgs.errors)
 
+        if (argumentParseError == null && jarCacheTracker.registerCompilation(k2PlatformArgs)) {
+            log.info("Some classpath jars have changed since the previous compilation, clearing jar cache")
+            admissionControl.whenIdle { clearJarFileSystemCaches() }
+        }
+
         if (argumentParseError != null) {
             messageCollector.report(CompilerMessageSeverity.ERROR, argumentParseError)
             CompileService.CallResult.Good(ExitCode.COMPILATION_ERROR.code)
         } else when (compilationOptions.compilerMode) {
             CompilerMode.JPS_COMPILER -> {
                 servicesFacade as JpsServicesFacadeT
-                withIC(enabled = servicesFacade.hasIncrementalCaches()) {
+                val flags = incrementalCompilationFlags.defaults.copy(jvm = servicesFacade.hasIncrementalCaches())
+                incrementalCompilationFlags.withFlags(flags) {
                     doCompile(sessionId, daemonReporter, tracer = null) { eventManger, profiler ->
                         val services = createServices(servicesFacade, eventManger, profiler)
                         compiler.exec(messageCollector, services, k2PlatformArgs)
@@ -324,8 +333,10 @@ abstract class CompileServiceImplBase(
                 }
             }
             CompilerMode.NON_INCREMENTAL_COMPILER -> {
-                doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
-                    compiler.exec(messageCollector, Services.EMPTY, k2PlatformArgs)
+                incrementalCompilationFlags.withFlags(incrementalCompilationFlags.defaults) {
+                    doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
+                        compiler.exec(messageCollector, Services.EMPTY, k2PlatformArgs)
+                    }
                 }
             }
             CompilerMode.INCREMENTAL_COMPILER -> {
@@ -333,7 +344,9 @@ abstract class CompileServiceImplBase(
                 val gradleIncrementalServicesFacade = servicesFacade
 
                 when (targetPlatform) {
-                    CompileService.TargetPlatform.JVM -> withIC {
+                    CompileService.TargetPlatform.JVM -> incrementalCompilationFlags.withFlags(
+                        incrementalCompilationFlags.defaults.copy(jvm = true)
+                    ) {
                         doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
                             execIncrementalCompiler(
                                 k2PlatformArgs as K2JVMCompilerArguments,
@@ -347,7 +360,9 @@ abstract class CompileServiceImplBase(
                             )
                         }
                     }
-                    CompileService.TargetPlatform.JS -> withJsIC {
+                    CompileService.TargetPlatform.JS -> incrementalCompilationFlags.withFlags(
+                        incrementalCompilationFlags.defaults.copy(js = true)
+                    ) {
                         doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
                             execJsIncrementalCompiler(
                                 k2PlatformArgs as K2JSCompilerArguments,
@@ -383,8 +398,10 @@ abstract class CompileServiceImplBase(
             val eventManager = EventManagerImpl()
             try {
                 log.fine("trying get exitCode")
-                val exitCode = checkedCompile(daemonMessageReporter, rpcProfiler) {
-                    body(eventManager, rpcProfiler).code
+                val exitCode = admissionControl.withAdmission {
+                    checkedCompile(daemonMessageReporter, rpcProfiler) {
+                        body(eventManager, rpcProfiler).code
+                    }
                 }
                 CompileService.CallResult.Good(exitCode)
             } finally {
@@ -678,8 +695,12 @@ class CompileServiceImpl(
     override fun releaseCompileSession(sessionId: Int) = ifAlive(minAliveness = Aliveness.LastSession) {
         state.sessions.remove(sessionId)
         log.info("cleaning after session $sessionId")
-        rwlock.write {
-            clearJarCache()
+        if (jarCacheTracker.shouldClearAfterSession()) {
+            // whenIdle excludes compilations, the write lock must not be taken here: compilations waiting for admission hold
+            // the read lock
+            admissionControl.whenIdle {
+                clearJarCache()
+            }
         }
         postReleaseCompileSession()
     }
@@ -1157,8 +1178,10 @@ class CompileServiceImpl(
                     if (args.none())
                         throw IllegalArgumentException("Error: empty arguments list.")
                     log.info("Starting compilation with args: " + args.joinToString(" "))
-                    val exitCode = checkedCompile(compileServiceReporter, rpcProfiler) {
-                        body(compilerMessagesStream, eventManger, rpcProfiler).code
+                    val exitCode = incrementalCompilationFlags.withFlags(incrementalCompilationFlags.defaults) {
+                        checkedCompile(compileServiceReporter, rpcProfiler) {
+                            body(compilerMessagesStream, eventManger, rpcProfiler).code
+                        }
                     }
                     CompileService.CallResult.Good(exitCode)
                 } finally {
@@ -1189,8 +1212,8 @@ class CompileServiceImpl(
     }
 
     override fun clearJarCache() {
-        ZipHandler.clearFileAccessorCache()
-        (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+        clearJarFileSystemCaches()
+        jarCacheTracker.reset()
     }
 
     private inline fun <R> ifAlive(
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.config.IncrementalCompilation
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+// The flags of IncrementalCompilation are system properties, so they are shared by all compilations running in the daemon, and
+// setting them for one compilation (see withIC) would change them for the others. Compilations which need the same values of
+// the flags run in parallel, while a compilation which needs other values waits until the running ones have finished.
+// New compilations with the current values are not started while a compilation with other values is waiting, so it is not starved.
+// When no compilation is running, the flags have the values with which the daemon was started.
+class IncrementalCompilationFlags {
+    data class Values(val jvm: Boolean, val js: Boolean)
+
+    val defaults = Values(IncrementalCompilation.isEnabledForJvm(), IncrementalCompilation.isEnabledForJs())
+
+    private val lock = ReentrantLock()
+    private val compilationFinished = lock.newCondition()
+    private var current: Values? = null
+    private var running = 0
+    private val waiting = ArrayList<Values>()
+
+    val runningCompilations: Int get() = lock.withLock { running }
+
+    val waitingCompilations: Int get() = lock.withLock { waiting.size }
+
+    inline fun <R> withFlags(values: Values, body: () -> R): R {
+        acquire(values)
+        try {
+            return body()
+        } finally {
+            release()
+        }
+    }
+
+    fun acquire(values: Values) {
+        lock.withLock {
+            waiting.add(values)
+            try {
+                while (!canStart(values)) {
+                    compilationFinished.await()
+                }
+            } finally {
+                waiting.remove(values)
+                // compilations with the current values may have been waiting for this one
+                compilationFinished.signalAll()
+            }
+
+            if (running == 0 && current != values) {
+                set(values)
+            }
+            running++
+        }
+    }
+
+    // Compilations wait in the order of arrival: when nothing is running, the values of the first waiting compilation are set
+    private fun canStart(values: Values): Boolean =
+        if (running == 0) waiting.first() == values
+        else current == values && waiting.all { it == values }
+
+    fun release() {
+        lock.withLock {
+            running--
+            if (running == 0) {
+                set(defaults)
+            }
+            compilationFinished.signalAll()
+        }
+    }
+
+    private fun set(values: Values) {
+        IncrementalCompilation.setIsEnabledForJvm(values.jvm)
+        IncrementalCompilation.setIsEnabledForJs(values.js)
+        current = values
+    }
+}
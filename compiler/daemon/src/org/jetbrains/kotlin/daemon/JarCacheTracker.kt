@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import com.intellij.openapi.util.SystemInfo
+import com.intellij.openapi.vfs.impl.ZipHandler
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments
+import org.jetbrains.kotlin.cli.common.arguments.K2JVMCompilerArguments
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.index.JarFileState
+import org.jetbrains.kotlin.codegen.inline.CompiledInlineMethodCache
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache
+import java.io.File
+
+fun clearJarFileSystemCaches() {
+    ZipHandler.clearFileAccessorCache()
+    (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+    // Inline function bodies read from the classpath are only valid as long as the jars they were read from are
+    CompiledInlineMethodCache.shared.clear()
+    KotlinBinaryClassCache.clearCache()
+}
+
+// Decides when the jar file system caches of the daemon (opened jars and their entries) should be dropped.
+// The caches are shared by all compilations, since the application environment is kept alive in the daemon. Instead of dropping
+// them after every compile session, they are kept while all jars used by compilations are known and unchanged, so that sibling
+// modules and subsequent builds do not re-open the same classpath jars.
+// On Windows open jars cannot be replaced or deleted, and builds rewrite classpath jars (e.g. outputs of sibling modules),
+// so the caches are still dropped after every session there.
+class JarCacheTracker(
+    private val maxHeapUsageAfterGc: Double = DEFAULT_MAX_HEAP_USAGE_AFTER_GC,
+    private val keepCachesBetweenSessions: Boolean = !SystemInfo.isWindows,
+    private val heapUsage: () -> Double = ::heapUsageAfterLastGc
+) {
+    // Jars are checked in the same way as by the package index of the compiler, see JarFileState: a jar rebuilt with the same
+    // entries does not invalidate the caches
+    private val jars = HashMap<String, JarFileState>()
+
+    // Set when some compilation used jars which are not tracked, e.g. from a module file passed with -Xbuild-file
+    private var hasUntrackedJars = false
+
+    // Registers jars used by a compilation: classpath, friend paths, compiler plugins and the JDK. Returns true if a jar used
+    // by a previous compilation has changed or disappeared since, or too many jars are tracked, and the caches have to be
+    // cleared before the compilation
+    @Synchronized
+    fun registerCompilation(arguments: CommonCompilerArguments): Boolean {
+        if (arguments !is K2JVMCompilerArguments || arguments.buildFile != null) {
+            hasUntrackedJars = true
+            return false
+        }
+
+        var changed = false
+        val usedJars = usedJars(arguments)
+        for (jar in usedJars) {
+            val path = jar.absolutePath
+            val known = jars[path]
+            val current = known?.validate(jar)
+            if (known != null && current == null) {
+                changed = true
+            }
+            jars[path] = current ?: JarFileState.readOrAttributesOnly(jar)
+        }
+
+        // Jars which were deleted since (e.g. temporary or versioned build outputs) are only kept in the caches
+        val iterator = jars.entries.iterator()
+        while (iterator.hasNext()) {
+            if (!File(iterator.next().key).exists()) {
+                iterator.remove()
+                changed = true
+            }
+        }
+
+        if (jars.size > MAX_TRACKED_JARS) {
+            // The caches are going to be cleared, so only the jars of this compilation have to be tracked from now on
+            val usedStates = usedJars.mapNotNull { jar -> jars[jar.absolutePath]?.let { jar.absolutePath to it } }
+            jars.clear()
+            jars.putAll(usedStates)
+            return true
+        }
+
+        return changed
+    }
+
+    // Returns true if the caches should be cleared after the end of a compile session
+    @Synchronized
+    fun shouldClearAfterSession(): Boolean = !keepCachesBetweenSessions || hasUntrackedJars || heapUsage() > maxHeapUsageAfterGc
+
+    // Called after the caches are cleared
+    @Synchronized
+    fun reset() {
+        jars.clear()
+        hasUntrackedJars = false
+    }
+
+    private fun usedJars(arguments: K2JVMCompilerArguments): List<File> {
+        val paths = arguments.classpath?.split(File.pathSeparator).orEmpty() +
+                arguments.friendPaths.orEmpty() +
+                arguments.pluginClasspaths.orEmpty()
+        val jars = paths.filter { it.endsWith(".jar", ignoreCase = true) }.mapTo(ArrayList(), ::File)
+
+        arguments.jdkHome?.let { jdkHome ->
+            JDK_FILES.mapNotNullTo(jars) { path -> File(jdkHome, path).takeIf(File::isFile) }
+        }
+        return jars
+    }
+
+    companion object {
+        const val DEFAULT_MAX_HEAP_USAGE_AFTER_GC = 0.6
+        const val MAX_TRACKED_JARS = 10000
+
+        private val JDK_FILES = listOf("jre/lib/rt.jar", "lib/rt.jar", "lib/modules")
+    }
+}
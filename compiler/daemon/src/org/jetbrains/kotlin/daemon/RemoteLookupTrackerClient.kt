@@ -32,7 +32,8 @@ import org.jetbrains.kotlin.incremental.components.ScopeKind
 class RemoteLookupTrackerClient(
     val facade: CompilerCallbackServicesFacade,
     eventManager: EventManager,
-    val profiler: Profiler = DummyProfiler()
+    val profiler: Profiler = DummyProfiler(),
+    private val flushChunkSize: Int = FLUSH_CHUNK_SIZE
 ) : LookupTracker {
     private val isDoNothing = profiler.withMeasure(this) { facade.lookupTracker_isDoNothing() }
 
@@ -40,21 +41,31 @@ class RemoteLookupTrackerClient(
     private val lookups = THashMap<String, MutableMap<String, MutableSet<Any>>>()
     private val interner = StringInterner()
 
+    // number of lookups recorded since the previous flush
+    private var pendingLookups = 0
+
     override val requiresPosition: Boolean = profiler.withMeasure(this) { facade.lookupTracker_requiresPosition() }
 
     override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
         if (isDoNothing) return
 
+        val internedFilePath = interner.intern(filePath)
         val internedSymbolFqName = interner.intern(scopeFqName)
         val internedName = interner.intern(name)
 
         val objectToPut: Any =
             if (requiresPosition)
-                LookupInfo(filePath, position, scopeFqName, scopeKind, name)
+                LookupInfo(internedFilePath, position, internedSymbolFqName, scopeKind, internedName)
             else
                 internedName
 
-        lookups.getOrPut(filePath, ::THashMap).getOrPut(internedSymbolFqName, ::THashSet).add(objectToPut)
+        if (lookups.getOrPut(internedFilePath, ::THashMap).getOrPut(internedSymbolFqName, ::THashSet).add(objectToPut)) {
+            // Lookups are deduplicated only between flushes, so that the client can start consuming them before the compilation ends
+            // and the daemon does not hold all lookups of the compilation. The receiving side stores lookups in sets anyway.
+            if (++pendingLookups >= flushChunkSize) {
+                flush()
+            }
+        }
     }
 
     init {
@@ -65,10 +76,13 @@ class RemoteLookupTrackerClient(
         if (isDoNothing || lookups.isEmpty) return
 
         profiler.withMeasure(this) {
-            facade.lookupTracker_record(
-                lookups.flatMap { (filePath, lookupsByFile) ->
-                    lookupsByFile.flatMap { (scopeFqName, lookupsByScopeFqName) ->
-                        lookupsByScopeFqName.map { lookupInfoOrString ->
+            // Lookups are sent in bounded chunks grouped by file, and file paths and scope names are serialized once per chunk
+            // thanks to interning
+            var chunk = ArrayList<LookupInfo>(minOf(pendingLookups, flushChunkSize))
+            for ((filePath, lookupsByFile) in lookups) {
+                for ((scopeFqName, lookupsByScopeFqName) in lookupsByFile) {
+                    for (lookupInfoOrString in lookupsByScopeFqName) {
+                        chunk.add(
                             if (requiresPosition)
                                 lookupInfoOrString as LookupInfo
                             else
@@ -76,12 +90,26 @@ class RemoteLookupTrackerClient(
                                     filePath, Position.NO_POSITION, scopeFqName, ScopeKind.CLASSIFIER,
                                     lookupInfoOrString as String
                                 )
+                        )
+
+                        if (chunk.size >= flushChunkSize) {
+                            facade.lookupTracker_record(chunk)
+                            chunk = ArrayList(flushChunkSize)
                         }
                     }
                 }
-            )
+            }
+
+            if (chunk.isNotEmpty()) {
+                facade.lookupTracker_record(chunk)
+            }
         }
 
         lookups.clear()
+        pendingLookups = 0
+    }
+
+    companion object {
+        const val FLUSH_CHUNK_SIZE = 16 * 1024
     }
 }
@@ -8,8 +8,6 @@
 package org.jetbrains.kotlin.daemon.experimental
 
 import com.intellij.openapi.util.Disposer
-import com.intellij.openapi.vfs.impl.ZipHandler
-import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.actor
@@ -24,7 +22,6 @@ import org.jetbrains.kotlin.cli.common.repl.ReplCodeLine
 import org.jetbrains.kotlin.cli.common.repl.ReplCompileResult
 import org.jetbrains.kotlin.cli.js.K2JSCompiler
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
-import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
 import org.jetbrains.kotlin.cli.metadata.K2MetadataCompiler
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.daemon.CompileServiceImplBase
@@ -50,6 +47,7 @@ import org.jetbrains.kotlin.daemon.common.experimental.*
 import io.ktor.network.sockets.*
 import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY
 import org.jetbrains.kotlin.daemon.EventManager
+import org.jetbrains.kotlin.daemon.clearJarFileSystemCaches
 import org.jetbrains.kotlin.daemon.report.DaemonMessageReporter
 
 // TODO: this classes should replace their non-experimental versions eventually.
@@ -282,9 +280,11 @@ class CompileServiceServerSideImpl(
     override suspend fun releaseCompileSession(sessionId: Int) = ifAlive(minAliveness = Aliveness.LastSession) {
         state.sessions.remove(sessionId)
         log.info("cleaning after session $sessionId")
-        val completed = CompletableDeferred<Boolean>()
-        scheduler.scheduleTask(ExclusiveTask(completed, { clearJarCache() }))
-        completed.await()
+        if (jarCacheTracker.shouldClearAfterSession()) {
+            val completed = CompletableDeferred<Boolean>()
+            scheduler.scheduleTask(ExclusiveTask(completed, { clearJarCache() }))
+            completed.await()
+        }
         postReleaseCompileSession()
     }
 
@@ -671,8 +671,8 @@ class CompileServiceServerSideImpl(
     }
 
     override suspend fun clearJarCache() {
-        ZipHandler.clearFileAccessorCache()
-        (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+        clearJarFileSystemCaches()
+        jarCacheTracker.reset()
     }
 
     private suspend fun <R> ifAlive(
@@ -63,6 +63,18 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<Boolean> USE_TYPE_TABLE =
             CompilerConfigurationKey.create("use type table in serializer");
 
+    public static final CompilerConfigurationKey<Integer> PARALLEL_BACKEND_THREADS =
+            CompilerConfigurationKey.create("number of threads used to generate code for modules of a chunk in parallel");
+
+    public static final CompilerConfigurationKey<Integer> PARALLEL_OPTIMIZATION_THREADS =
+            CompilerConfigurationKey.create("number of threads used to optimize bytecode of methods in parallel");
+
+    public static final CompilerConfigurationKey<Boolean> NO_STACK_MAP_FRAMES =
+            CompilerConfigurationKey.create("don't compute stack map frames for JVM target 1.6");
+
+    public static final CompilerConfigurationKey<File> CLASSPATH_INDEX_DIRECTORY =
+            CompilerConfigurationKey.create("directory with persistent index of packages in classpath jars");
+
     public static final CompilerConfigurationKey<Boolean> USE_SINGLE_MODULE =
             CompilerConfigurationKey.create("combine modules for source files and binary dependencies into a single module");
 
@@ -23,39 +23,63 @@ import com.intellij.openapi.components.ServiceManager
 import com.intellij.openapi.util.Computable
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiJavaModule
+import org.jetbrains.kotlin.util.PerformanceCounter
 
+// Results of reading class files are cached, because the same classes are usually looked up many times in a row, e.g. when resolving
+// supertypes and members of classes from the classpath. The cache is shared between threads and contains the most recently used
+// results, each of which is either a parsed Kotlin class header or the contents of a Java class file.
 class KotlinBinaryClassCache : Disposable {
-    private class RequestCache {
-        internal var virtualFile: VirtualFile? = null
-        internal var modificationStamp: Long = 0
-        internal var result: KotlinClassFinder.Result? = null
-
-        fun cache(
-            file: VirtualFile,
-            result: KotlinClassFinder.Result?
-        ): KotlinClassFinder.Result? {
-            virtualFile = file
-            this.result = result
-            modificationStamp = file.modificationStamp
+    // Files of the core VFS used by the compiler always have the same modification stamp, so a result is validated by the time stamp
+    // and the length of the file it was read from, which come from the file system or from the jar entry. Results are looked up by
+    // equality of files, because the local file system of the core VFS creates new instances of files for each lookup
+    private class CachedResult(val timeStamp: Long, val length: Long, val result: KotlinClassFinder.Result?) {
+        fun isValidFor(file: VirtualFile): Boolean =
+            file.timeStamp == timeStamp && file.length == length
+    }
+
+    private val cache = object : LinkedHashMap<VirtualFile, CachedResult>(MAX_CACHED_RESULTS, 0.75f, /* accessOrder = */ true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<VirtualFile, CachedResult>): Boolean =
+            size > MAX_CACHED_RESULTS
+    }
+
+    private fun getCached(file: VirtualFile): CachedResult? {
+        val cached = synchronized(cache) { cache[file] } ?: return null
+        return if (cached.isValidFor(file)) cached else null
+    }
 
-            return result
+    private fun cache(file: VirtualFile, timeStamp: Long, length: Long, result: KotlinClassFinder.Result?): KotlinClassFinder.Result? {
+        synchronized(cache) {
+            cache[file] = CachedResult(timeStamp, length, result)
         }
+        return result
     }
 
-    private val cache = object : ThreadLocal<RequestCache>() {
-        override fun initialValue(): RequestCache {
-            return RequestCache()
+    private fun clear() {
+        synchronized(cache) {
+            cache.clear()
         }
     }
 
     override fun dispose() {
         // This is only relevant for tests. We create a new instance of Application for each test, and so a new instance of this service is
-        // also created for each test. However all tests share the same event dispatch thread, which would collect all instances of this
-        // thread-local if they're not removed properly. Each instance would transitively retain VFS resulting in OutOfMemoryError
-        cache.remove()
+        // also created for each test. Cached results transitively retain VFS, so they should not outlive the application
+        clear()
     }
 
     companion object {
+        // Large enough to contain all classes used while resolving a declaration, including the contents of Java class files
+        private const val MAX_CACHED_RESULTS = 512
+
+        // Misses are counted by VirtualFileKotlinClass, which reads the file in this case
+        private val hitCounter = PerformanceCounter.create("Binary class cache hit")
+
+        // Cached results retain files and contents of class files read from jars. The application is kept alive between compilations
+        // in the daemon, so the cache is cleared there together with the caches of the jar file system
+        fun clearCache() {
+            if (ApplicationManager.getApplication() == null) return
+            ServiceManager.getService(KotlinBinaryClassCache::class.java)?.clear()
+        }
+
         fun getKotlinBinaryClassOrClassFileContent(
             file: VirtualFile, fileContent: ByteArray? = null
         ): KotlinClassFinder.Result? {
@@ -64,18 +88,22 @@ class KotlinBinaryClassCache : Disposable {
             if (file.name == PsiJavaModule.MODULE_INFO_CLS_FILE) return null
 
             val service = ServiceManager.getService(KotlinBinaryClassCache::class.java)
-            val requestCache = service.cache.get()
 
-            if (file.modificationStamp == requestCache.modificationStamp && file == requestCache.virtualFile) {
-                return requestCache.result
+            val cached = service.getCached(file)
+            if (cached != null) {
+                hitCounter.increment()
+                return cached.result
             }
 
+            // Attributes are taken before reading the file, so that a concurrent modification invalidates the cached result
+            val timeStamp = file.timeStamp
+            val length = file.length
             val aClass = ApplicationManager.getApplication().runReadAction(Computable {
                 @Suppress("DEPRECATION")
                 VirtualFileKotlinClass.create(file, fileContent)
             })
 
-            return requestCache.cache(file, aClass)
+            return service.cache(file, timeStamp, length, aClass)
         }
     }
 }
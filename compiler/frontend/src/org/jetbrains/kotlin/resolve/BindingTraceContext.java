@@ -92,6 +92,10 @@ public class BindingTraceContext implements BindingTrace {
     }
 
 
+    protected BindingTraceContext(@NotNull MutableSlicedMap map) {
+        this(map, BindingTraceFilter.Companion.getACCEPT_ALL());
+    }
+
     private BindingTraceContext(@NotNull MutableSlicedMap map, BindingTraceFilter filter) {
         this.map = map;
         this.mutableDiagnostics = !filter.getIgnoreDiagnostics()
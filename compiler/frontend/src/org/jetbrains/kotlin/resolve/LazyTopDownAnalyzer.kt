@@ -52,13 +52,15 @@ class LazyTopDownAnalyzer(
     private val languageVersionSettings: LanguageVersionSettings,
     private val deprecationResolver: DeprecationResolver,
     private val classifierUsageCheckers: Iterable<ClassifierUsageChecker>,
-    private val filePreprocessor: FilePreprocessor
+    private val filePreprocessor: FilePreprocessor,
+    private val phaseListener: TopDownAnalysisPhaseListener
 ) {
     fun analyzeDeclarations(
         topDownAnalysisMode: TopDownAnalysisMode,
         declarations: Collection<PsiElement>,
         outerDataFlowInfo: DataFlowInfo = DataFlowInfo.EMPTY
     ): TopDownAnalysisContext {
+        val headersStartNanos = System.nanoTime()
         val c = TopDownAnalysisContext(topDownAnalysisMode, outerDataFlowInfo, declarationScopeProvider)
 
         val topLevelFqNames = HashMultimap.create<FqName, KtElement>()
@@ -211,29 +213,44 @@ class LazyTopDownAnalyzer(
 
         resolveAllHeadersInClasses(c)
 
-        declarationResolver.checkRedeclarationsInPackages(topLevelDescriptorProvider, topLevelFqNames)
-        declarationResolver.checkRedeclarations(c)
+        val checksStartNanos = System.nanoTime()
+        phaseListener.phaseFinished("Resolve declaration headers", headersStartNanos, checksStartNanos - headersStartNanos)
 
-        overrideResolver.check(c)
+        measurePhase("Check declarations") {
+            declarationResolver.checkRedeclarationsInPackages(topLevelDescriptorProvider, topLevelFqNames)
+            declarationResolver.checkRedeclarations(c)
 
-        varianceChecker.check(c)
+            overrideResolver.check(c)
 
-        declarationResolver.resolveAnnotationsOnFiles(c, fileScopeProvider)
+            varianceChecker.check(c)
 
-        overloadResolver.checkOverloads(c)
+            declarationResolver.resolveAnnotationsOnFiles(c, fileScopeProvider)
 
-        bodyResolver.resolveBodies(c)
+            overloadResolver.checkOverloads(c)
+        }
+
+        measurePhase("Resolve bodies") {
+            bodyResolver.resolveBodies(c)
+        }
 
-        resolveImportsInAllFiles(c)
+        measurePhase("Resolve imports and check classifier usages") {
+            resolveImportsInAllFiles(c)
 
-        checkClassifierUsages(
-            declarations, classifierUsageCheckers,
-            ClassifierUsageCheckerContext(trace, languageVersionSettings, deprecationResolver, moduleDescriptor)
-        )
+            checkClassifierUsages(
+                declarations, classifierUsageCheckers,
+                ClassifierUsageCheckerContext(trace, languageVersionSettings, deprecationResolver, moduleDescriptor)
+            )
+        }
 
         return c
     }
 
+    private inline fun measurePhase(phaseName: String, body: () -> Unit) {
+        val startNanos = System.nanoTime()
+        body()
+        phaseListener.phaseFinished(phaseName, startNanos, System.nanoTime() - startNanos)
+    }
+
     private fun resolveAllHeadersInClasses(c: TopDownAnalysisContext) {
         for (classDescriptor in c.allClasses) {
             (classDescriptor as LazyClassDescriptor).resolveMemberHeaders()
@@ -0,0 +1,19 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve
+
+import org.jetbrains.kotlin.container.DefaultImplementation
+
+// Notified by LazyTopDownAnalyzer after each of its phases, e.g. to report the time of the phases with -Xreport-perf.
+// Declarations which are resolved lazily while a later phase is running count in the time of that phase.
+@DefaultImplementation(impl = TopDownAnalysisPhaseListener.None::class)
+interface TopDownAnalysisPhaseListener {
+    fun phaseFinished(phaseName: String, startNanos: Long, durationNanos: Long)
+
+    object None : TopDownAnalysisPhaseListener {
+        override fun phaseFinished(phaseName: String, startNanos: Long, durationNanos: Long) {}
+    }
+}
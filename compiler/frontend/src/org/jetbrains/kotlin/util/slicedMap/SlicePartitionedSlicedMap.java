@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.util.Key;
+import com.intellij.util.keyFMap.KeyFMap;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A sliced map which stores each of the given frequently used slices in its own hash table, keyed by the keys of the slice.
+ * Other slices, as well as the rewrite policy and the keys of collective slices, are handled by {@link SlicedMapImpl}, which stores
+ * them in a {@link KeyFMap} per key.
+ *
+ * Putting a value into a frequently used slice doesn't allocate anything except when the table grows, while in {@link SlicedMapImpl}
+ * each put copies the {@link KeyFMap} of the key. Tables of different slices don't share entries, so slices which are rarely
+ * used for the same keys are stored more compactly.
+ *
+ * The order of entries in {@link #forEach} differs from {@link SlicedMapImpl}: entries of the frequently used slices come last.
+ */
+public class SlicePartitionedSlicedMap extends SlicedMapImpl {
+
+    private final AbstractWritableSlice<?, ?>[] partitionedSlices;
+    private final Map<Object, Object>[] partitions;
+
+    @SuppressWarnings("unchecked")
+    public SlicePartitionedSlicedMap(boolean alwaysAllowRewrite, @NotNull List<? extends WritableSlice<?, ?>> partitionedSlices) {
+        super(alwaysAllowRewrite);
+        this.partitionedSlices = new AbstractWritableSlice[partitionedSlices.size()];
+        for (int i = 0; i < partitionedSlices.size(); i++) {
+            this.partitionedSlices[i] = (AbstractWritableSlice<?, ?>) partitionedSlices.get(i).getKey();
+        }
+        this.partitions = new Map[partitionedSlices.size()];
+    }
+
+    // There are only a few partitioned slices, so a linear search by identity is faster than a hash lookup
+    private int partitionIndex(@NotNull Key<?> sliceKey) {
+        for (int i = 0; i < partitionedSlices.length; i++) {
+            if (partitionedSlices[i] == sliceKey) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        int index = partitionIndex(slice.getKey());
+        if (index < 0) {
+            super.put(slice, key, value);
+            return;
+        }
+
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        Map<Object, Object> partition = partitions[index];
+        if (partition == null) {
+            partition = partitions[index] = new OpenAddressLinearProbingHashTable<>();
+        }
+
+        if (isRewriteProcessingNeeded(slice, key) && !processRewrite(slice, key, (V) partition.get(key), value)) {
+            return;
+        }
+
+        addCollectiveSliceKey(slice, key);
+
+        partition.put(key, value);
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(partitions, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        int index = partitionIndex(slice.getKey());
+        if (index < 0) {
+            return super.get(slice, key);
+        }
+
+        Map<Object, Object> partition = partitions[index];
+        V value = partition == null ? null : (V) partition.get(key);
+
+        return slice.computeValue(this, key, value, value == null);
+    }
+
+    @Override
+    public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+        super.forEach(f);
+
+        for (int i = 0; i < partitions.length; i++) {
+            Map<Object, Object> partition = partitions[i];
+            if (partition == null) continue;
+
+            WritableSlice<?, ?> slice = partitionedSlices[i].getSlice();
+            partition.forEach((key, value) -> f.invoke(slice, key, value));
+        }
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        int index = partitionIndex(slice.getKey());
+        if (index < 0) {
+            return super.getSliceContents(slice);
+        }
+
+        Map<Object, Object> partition = partitions[index];
+        if (partition == null) return ImmutableMap.of();
+
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        partition.forEach((key, value) -> builder.put((K) key, (V) value));
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of entries in each slice, in the descending order of the number of entries.
+     * Computing the sizes of slices which are not partitioned requires iterating over all entries of the map.
+     */
+    @NotNull
+    public Map<WritableSlice<?, ?>, Integer> getSliceSizes() {
+        Map<WritableSlice<?, ?>, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < partitions.length; i++) {
+            if (partitions[i] != null) {
+                sizes.put(partitionedSlices[i].getSlice(), partitions[i].size());
+            }
+        }
+        super.forEach((slice, key, value) -> {
+            sizes.merge(slice, 1, Integer::sum);
+            return null;
+        });
+
+        List<Map.Entry<WritableSlice<?, ?>, Integer>> entries = new ArrayList<>(sizes.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+
+        Map<WritableSlice<?, ?>, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<WritableSlice<?, ?>, Integer> entry : entries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+}
@@ -57,17 +57,26 @@ public class SlicedMapImpl implements MutableSlicedMap {
 
         Key<V> sliceKey = slice.getKey();
 
-        RewritePolicy rewritePolicy = slice.getRewritePolicy();
-        if (!alwaysAllowRewrite && rewritePolicy.rewriteProcessingNeeded(key)) {
-            V oldValue = holder.get(sliceKey);
-            if (oldValue != null) {
-                //noinspection unchecked
-                if (!rewritePolicy.processRewrite(slice, key, oldValue, value)) {
-                    return;
-                }
-            }
+        if (isRewriteProcessingNeeded(slice, key) && !processRewrite(slice, key, holder.get(sliceKey), value)) {
+            return;
         }
 
+        addCollectiveSliceKey(slice, key);
+
+        map.put(key, holder.plus(sliceKey, value));
+        slice.afterPut(this, key, value);
+    }
+
+    protected final boolean isRewriteProcessingNeeded(@NotNull WritableSlice<?, ?> slice, Object key) {
+        return !alwaysAllowRewrite && slice.getRewritePolicy().rewriteProcessingNeeded(key);
+    }
+
+    // Returns false if the new value should not be put
+    protected static <K, V> boolean processRewrite(@NotNull WritableSlice<K, V> slice, K key, @Nullable V oldValue, V value) {
+        return oldValue == null || slice.getRewritePolicy().processRewrite(slice, key, oldValue, value);
+    }
+
+    protected final void addCollectiveSliceKey(@NotNull WritableSlice<?, ?> slice, Object key) {
         if (slice.isCollective()) {
             if (collectiveSliceKeys == null) {
                 collectiveSliceKeys = ArrayListMultimap.create();
@@ -75,9 +84,6 @@ public class SlicedMapImpl implements MutableSlicedMap {
 
             collectiveSliceKeys.put(slice, key);
         }
-
-        map.put(key, holder.plus(sliceKey, value));
-        slice.afterPut(this, key, value);
     }
 
     @Override
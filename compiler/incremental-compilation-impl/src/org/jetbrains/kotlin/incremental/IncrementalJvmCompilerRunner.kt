@@ -39,6 +39,7 @@ import org.jetbrains.kotlin.incremental.components.ExpectActualTracker
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.multiproject.EmptyModulesApiHistory
 import org.jetbrains.kotlin.incremental.multiproject.ModulesApiHistory
+import org.jetbrains.kotlin.incremental.snapshots.ClasspathAbiSnapshotStorage
 import org.jetbrains.kotlin.load.java.JavaClassesTracker
 import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
@@ -128,6 +129,9 @@ class IncrementalJvmCompilerRunner(
 
     private var dirtyClasspathChanges: Collection<FqName> = emptySet<FqName>()
 
+    private val classpathAbiSnapshots = ClasspathAbiSnapshotStorage(File(workingDir, CLASSPATH_ABI_SNAPSHOT_DIR_NAME))
+    private var classpathToSnapshot: List<File> = emptyList()
+
     private val psiFileFactory: PsiFileFactory by lazy {
         val rootDisposable = Disposer.newDisposable()
         val configuration = CompilerConfiguration()
@@ -155,7 +159,9 @@ class IncrementalJvmCompilerRunner(
         val lastBuildInfo = BuildInfo.read(lastBuildInfoFile) ?: return CompilationMode.Rebuild { "No information on previous build" }
         reporter.reportVerbose { "Last Kotlin Build info -- $lastBuildInfo" }
 
-        val classpathChanges = getClasspathChanges(args.classpathAsList, changedFiles, lastBuildInfo, modulesApiHistory, reporter)
+        val classpathChanges = getClasspathChanges(
+            args.classpathAsList, changedFiles, lastBuildInfo, modulesApiHistory, reporter, classpathAbiSnapshots
+        )
 
         @Suppress("UNUSED_VARIABLE") // for sealed when
         val unused = when (classpathChanges) {
@@ -249,6 +255,7 @@ class IncrementalJvmCompilerRunner(
     }
 
     override fun preBuildHook(args: K2JVMCompilerArguments, compilationMode: CompilationMode) {
+        classpathToSnapshot = args.classpathAsList
         if (compilationMode is CompilationMode.Incremental) {
             val destinationDir = args.destinationAsFile
             destinationDir.mkdirs()
@@ -256,7 +263,11 @@ class IncrementalJvmCompilerRunner(
         }
     }
 
-    override fun postCompilationHook(exitCode: ExitCode) {}
+    override fun postCompilationHook(exitCode: ExitCode) {
+        if (exitCode == ExitCode.OK) {
+            classpathAbiSnapshots.update(classpathToSnapshot)
+        }
+    }
 
     override fun updateCaches(
             services: Services,
@@ -350,6 +361,10 @@ class IncrementalJvmCompilerRunner(
         args.freeArgs = freeArgsBackup
         return exitCode
     }
+
+    companion object {
+        const val CLASSPATH_ABI_SNAPSHOT_DIR_NAME = "classpath-abi-snapshot"
+    }
 }
 
 var K2JVMCompilerArguments.destinationAsFile: File
@@ -6,6 +6,7 @@
 package org.jetbrains.kotlin.incremental
 
 import org.jetbrains.kotlin.incremental.multiproject.ModulesApiHistory
+import org.jetbrains.kotlin.incremental.snapshots.ClasspathAbiSnapshotStorage
 import org.jetbrains.kotlin.incremental.util.Either
 import org.jetbrains.kotlin.name.FqName
 import java.io.File
@@ -15,7 +16,8 @@ internal fun getClasspathChanges(
     changedFiles: ChangedFiles.Known,
     lastBuildInfo: BuildInfo,
     modulesApiHistory: ModulesApiHistory,
-    reporter: ICReporter?
+    reporter: ICReporter?,
+    abiSnapshots: ClasspathAbiSnapshotStorage? = null
 ): ChangesEither {
     val classpathSet = HashSet<File>()
     for (file in classpath) {
@@ -33,6 +35,39 @@ internal fun getClasspathChanges(
 
     if (modifiedClasspath.isEmpty()) return ChangesEither.Known()
 
+    val changesFromHistory = getClasspathChangesFromHistory(modifiedClasspath, lastBuildInfo, modulesApiHistory, reporter)
+    if (changesFromHistory is ChangesEither.Unknown && abiSnapshots != null) {
+        getClasspathChangesFromAbiSnapshots(modifiedClasspath, abiSnapshots, reporter)?.let { return it }
+    }
+    return changesFromHistory
+}
+
+// Compares ABI snapshots of modified jars saved after the last build with their current content.
+// Returns null if some modified file has no snapshot, e.g. it is not a jar or it was not on the classpath during the last build
+private fun getClasspathChangesFromAbiSnapshots(
+    modifiedClasspath: Set<File>,
+    abiSnapshots: ClasspathAbiSnapshotStorage,
+    reporter: ICReporter?
+): ChangesEither? {
+    val symbols = HashSet<LookupSymbol>()
+    val fqNames = HashSet<FqName>()
+
+    for (file in modifiedClasspath) {
+        val dirtyData = abiSnapshots.getChanges(file) ?: return null
+        reporter?.reportVerbose { "Changes of $file from ABI snapshot: ${dirtyData.dirtyLookupSymbols.size} dirty lookup symbols" }
+        symbols.addAll(dirtyData.dirtyLookupSymbols)
+        fqNames.addAll(dirtyData.dirtyClassesFqNames)
+    }
+
+    return ChangesEither.Known(symbols, fqNames)
+}
+
+private fun getClasspathChangesFromHistory(
+    modifiedClasspath: Set<File>,
+    lastBuildInfo: BuildInfo,
+    modulesApiHistory: ModulesApiHistory,
+    reporter: ICReporter?
+): ChangesEither {
     val lastBuildTS = lastBuildInfo.startTS
 
     val symbols = HashSet<LookupSymbol>()
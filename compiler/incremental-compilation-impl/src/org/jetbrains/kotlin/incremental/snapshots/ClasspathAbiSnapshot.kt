@@ -0,0 +1,353 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.snapshots
+
+import org.jetbrains.kotlin.incremental.DirtyData
+import org.jetbrains.kotlin.incremental.LookupSymbol
+import org.jetbrains.kotlin.load.java.JvmAnnotationNames
+import org.jetbrains.kotlin.load.java.getPropertyNamesCandidatesByAccessorName
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmProtoBufUtil
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.jvm.JvmClassName
+import org.jetbrains.org.objectweb.asm.*
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.zip.ZipFile
+
+// ABI of a single class from a classpath jar.
+// The hash covers the class header, Kotlin metadata and all non-private non-synthetic members. Method bodies are included
+// only for Kotlin classes, since they may contain inline functions. [memberNames] are the names which may be used
+// to look up members of the class from Kotlin sources.
+internal class ClassAbiSnapshot(
+    val internalName: String,
+    val abiHash: Long,
+    val isPackageFacade: Boolean,
+    val memberNames: Collection<String>
+)
+
+internal class JarAbiSnapshot(
+    val path: String,
+    val timestamp: Long,
+    val length: Long,
+    val classes: Map<String, ClassAbiSnapshot>
+)
+
+// Per-jar snapshots of the ABI of classpath classes, saved after every successful build.
+// When a jar is modified and there is no build history for it (e.g. a third-party jar), the snapshot from the last build
+// is compared with the current content of the jar, and only usages of the changed classes are marked dirty.
+class ClasspathAbiSnapshotStorage(private val storageDir: File) {
+    // Snapshots of the current state of jars computed during this build, reused when the storage is updated
+    private val currentSnapshots = HashMap<File, JarAbiSnapshot>()
+
+    // Returns dirty data for the changes of the jar since the last build, or null if there is no snapshot for the jar
+    fun getChanges(jar: File): DirtyData? {
+        if (!jar.isFile || !jar.extension.equals("jar", ignoreCase = true)) return null
+
+        val previous = load(jar) ?: return null
+        val current = currentSnapshot(jar) ?: return null
+        return diff(previous, current)
+    }
+
+    // Saves snapshots of the jars from [classpath] which are not up to date
+    fun update(classpath: Iterable<File>) {
+        for (jar in classpath) {
+            if (!jar.isFile || !jar.extension.equals("jar", ignoreCase = true)) continue
+
+            val storageFile = storageFile(jar)
+            if (readHeader(storageFile)?.let { (timestamp, length) -> timestamp == jar.lastModified() && length == jar.length() } == true) {
+                continue
+            }
+            val snapshot = currentSnapshot(jar) ?: continue
+            save(storageFile, snapshot)
+        }
+        currentSnapshots.clear()
+    }
+
+    private fun currentSnapshot(jar: File): JarAbiSnapshot? {
+        val cached = currentSnapshots[jar]
+        if (cached != null && cached.timestamp == jar.lastModified() && cached.length == jar.length()) return cached
+
+        return computeSnapshot(jar)?.also { currentSnapshots[jar] = it }
+    }
+
+    private fun storageFile(jar: File): File =
+        File(storageDir, jar.name + "-" + Integer.toHexString(jar.absolutePath.hashCode()) + ".abi")
+
+    private fun readHeader(storageFile: File): Pair<Long, Long>? {
+        if (!storageFile.isFile) return null
+
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(storageFile))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) return null
+                input.readUTF()
+                input.readLong() to input.readLong()
+            }
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun load(jar: File): JarAbiSnapshot? {
+        val storageFile = storageFile(jar)
+        if (!storageFile.isFile) return null
+
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(storageFile))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) return null
+                val path = input.readUTF()
+                if (path != jar.absolutePath) return null
+                val timestamp = input.readLong()
+                val length = input.readLong()
+
+                val count = input.readInt()
+                val classes = HashMap<String, ClassAbiSnapshot>(count * 4 / 3 + 1)
+                repeat(count) {
+                    val internalName = input.readUTF()
+                    val abiHash = input.readLong()
+                    val isPackageFacade = input.readBoolean()
+                    val memberNames = List(input.readInt()) { input.readUTF() }
+                    classes[internalName] = ClassAbiSnapshot(internalName, abiHash, isPackageFacade, memberNames)
+                }
+                JarAbiSnapshot(path, timestamp, length, classes)
+            }
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun save(storageFile: File, snapshot: JarAbiSnapshot) {
+        try {
+            storageDir.mkdirs()
+            val tempFile = File.createTempFile(storageFile.name, ".tmp", storageDir)
+            try {
+                DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { output ->
+                    output.writeInt(MAGIC)
+                    output.writeInt(VERSION)
+                    output.writeUTF(snapshot.path)
+                    output.writeLong(snapshot.timestamp)
+                    output.writeLong(snapshot.length)
+                    output.writeInt(snapshot.classes.size)
+                    for (classSnapshot in snapshot.classes.values) {
+                        output.writeUTF(classSnapshot.internalName)
+                        output.writeLong(classSnapshot.abiHash)
+                        output.writeBoolean(classSnapshot.isPackageFacade)
+                        output.writeInt(classSnapshot.memberNames.size)
+                        classSnapshot.memberNames.forEach(output::writeUTF)
+                    }
+                }
+                Files.move(tempFile.toPath(), storageFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+            } finally {
+                tempFile.delete()
+            }
+        } catch (e: IOException) {
+            // Without a snapshot the next change of the jar will lead to a rebuild, as before
+        }
+    }
+
+    companion object {
+        private const val MAGIC = 0x4B434153 // "KCAS"
+        private const val VERSION = 3
+
+        internal fun computeSnapshot(jar: File): JarAbiSnapshot? {
+            val timestamp = jar.lastModified()
+            val length = jar.length()
+
+            return try {
+                ZipFile(jar).use { zip ->
+                    val classes = HashMap<String, ClassAbiSnapshot>()
+                    for (entry in zip.entries()) {
+                        val name = entry.name
+                        if (entry.isDirectory || !name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                            continue
+                        }
+
+                        val bytes = zip.getInputStream(entry).use { it.readBytes() }
+                        val snapshot = computeClassSnapshot(bytes) ?: continue
+                        classes[snapshot.internalName] = snapshot
+                    }
+                    JarAbiSnapshot(jar.absolutePath, timestamp, length, classes)
+                }
+            } catch (e: IOException) {
+                null
+            }
+        }
+
+        internal fun computeClassSnapshot(bytes: ByteArray): ClassAbiSnapshot? {
+            val reader = try {
+                ClassReader(bytes)
+            } catch (e: RuntimeException) {
+                return null
+            }
+
+            var metadataKind: Int? = null
+            val metadataData = arrayListOf<String>()
+            val metadataStrings = arrayListOf<String>()
+            reader.accept(object : ClassVisitor(Opcodes.API_VERSION) {
+                override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor? {
+                    if (desc != JvmAnnotationNames.METADATA_DESC) return null
+                    return object : AnnotationVisitor(Opcodes.API_VERSION) {
+                        override fun visit(name: String, value: Any) {
+                            if (name == JvmAnnotationNames.KIND_FIELD_NAME) metadataKind = value as? Int
+                        }
+
+                        override fun visitArray(name: String): AnnotationVisitor? {
+                            val target = when (name) {
+                                JvmAnnotationNames.METADATA_DATA_FIELD_NAME -> metadataData
+                                JvmAnnotationNames.METADATA_STRINGS_FIELD_NAME -> metadataStrings
+                                else -> return null
+                            }
+                            return object : AnnotationVisitor(Opcodes.API_VERSION) {
+                                override fun visit(name: String?, value: Any) {
+                                    if (value is String) target.add(value)
+                                }
+                            }
+                        }
+                    }
+                }
+            }, ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
+
+            val kind = metadataKind?.let { KotlinClassHeader.Kind.getById(it) }
+            val isKotlin = metadataKind != null
+            // JVM names of Kotlin members differ from the names used in Kotlin sources for @JvmName, internal and inline class
+            // mangling, so names of Kotlin classes and file facades are taken from the metadata
+            val kotlinMemberNames = readKotlinMemberNames(kind, metadataData, metadataStrings)
+            val memberNames = LinkedHashSet<String>()
+            if (kotlinMemberNames != null) {
+                memberNames.addAll(kotlinMemberNames)
+            }
+
+            val writer = ClassWriter(0)
+            val abiFilter = object : ClassVisitor(Opcodes.API_VERSION, writer) {
+                override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
+                    if (!isAbiMember(access)) return null
+                    if (kotlinMemberNames == null) memberNames.add(name)
+                    return super.visitField(access, name, desc, signature, value)
+                }
+
+                override fun visitMethod(
+                    access: Int, name: String, desc: String, signature: String?, exceptions: Array<out String>?
+                ): MethodVisitor? {
+                    if (!isAbiMember(access)) return null
+                    if (kotlinMemberNames == null && name != "<init>" && name != "<clinit>") {
+                        memberNames.add(name)
+                        memberNames.addAll(propertyNamesByAccessorName(name))
+                    }
+                    return super.visitMethod(access, name, desc, signature, exceptions)
+                }
+            }
+            val flags = if (isKotlin) ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES
+            else ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES
+            reader.accept(abiFilter, flags)
+
+            val isPackageFacade = kind == KotlinClassHeader.Kind.FILE_FACADE ||
+                    kind == KotlinClassHeader.Kind.MULTIFILE_CLASS ||
+                    kind == KotlinClassHeader.Kind.MULTIFILE_CLASS_PART
+
+            return ClassAbiSnapshot(reader.className, hash(writer.toByteArray()), isPackageFacade, memberNames)
+        }
+
+        internal fun diff(previous: JarAbiSnapshot, current: JarAbiSnapshot): DirtyData {
+            val symbols = HashSet<LookupSymbol>()
+            val fqNames = HashSet<FqName>()
+
+            for (internalName in previous.classes.keys + current.classes.keys) {
+                val old = previous.classes[internalName]
+                val new = current.classes[internalName]
+                if (old != null && new != null && old.abiHash == new.abiHash) continue
+
+                val jvmClassName = JvmClassName.byInternalName(internalName)
+                val memberNames = (old?.memberNames ?: emptyList<String>()) + (new?.memberNames ?: emptyList<String>())
+                if (old?.isPackageFacade == true || new?.isPackageFacade == true) {
+                    val packageFqName = jvmClassName.packageFqName.asString()
+                    memberNames.mapTo(symbols) { LookupSymbol(it, packageFqName) }
+                } else {
+                    val fqName = jvmClassName.fqNameForClassNameWithoutDollars
+                    fqNames.add(fqName)
+                    symbols.add(LookupSymbol(fqName.shortName().asString(), fqName.parent().asString()))
+                    memberNames.mapTo(symbols) { LookupSymbol(it, fqName.asString()) }
+                }
+            }
+
+            return DirtyData(symbols, fqNames)
+        }
+
+        // Returns names of functions, properties, type aliases, nested classes and enum entries declared in the metadata of a class
+        // or a file facade, or null if there is no such metadata or it cannot be read
+        private fun readKotlinMemberNames(kind: KotlinClassHeader.Kind?, data: List<String>, strings: List<String>): Collection<String>? {
+            if (data.isEmpty()) return null
+
+            return try {
+                when (kind) {
+                    KotlinClassHeader.Kind.CLASS -> {
+                        val (nameResolver, proto) = JvmProtoBufUtil.readClassDataFrom(data.toTypedArray(), strings.toTypedArray())
+                        val names = LinkedHashSet<String>()
+                        proto.functionList.mapTo(names) { nameResolver.getString(it.name) }
+                        proto.propertyList.mapTo(names) { nameResolver.getString(it.name) }
+                        proto.typeAliasList.mapTo(names) { nameResolver.getString(it.name) }
+                        proto.nestedClassNameList.mapTo(names) { nameResolver.getString(it) }
+                        proto.enumEntryList.mapTo(names) { nameResolver.getString(it.name) }
+                        names
+                    }
+                    KotlinClassHeader.Kind.FILE_FACADE, KotlinClassHeader.Kind.MULTIFILE_CLASS_PART -> {
+                        val (nameResolver, proto) = JvmProtoBufUtil.readPackageDataFrom(data.toTypedArray(), strings.toTypedArray())
+                        val names = LinkedHashSet<String>()
+                        proto.functionList.mapTo(names) { nameResolver.getString(it.name) }
+                        proto.propertyList.mapTo(names) { nameResolver.getString(it.name) }
+                        proto.typeAliasList.mapTo(names) { nameResolver.getString(it.name) }
+                        names
+                    }
+                    else -> null
+                }
+            } catch (e: Exception) {
+                // Metadata of an unsupported version, JVM names are used instead
+                null
+            }
+        }
+
+        private fun isAbiMember(access: Int): Boolean =
+            access and Opcodes.ACC_PRIVATE == 0 && access and Opcodes.ACC_SYNTHETIC == 0
+
+        // Kotlin sources look up synthetic properties of Java classes, and properties of Kotlin classes without readable metadata,
+        // by property names rather than by the names of the accessors. Both the name of the synthetic property and the JavaBeans
+        // name are used, since they differ for names starting with an abbreviation: getURL is "url" in Kotlin and "URL" in JavaBeans
+        private fun propertyNamesByAccessorName(name: String): Collection<String> {
+            if (!Name.isValidIdentifier(name)) return emptyList()
+
+            val names = LinkedHashSet<String>()
+            getPropertyNamesCandidatesByAccessorName(Name.identifier(name)).mapTo(names) { it.asString() }
+            javaBeansPropertyName(name)?.let { names.add(it) }
+            names.remove(name)
+            return names
+        }
+
+        // See java.beans.Introspector.decapitalize
+        private fun javaBeansPropertyName(accessorName: String): String? {
+            val prefix = when {
+                accessorName.startsWith("get") || accessorName.startsWith("set") -> 3
+                accessorName.startsWith("is") -> 2
+                else -> return null
+            }
+            if (accessorName.length <= prefix) return null
+
+            val name = accessorName.substring(prefix)
+            if (name.length > 1 && name[0].isUpperCase() && name[1].isUpperCase()) return name
+            return name[0].toLowerCase() + name.substring(1)
+        }
+
+        private fun hash(bytes: ByteArray): Long {
+            val digest = MessageDigest.getInstance("MD5").digest(bytes)
+            var result = 0L
+            for (i in 0 until 8) {
+                result = (result shl 8) or (digest[i].toLong() and 0xFF)
+            }
+            return result
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.snapshots
+
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.jetbrains.kotlin.incremental.DirtyData
+import org.jetbrains.kotlin.incremental.LookupSymbol
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.org.objectweb.asm.ClassWriter
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+class ClasspathAbiSnapshotTest : TestWithWorkingDir() {
+    @Test
+    fun testChangedMethodBodyOfJavaClass() {
+        val dirtyData = diffJars(
+            listOf(javaClass("a/A", publicMethod = "foo", returnValue = 1)),
+            listOf(javaClass("a/A", publicMethod = "foo", returnValue = 2))
+        )
+
+        assertTrue(dirtyData.dirtyLookupSymbols.isEmpty())
+        assertTrue(dirtyData.dirtyClassesFqNames.isEmpty())
+    }
+
+    @Test
+    fun testChangedPrivateMember() {
+        val dirtyData = diffJars(
+            listOf(javaClass("a/A", publicMethod = "foo", privateMethod = "bar")),
+            listOf(javaClass("a/A", publicMethod = "foo", privateMethod = "baz"))
+        )
+
+        assertTrue(dirtyData.dirtyLookupSymbols.isEmpty())
+        assertTrue(dirtyData.dirtyClassesFqNames.isEmpty())
+    }
+
+    @Test
+    fun testChangedPublicMember() {
+        val dirtyData = diffJars(
+            listOf(javaClass("a/A", publicMethod = "foo"), javaClass("a/B", publicMethod = "foo")),
+            listOf(javaClass("a/A", publicMethod = "bar"), javaClass("a/B", publicMethod = "foo"))
+        )
+
+        assertEquals(
+            setOf(LookupSymbol("A", "a"), LookupSymbol("foo", "a.A"), LookupSymbol("bar", "a.A")),
+            dirtyData.dirtyLookupSymbols.toSet()
+        )
+        assertEquals(setOf(FqName("a.A")), dirtyData.dirtyClassesFqNames.toSet())
+    }
+
+    @Test
+    fun testChangedJavaGetter() {
+        val expectedPropertyNames = mapOf(
+            "getFoo" to listOf("foo"),
+            "getURL" to listOf("url", "URL"),
+            "isEnabled" to listOf("enabled"),
+            "setBar" to listOf("bar", "isBar")
+        )
+        for ((accessorName, propertyNames) in expectedPropertyNames) {
+            val dirtyData = diffJars(
+                listOf(javaClass("a/A", publicMethod = accessorName)),
+                listOf(javaClass("a/A", publicMethod = accessorName, returnsLong = true))
+            )
+
+            val symbols = dirtyData.dirtyLookupSymbols.toSet()
+            for (name in listOf(accessorName) + propertyNames) {
+                assertTrue("No lookup symbol for $name in $symbols", LookupSymbol(name, "a.A") in symbols)
+            }
+            assertEquals(setOf(FqName("a.A")), dirtyData.dirtyClassesFqNames.toSet())
+        }
+    }
+
+    @Test
+    fun testAddedAndRemovedClasses() {
+        val dirtyData = diffJars(
+            listOf(javaClass("a/A", publicMethod = "foo")),
+            listOf(javaClass("a/B", publicMethod = "bar"))
+        )
+
+        assertEquals(setOf(FqName("a.A"), FqName("a.B")), dirtyData.dirtyClassesFqNames.toSet())
+        assertTrue(LookupSymbol("A", "a") in dirtyData.dirtyLookupSymbols)
+        assertTrue(LookupSymbol("B", "a") in dirtyData.dirtyLookupSymbols)
+    }
+
+    @Test
+    fun testKotlinMemberNamesAreTakenFromMetadata() {
+        fun compile(name: String, returnType: String, value: String): File {
+            val source = File(workingDir, "$name/a.kt").apply {
+                parentFile.mkdirs()
+                writeText(
+                    """
+                    package a
+
+                    inline class Id(val value: Int)
+
+                    class A {
+                        @JvmName("renamed")
+                        fun foo(): $returnType = $value
+                        internal fun bar(): $returnType = $value
+                        fun baz(id: Id): $returnType = $value
+                        val prop: $returnType get() = $value
+                    }
+
+                    fun topLevel(id: Id): $returnType = $value
+                    """.trimIndent()
+                )
+            }
+            return CompilerTestUtil.compileJvmLibrary(source, name, listOf("-XXLanguage:+InlineClasses"))
+        }
+
+        val dirtyData = ClasspathAbiSnapshotStorage.diff(
+            ClasspathAbiSnapshotStorage.computeSnapshot(compile("old", "Int", "1"))!!,
+            ClasspathAbiSnapshotStorage.computeSnapshot(compile("new", "String", "\"1\""))!!
+        )
+
+        val symbols = dirtyData.dirtyLookupSymbols.toSet()
+        for (name in listOf("foo", "bar", "baz", "prop")) {
+            assertTrue("No lookup symbol for $name in $symbols", LookupSymbol(name, "a.A") in symbols)
+        }
+        assertTrue("No lookup symbol for topLevel in $symbols", LookupSymbol("topLevel", "a") in symbols)
+
+        val jvmOnlyNames = symbols.filter { it.name == "renamed" || it.name.startsWith("getProp") || '$' in it.name || '-' in it.name }
+        assertTrue("Lookup symbols with JVM names: $jvmOnlyNames", jvmOnlyNames.isEmpty())
+        assertEquals(setOf(FqName("a.A")), dirtyData.dirtyClassesFqNames.toSet())
+    }
+
+    @Test
+    fun testStorage() {
+        val storage = ClasspathAbiSnapshotStorage(File(workingDir, "snapshots"))
+        val jar = File(workingDir, "lib.jar")
+        writeJar(jar, listOf(javaClass("a/A", publicMethod = "foo")))
+
+        assertNull("Jar without snapshot", storage.getChanges(jar))
+
+        storage.update(listOf(jar))
+        writeJar(jar, listOf(javaClass("a/A", publicMethod = "bar")))
+        jar.setLastModified(jar.lastModified() + 2000)
+
+        val dirtyData = storage.getChanges(jar)
+        assertNotNull(dirtyData)
+        assertEquals(setOf(FqName("a.A")), dirtyData!!.dirtyClassesFqNames.toSet())
+    }
+
+    private fun diffJars(oldClasses: List<Pair<String, ByteArray>>, newClasses: List<Pair<String, ByteArray>>): DirtyData {
+        val oldJar = File(workingDir, "old.jar").also { writeJar(it, oldClasses) }
+        val newJar = File(workingDir, "new.jar").also { writeJar(it, newClasses) }
+        return ClasspathAbiSnapshotStorage.diff(
+            ClasspathAbiSnapshotStorage.computeSnapshot(oldJar)!!,
+            ClasspathAbiSnapshotStorage.computeSnapshot(newJar)!!
+        )
+    }
+
+    private fun writeJar(jar: File, classes: List<Pair<String, ByteArray>>) {
+        JarOutputStream(jar.outputStream()).use { output ->
+            for ((internalName, bytes) in classes) {
+                output.putNextEntry(JarEntry("$internalName.class"))
+                output.write(bytes)
+                output.closeEntry()
+            }
+        }
+    }
+
+    private fun javaClass(
+        internalName: String,
+        publicMethod: String,
+        privateMethod: String? = null,
+        returnValue: Int = 0,
+        returnsLong: Boolean = false
+    ): Pair<String, ByteArray> {
+        val writer = ClassWriter(ClassWriter.COMPUTE_MAXS)
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null)
+
+        fun method(access: Int, name: String, returnsLong: Boolean) {
+            val method = writer.visitMethod(access, name, if (returnsLong) "()J" else "()I", null, null)
+            method.visitCode()
+            method.visitLdcInsn(if (returnsLong) returnValue.toLong() else returnValue)
+            method.visitInsn(if (returnsLong) Opcodes.LRETURN else Opcodes.IRETURN)
+            method.visitMaxs(0, 0)
+            method.visitEnd()
+        }
+
+        method(Opcodes.ACC_PUBLIC, publicMethod, returnsLong)
+        if (privateMethod != null) {
+            method(Opcodes.ACC_PRIVATE, privateMethod, returnsLong = false)
+        }
+        writer.visitEnd()
+        return internalName to writer.toByteArray()
+    }
+}
@@ -13,6 +13,7 @@ import org.jetbrains.kotlin.descriptors.ClassDescriptor
 import org.jetbrains.kotlin.descriptors.SimpleFunctionDescriptor
 import org.jetbrains.kotlin.descriptors.findClassAcrossModuleDependencies
 import org.jetbrains.kotlin.incremental.components.NoLookupLocation
+import org.jetbrains.kotlin.ir.declarations.IrFile
 import org.jetbrains.kotlin.ir.declarations.IrFunction
 import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
 import org.jetbrains.kotlin.ir.declarations.IrPackageFragment
@@ -35,6 +36,10 @@ abstract class Ir<out T : CommonBackendContext>(val context: T, val irModule: Ir
     val defaultParameterDeclarationsCache = mutableMapOf<IrFunction, IrFunction>()
 
     open fun shouldGenerateHandlerParameterForDefaultBodyFun() = false
+
+    // Returns an index of the nodes in the file, or null if lowerings may copy nodes from other files (e.g. by inlining functions),
+    // in which case an index can become incorrect. See IrFileIndex.
+    open fun fileIndex(irFile: IrFile): IrFileIndex? = null
 }
 
 // Some symbols below are used in kotlin-native, so they can't be private
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.backend.common.ir
+
+import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.ir.IrElement
+import org.jetbrains.kotlin.ir.declarations.IrFile
+import org.jetbrains.kotlin.ir.expressions.IrFunctionAccessExpression
+import org.jetbrains.kotlin.ir.expressions.IrLocalDelegatedPropertyReference
+import org.jetbrains.kotlin.ir.expressions.IrPropertyReference
+import org.jetbrains.kotlin.ir.symbols.IrFunctionSymbol
+import org.jetbrains.kotlin.ir.visitors.IrElementVisitorVoid
+import org.jetbrains.kotlin.ir.visitors.acceptChildrenVoid
+import org.jetbrains.kotlin.ir.visitors.acceptVoid
+
+/**
+ * Kinds of nodes found in a file, collected in a single walk, so that lowerings which only process a few kinds of nodes
+ * can skip files without them instead of walking the whole file.
+ *
+ * The index is not updated when the file is changed, so it can only answer "may the file contain such nodes" for nodes which
+ * are never created by lowerings, except by copying them within the same file: e.g. property references, or calls to functions
+ * which are only called from the source code. An index built at any point during lowering stays correct for such queries
+ * (see [Ir.fileIndex] for the backends where this holds).
+ *
+ * If [checkUpToDate] is set (see [PhaseConfig.checkConditions]), every answer that the file has no such nodes is checked against
+ * a fresh walk of the file, so that a lowering which starts creating them is noticed.
+ */
+class IrFileIndex private constructor(
+    private val irFile: IrFile,
+    // Functions called from the file, including constructors
+    private val calledFunctions: Set<IrFunctionSymbol>,
+    private val propertyReferences: Boolean,
+    private val checkUpToDate: Boolean
+) {
+    fun mayCallAny(functions: Collection<IrFunctionSymbol>): Boolean =
+        mayCall { it in functions }
+
+    fun mayCall(predicate: (IrFunctionSymbol) -> Boolean): Boolean {
+        val result = calledFunctions.any(predicate)
+        if (!result && checkUpToDate) {
+            val called = build(irFile, checkUpToDate = false).calledFunctions.filter(predicate)
+            check(called.isEmpty()) {
+                "Calls to ${called.map { it.descriptor }} were created in ${irFile.name} after the file index was built"
+            }
+        }
+        return result
+    }
+
+    // Whether the file contains property references or local delegated property references
+    val hasPropertyReferences: Boolean
+        get() {
+            if (!propertyReferences && checkUpToDate) {
+                check(!build(irFile, checkUpToDate = false).propertyReferences) {
+                    "Property references were created in ${irFile.name} after the file index was built"
+                }
+            }
+            return propertyReferences
+        }
+
+    companion object {
+        fun build(irFile: IrFile, checkUpToDate: Boolean): IrFileIndex {
+            val calledFunctions = HashSet<IrFunctionSymbol>()
+            var hasPropertyReferences = false
+
+            irFile.acceptVoid(object : IrElementVisitorVoid {
+                override fun visitElement(element: IrElement) {
+                    element.acceptChildrenVoid(this)
+                }
+
+                override fun visitFunctionAccess(expression: IrFunctionAccessExpression) {
+                    calledFunctions.add(expression.symbol)
+                    super.visitFunctionAccess(expression)
+                }
+
+                override fun visitPropertyReference(expression: IrPropertyReference) {
+                    hasPropertyReferences = true
+                    super.visitPropertyReference(expression)
+                }
+
+                override fun visitLocalDelegatedPropertyReference(expression: IrLocalDelegatedPropertyReference) {
+                    hasPropertyReferences = true
+                    super.visitLocalDelegatedPropertyReference(expression)
+                }
+            })
+
+            return IrFileIndex(irFile, calledFunctions, hasPropertyReferences, checkUpToDate)
+        }
+    }
+}
@@ -23,6 +23,10 @@ import org.jetbrains.kotlin.util.OperatorNameConventions
 
 class ArrayConstructorLowering(val context: CommonBackendContext) : IrElementTransformerVoidWithContext(), FileLoweringPass {
     override fun lower(irFile: IrFile) {
+        // Array(size, init) is only called from the source code, so the file index can be used to skip files without such calls
+        if (context.ir.fileIndex(irFile)?.mayCallAny(arrayInlineToSizeCtor.keys) == false)
+            return
+
         irFile.transformChildrenVoid(this)
     }
 
@@ -28,6 +28,10 @@ val computeStringTrimPhase = makeIrFilePhase(
 
 class StringTrimLowering(val context: CommonBackendContext) : FileLoweringPass, IrElementTransformerVoid() {
     override fun lower(irFile: IrFile) {
+        // trimIndent and trimMargin are only called from the source code, so the file index can be used to skip files without them
+        if (context.ir.fileIndex(irFile)?.mayCall { it.descriptor.name in TRIM_NAMES } == false)
+            return
+
         irFile.transformChildrenVoid(this)
     }
 
@@ -82,5 +86,6 @@ class StringTrimLowering(val context: CommonBackendContext) : FileLoweringPass,
 
         private val TRIM_MARGIN_FQ_NAME = FqName.fromSegments(listOf("kotlin", "text", "trimMargin"))
         private val TRIM_INDENT_FQ_NAME = FqName.fromSegments(listOf("kotlin", "text", "trimIndent"))
+        private val TRIM_NAMES = setOf(TRIM_INDENT_FQ_NAME.shortName(), TRIM_MARGIN_FQ_NAME.shortName())
     }
 }
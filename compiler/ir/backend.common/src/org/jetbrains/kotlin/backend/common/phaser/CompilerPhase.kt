@@ -6,7 +6,6 @@
 package org.jetbrains.kotlin.backend.common.phaser
 
 import org.jetbrains.kotlin.backend.common.CommonBackendContext
-import kotlin.system.measureTimeMillis
 
 class PhaserState<Data>(
     val alreadyDone: MutableSet<AnyNamedPhase> = mutableSetOf(),
@@ -121,7 +120,7 @@ abstract class AbstractNamedPhaseWrapper<in Context : CommonBackendContext, Inpu
     }
 
     private fun runBody(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, input: Input): Output {
-        return if (phaseConfig.needProfiling) {
+        return if (phaseConfig.needProfiling || phaseConfig.phaseTimeListener != null) {
             runAndProfile(phaseConfig, phaserState, context, input)
         } else {
             phaserState.downlevel(nlevels) {
@@ -145,15 +144,17 @@ abstract class AbstractNamedPhaseWrapper<in Context : CommonBackendContext, Inpu
     }
 
     private fun runAndProfile(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, source: Input): Output {
-        var result: Output? = null
-        val msec = measureTimeMillis {
-            result = phaserState.downlevel(nlevels) {
-                lower.invoke(phaseConfig, phaserState, context, source)
-            }
+        val start = System.nanoTime()
+        val result = phaserState.downlevel(nlevels) {
+            lower.invoke(phaseConfig, phaserState, context, source)
+        }
+        val nanos = System.nanoTime() - start
+        phaseConfig.phaseTimeListener?.phaseFinished(name, phaserState.depth, start, nanos)
+        if (phaseConfig.needProfiling) {
+            // TODO: use a proper logger
+            println("${"\t".repeat(phaserState.depth)}$description: ${nanos / 1_000_000} msec")
         }
-        // TODO: use a proper logger
-        println("${"\t".repeat(phaserState.depth)}$description: $msec msec")
-        return result!!
+        return result
     }
 
     private fun checkAndRun(set: Set<AnyNamedPhase>, block: () -> Unit) {
@@ -12,6 +12,11 @@ fun CompilerPhase<*, *, *>.toPhaseMap(): MutableMap<String, AnyNamedPhase> =
         acc
     }
 
+// Receives the time spent in each named phase, nested phases are reported before the phase containing them
+interface PhaseTimeListener {
+    fun phaseFinished(phaseName: String, depth: Int, startNanos: Long, durationNanos: Long)
+}
+
 class PhaseConfig(
     private val compoundPhase: CompilerPhase<*, *, *>,
     private val phases: MutableMap<String, AnyNamedPhase> = compoundPhase.toPhaseMap(),
@@ -26,7 +31,8 @@ class PhaseConfig(
     val namesOfElementsExcludedFromDumping: Set<String> = emptySet(),
     val needProfiling: Boolean = false,
     val checkConditions: Boolean = false,
-    val checkStickyConditions: Boolean = false
+    val checkStickyConditions: Boolean = false,
+    val phaseTimeListener: PhaseTimeListener? = null
 ) {
     private val enabledMut = enabled
 
@@ -7,6 +7,7 @@ package org.jetbrains.kotlin.backend.jvm
 
 import org.jetbrains.kotlin.backend.common.CommonBackendContext
 import org.jetbrains.kotlin.backend.common.ir.Ir
+import org.jetbrains.kotlin.backend.common.ir.IrFileIndex
 import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
 import org.jetbrains.kotlin.backend.jvm.codegen.IrTypeMapper
 import org.jetbrains.kotlin.backend.jvm.descriptors.JvmDeclarationFactory
@@ -93,5 +94,11 @@ class JvmBackendContext(
         override val symbols = JvmSymbols(this@JvmBackendContext, symbolTable, firMode)
 
         override fun shouldGenerateHandlerParameterForDefaultBodyFun() = true
+
+        // JVM lowerings don't move or copy nodes between files
+        private val fileIndexes = HashMap<IrFile, IrFileIndex>()
+
+        override fun fileIndex(irFile: IrFile): IrFileIndex =
+            fileIndexes.getOrPut(irFile) { IrFileIndex.build(irFile, checkUpToDate = phaseConfig.checkConditions) }
     }
 }
@@ -11,6 +11,7 @@ import org.jetbrains.kotlin.backend.common.ir.addSimpleDelegatingConstructor
 import org.jetbrains.kotlin.backend.common.ir.copyTo
 import org.jetbrains.kotlin.backend.common.ir.createImplicitParameterDeclarationWithWrappedDescriptor
 import org.jetbrains.kotlin.backend.common.lower.createIrBuilder
+import org.jetbrains.kotlin.backend.common.runOnFilePostfix
 import org.jetbrains.kotlin.backend.common.phaser.makeIrFilePhase
 import org.jetbrains.kotlin.backend.jvm.JvmBackendContext
 import org.jetbrains.kotlin.backend.jvm.JvmLoweredDeclarationOrigin
@@ -142,6 +143,13 @@ internal class PropertyReferenceLowering(val context: JvmBackendContext) : Class
     private data class PropertyClassCacheKey(val symbol: IrSymbol, val boundReceiver: Boolean)
     private data class PropertyInstance(val initializer: IrExpression, val index: Int)
 
+    override fun lower(irFile: IrFile) {
+        // Property references are only created by psi2ir, so files without them don't need to be visited class by class
+        if (context.ir.fileIndex(irFile).hasPropertyReferences) {
+            runOnFilePostfix(irFile)
+        }
+    }
+
     override fun lower(irClass: IrClass) {
         val kProperties = mutableMapOf<PropertyCacheKey, PropertyInstance>()
         val kPropertyClasses = mutableMapOf<PropertyClassCacheKey, IrClass>()
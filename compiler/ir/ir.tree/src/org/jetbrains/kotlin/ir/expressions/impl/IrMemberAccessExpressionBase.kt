@@ -37,7 +37,9 @@ abstract class IrMemberAccessExpressionBase(
     override var dispatchReceiver: IrExpression? = null
     override var extensionReceiver: IrExpression? = null
 
-    private val typeArgumentsByIndex = arrayOfNulls<IrType>(typeArgumentsCount)
+    // Most calls have no type arguments, and an empty array can be shared since it's never modified
+    private val typeArgumentsByIndex: Array<IrType?> =
+        if (typeArgumentsCount == 0) NO_TYPE_ARGUMENTS else arrayOfNulls(typeArgumentsCount)
 
     override fun getTypeArgument(index: Int): IrType? {
         if (index >= typeArgumentsCount) {
@@ -62,4 +64,6 @@ abstract class IrMemberAccessExpressionBase(
         dispatchReceiver = dispatchReceiver?.transform(transformer, data)
         extensionReceiver = extensionReceiver?.transform(transformer, data)
     }
-}
\ No newline at end of file
+}
+
+private val NO_TYPE_ARGUMENTS = arrayOfNulls<IrType>(0)
@@ -20,6 +20,10 @@ import org.jetbrains.kotlin.types.*
 import org.jetbrains.kotlin.types.typeUtil.replaceArgumentsWithStarProjections
 import org.jetbrains.kotlin.types.typesApproximation.approximateCapturedTypes
 
+/**
+ * Not thread-safe: the translator keeps the current type parameter scope, caches translated types and uses a symbol table which
+ * is not synchronized either, so it may only be used from the thread which created it.
+ */
 class TypeTranslator(
     private val symbolTable: ReferenceSymbolTable,
     val languageVersionSettings: LanguageVersionSettings,
@@ -56,8 +60,29 @@ class TypeTranslator(
         typeParametersResolver.resolveScopedTypeParameter(typeParameterDescriptor)
             ?: symbolTable.referenceTypeParameter(typeParameterDescriptor)
 
-    fun translateType(kotlinType: KotlinType): IrType =
-        translateType(kotlinType, Variance.INVARIANT).type
+    // Types which don't refer to type parameters and have no annotations are translated the same way in any scope,
+    // so a single IrType instance is shared by all elements using such a type. Most types in a module are like that.
+    private val scopeIndependentTypes = HashMap<ScopeIndependentTypeKey, IrType>()
+
+    private val ownerThread = Thread.currentThread()
+
+    fun translateType(kotlinType: KotlinType): IrType {
+        assert(Thread.currentThread() === ownerThread) {
+            "TypeTranslator is used from ${Thread.currentThread().name}, but it was created in ${ownerThread.name}"
+        }
+        return if (kotlinType.isScopeIndependent())
+            scopeIndependentTypes.getOrPut(ScopeIndependentTypeKey(kotlinType)) { translateType(kotlinType, Variance.INVARIANT).type }
+        else
+            translateType(kotlinType, Variance.INVARIANT).type
+    }
+
+    private fun KotlinType.isScopeIndependent(): Boolean {
+        if (isError || isDynamic()) return false
+        if (isFlexible()) return asFlexibleType().let { it.lowerBound.isScopeIndependent() && it.upperBound.isScopeIndependent() }
+        return annotations.isEmpty() && getAbbreviation() == null &&
+                constructor.declarationDescriptor is ClassDescriptor &&
+                arguments.all { it.isStarProjection || it.type.isScopeIndependent() }
+    }
 
     private fun translateType(kotlinType: KotlinType, variance: Variance): IrTypeProjection {
         val approximatedType = LegacyTypeApproximation().approximate(kotlinType)
@@ -141,3 +166,44 @@ class TypeTranslator(
                 translateType(it.type, it.projectionKind)
         }
 }
+
+// Key of a type in TypeTranslator.scopeIndependentTypes. Equality of types compares class type constructors by the FqNames of their
+// classes, so different classes with the same name (e.g. from different modules) would share an IrType with the wrong class symbol.
+// Keys compare class descriptors by identity instead, together with nullability, flexibility and the type arguments
+private class ScopeIndependentTypeKey(private val type: KotlinType) {
+    override fun equals(other: Any?): Boolean =
+        other is ScopeIndependentTypeKey && sameTypes(type, other.type)
+
+    override fun hashCode(): Int = typeHashCode(type)
+
+    private companion object {
+        fun sameTypes(first: KotlinType, second: KotlinType): Boolean {
+            val a = first.unwrap()
+            val b = second.unwrap()
+            if (a is FlexibleType || b is FlexibleType) {
+                return a is FlexibleType && b is FlexibleType &&
+                        sameTypes(a.lowerBound, b.lowerBound) && sameTypes(a.upperBound, b.upperBound)
+            }
+            return a.constructor.declarationDescriptor === b.constructor.declarationDescriptor &&
+                    a.isMarkedNullable == b.isMarkedNullable &&
+                    a.arguments.size == b.arguments.size &&
+                    a.arguments.indices.all { sameProjections(a.arguments[it], b.arguments[it]) }
+        }
+
+        fun sameProjections(a: TypeProjection, b: TypeProjection): Boolean =
+            if (a.isStarProjection || b.isStarProjection) a.isStarProjection && b.isStarProjection
+            else a.projectionKind == b.projectionKind && sameTypes(a.type, b.type)
+
+        fun typeHashCode(type: KotlinType): Int {
+            val unwrapped = type.unwrap()
+            if (unwrapped is FlexibleType) return 31 * typeHashCode(unwrapped.lowerBound) + typeHashCode(unwrapped.upperBound)
+
+            var result = System.identityHashCode(unwrapped.constructor.declarationDescriptor)
+            result = 31 * result + unwrapped.isMarkedNullable.hashCode()
+            for (argument in unwrapped.arguments) {
+                result = 31 * result + if (argument.isStarProjection) 0 else 31 * argument.projectionKind.hashCode() + typeHashCode(argument.type)
+            }
+            return result
+        }
+    }
+}
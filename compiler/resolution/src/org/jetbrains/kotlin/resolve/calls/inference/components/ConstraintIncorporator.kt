@@ -37,7 +37,7 @@ class ConstraintIncorporator(
     fun incorporate(c: Context, typeVariable: TypeVariableMarker, constraint: Constraint) {
         // we shouldn't incorporate recursive constraint -- It is too dangerous
         with(c) {
-            if (constraint.type.contains { it.typeConstructor() == typeVariable.freshTypeConstructor() }) return
+            if (typeVariable.freshTypeConstructor() in nestedTypeConstructors(constraint)) return
         }
 
         c.directWithVariable(typeVariable, constraint)
@@ -75,9 +75,8 @@ class ConstraintIncorporator(
         constraint: Constraint
     ) {
         val otherInMyConstraint = SmartSet.create<TypeVariableMarker>()
-        constraint.type.contains {
-            otherInMyConstraint.addIfNotNull(this.getTypeVariable(it.typeConstructor()))
-            false
+        for (typeConstructor in nestedTypeConstructors(constraint)) {
+            otherInMyConstraint.addIfNotNull(this.getTypeVariable(typeConstructor))
         }
 
         for (otherTypeVariable in otherInMyConstraint) {
@@ -96,7 +95,7 @@ class ConstraintIncorporator(
     ) {
         for (typeVariableWithConstraint in this@insideOtherConstraint.allTypeVariablesWithConstraints) {
             val constraintsWhichConstraintMyVariable = typeVariableWithConstraint.constraints.filter {
-                it.type.contains { it.typeConstructor() == typeVariable.freshTypeConstructor() }
+                typeVariable.freshTypeConstructor() in nestedTypeConstructors(it)
             }
             constraintsWhichConstraintMyVariable.forEach {
                 generateNewConstraint(typeVariableWithConstraint.typeVariable, it, typeVariable, constraint)
@@ -104,6 +103,20 @@ class ConstraintIncorporator(
         }
     }
 
+    // Every constraint is checked for type variables on each incorporation of every other constraint, so the type constructors
+    // found in its type are computed once and stored in the constraint
+    private fun Context.nestedTypeConstructors(constraint: Constraint): Set<TypeConstructorMarker> {
+        constraint.nestedTypeConstructors?.let { return it }
+
+        val result = SmartSet.create<TypeConstructorMarker>()
+        constraint.type.contains {
+            result.add(it.typeConstructor())
+            false
+        }
+        constraint.nestedTypeConstructors = result
+        return result
+    }
+
     private fun Context.generateNewConstraint(
         targetVariable: TypeVariableMarker,
         baseConstraint: Constraint,
@@ -125,6 +125,16 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
 
         val baseContext: AbstractTypeCheckerContext = newBaseTypeCheckerContext(isErrorTypeEqualsToAnything)
 
+        // Incorporation checks the same pairs of types many times. Checks which neither produced new constraints nor errors
+        // are remembered: checking them again would have no effect
+        private val trivialSubtypeChecks = HashSet<Pair<KotlinTypeMarker, KotlinTypeMarker>>()
+        private var errorCount = 0
+
+        private fun addError(error: KotlinCallDiagnostic) {
+            errorCount++
+            c.addError(error)
+        }
+
         override fun substitutionSupertypePolicy(type: SimpleTypeMarker): SupertypesPolicy {
             return baseContext.substitutionSupertypePolicy(type)
         }
@@ -140,7 +150,7 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
         fun runIsSubtypeOf(lowerType: KotlinTypeMarker, upperType: KotlinTypeMarker) {
             if (!AbstractTypeChecker.isSubtypeOf(this@TypeCheckerContext as AbstractTypeCheckerContext, lowerType, upperType)) {
                 // todo improve error reporting -- add information about base types
-                c.addError(NewConstraintError(lowerType, upperType, position))
+                addError(NewConstraintError(lowerType, upperType, position))
             }
         }
 
@@ -172,7 +182,15 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
         // from ConstraintIncorporator.Context
         override fun addNewIncorporatedConstraint(lowerType: KotlinTypeMarker, upperType: KotlinTypeMarker) {
             if (c.isAllowedType(lowerType) && c.isAllowedType(upperType)) {
+                val types = lowerType to upperType
+                if (types in trivialSubtypeChecks) return
+
+                val constraintCountBefore = possibleNewConstraints.size
+                val errorCountBefore = errorCount
                 runIsSubtypeOf(lowerType, upperType)
+                if (possibleNewConstraints.size == constraintCountBefore && errorCount == errorCountBefore) {
+                    trivialSubtypeChecks.add(types)
+                }
             }
         }
 
@@ -190,7 +208,7 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
             }
 
             if (targetType.isError()) {
-                c.addError(ConstrainingTypeIsError(typeVariable, targetType, position))
+                addError(ConstrainingTypeIsError(typeVariable, targetType, position))
                 return
             }
 
@@ -213,7 +231,7 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
                 }
 
                 if (targetType === type) {
-                    c.addError(CapturedTypeFromSubtyping(typeVariable, type, position))
+                    addError(CapturedTypeFromSubtyping(typeVariable, type, position))
                     return
                 }
             }
@@ -70,6 +70,9 @@ class Constraint(
     val typeHashCode: Int = type.hashCode(),
     val derivedFrom: Set<TypeVariableMarker>
 ) {
+    // Type constructors of the type and its nested types, see ConstraintIncorporator
+    internal var nestedTypeConstructors: Set<TypeConstructorMarker>? = null
+
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (other?.javaClass != javaClass) return false
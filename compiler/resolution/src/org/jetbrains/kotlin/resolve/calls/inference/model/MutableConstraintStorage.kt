@@ -49,7 +49,10 @@ class MutableVariableWithConstraints(
 
     // return new actual constraint, if this constraint is new
     fun addConstraint(constraint: Constraint): Constraint? {
-        val previousConstraintWithSameType = constraints.filter { it.typeHashCode == constraint.typeHashCode && it.type == constraint.type }
+        // Simplified constraints are a subset of all constraints, so they don't need to be recomputed if no constraint has the same type
+        val previousConstraintWithSameType =
+            if (mutableConstraints.none { it.typeHashCode == constraint.typeHashCode }) emptyList()
+            else constraints.filter { it.typeHashCode == constraint.typeHashCode && it.type == constraint.type }
 
         if (previousConstraintWithSameType.any { previous -> newConstraintIsUseless(previous, constraint) })
             return null
@@ -113,25 +116,22 @@ class MutableVariableWithConstraints(
         return distinctConstraints.filter { isUsefulConstraint(it, equalityConstraints) }
     }
 
+    // A constraint from a declared upper bound is a duplicate if there is another constraint with the same type and kind which is
+    // either not from a declared upper bound or goes after it, so only the last one of several such constraints is kept
     private fun removeDuplicatesFromDeclaredUpperBoundConstraints(constraints: List<Constraint>): MutableList<Constraint> {
-        val currentConstraints = constraints.toMutableList()
-        val iterator = currentConstraints.iterator()
-        while (iterator.hasNext()) {
-            val potentialDuplicate = iterator.next()
-
-            if (potentialDuplicate.position.from !is DeclaredUpperBoundConstraintPosition) continue
-            val hasDuplicate = currentConstraints.any { other ->
-                potentialDuplicate !== other &&
-                        potentialDuplicate.typeHashCode == other.typeHashCode &&
-                        potentialDuplicate.type == other.type &&
-                        potentialDuplicate.kind == other.kind
-            }
-
-            if (hasDuplicate)
-                iterator.remove()
+        if (constraints.none { it.position.from is DeclaredUpperBoundConstraintPosition }) return constraints.toMutableList()
+
+        val indicesByTypeHashCode = constraints.indices.groupBy { constraints[it].typeHashCode }
+        return constraints.filterIndexedTo(ArrayList()) { index, potentialDuplicate ->
+            potentialDuplicate.position.from !is DeclaredUpperBoundConstraintPosition ||
+                    indicesByTypeHashCode.getValue(potentialDuplicate.typeHashCode).none { otherIndex ->
+                        val other = constraints[otherIndex]
+                        potentialDuplicate !== other &&
+                                potentialDuplicate.type == other.type &&
+                                potentialDuplicate.kind == other.kind &&
+                                (otherIndex > index || other.position.from !is DeclaredUpperBoundConstraintPosition)
+                    }
         }
-
-        return currentConstraints
     }
 
     private fun isUsefulConstraint(constraint: Constraint, equalityConstraints: Map<Int, List<Constraint>>): Boolean {
@@ -0,0 +1,25 @@
+package test
+
+import kotlin.properties.Delegates
+
+class A {
+    var x: Int by Delegates.notNull()
+    val y = 42
+}
+
+fun references() = listOf(A::x, A::y).map { it.name }
+
+fun arrays() = Array(3) { it.toString() } + IntArray(2) { it }.map { it.toString() }
+
+fun strings() =
+    """
+    a
+    b
+    """.trimIndent() + """
+    |c
+    """.trimMargin()
+
+fun localDelegate(): Int {
+    val z by lazy { 1 }
+    return z
+}
@@ -0,0 +1,18 @@
+package test
+
+class B(val s: String) {
+    lateinit var t: String
+
+    companion object {
+        const val C = "c"
+    }
+
+    fun f(vararg xs: Int, default: String = "d"): String {
+        val array = arrayOf(s, C, default)
+        val lambda = { x: Int -> x.toString() + t }
+        val reference = ::f
+        return "$s ${array.size} ${xs.map(lambda)} $reference" + B::class.java.name
+    }
+}
+
+fun sizes(b: B) = arrayOfNulls<String>(2).size + "abc".trim().length + b.f(1, 2).length
@@ -331,6 +331,11 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/jvm/invalidMetadataVersion.args");
         }
 
+        @TestMetadata("irFileIndex.args")
+        public void testIrFileIndex() throws Exception {
+            runTest("compiler/testData/cli/jvm/irFileIndex.args");
+        }
+
         @TestMetadata("javaSrcWrongPackage.args")
         public void testJavaSrcWrongPackage() throws Exception {
             runTest("compiler/testData/cli/jvm/javaSrcWrongPackage.args");
@@ -491,6 +496,16 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/jvm/noReflect.args");
         }
 
+        @TestMetadata("noStackMapFramesJvm16.args")
+        public void testNoStackMapFramesJvm16() throws Exception {
+            runTest("compiler/testData/cli/jvm/noStackMapFramesJvm16.args");
+        }
+
+        @TestMetadata("noStackMapFramesJvm18.args")
+        public void testNoStackMapFramesJvm18() throws Exception {
+            runTest("compiler/testData/cli/jvm/noStackMapFramesJvm18.args");
+        }
+
         @TestMetadata("noStdlib.args")
         public void testNoStdlib() throws Exception {
             runTest("compiler/testData/cli/jvm/noStdlib.args");
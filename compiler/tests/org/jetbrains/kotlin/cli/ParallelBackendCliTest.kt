@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli
+
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+
+class ParallelBackendCliTest : TestCaseWithTmpdir() {
+    fun testMultiModuleChunkOutputDoesNotDependOnBackendThreads() {
+        val sources = File(tmpdir, "src")
+        val a = File(sources, "a.kt").apply {
+            parentFile.mkdirs()
+            writeText(
+                """
+                package a
+
+                inline fun <reified T> typeName(): String = T::class.java.name
+
+                class A(val x: Int) {
+                    fun plus(other: A) = A(x + other.x)
+                    val lambda = { y: Int -> x + y }
+                }
+                """.trimIndent()
+            )
+        }
+        val b = File(sources, "b.kt").apply {
+            writeText(
+                """
+                package b
+
+                import a.*
+
+                fun test(): String = typeName<A>() + A(1).plus(A(2)).lambda(3)
+
+                object B {
+                    val values = listOf(1, 2, 3).map { it * 2 }
+                }
+                """.trimIndent()
+            )
+        }
+
+        val modules = mapOf("a" to a, "b" to b)
+        val sequential = compileChunk("sequential", modules, emptyList())
+        val parallel = compileChunk("parallel", modules, listOf("-Xbackend-threads=2"))
+        assertSameModuleOutputs(modules.keys, sequential, parallel)
+    }
+
+    // Modules are generated concurrently, while they share the analysis result, lazily deserialized descriptors of the stdlib
+    // and the caches of the environment. Every module uses declarations of the previous one, so their descriptors and
+    // inline functions are used from several threads at once. The chunk is compiled several times, because races show up
+    // only with some schedules.
+    fun testManyModulesAreGeneratedConcurrently() {
+        val sources = File(tmpdir, "src")
+        val modules = (0 until MODULES).associate { i -> "m$i" to createModuleSource(sources, i) }
+
+        val sequential = compileChunk("sequential", modules, emptyList())
+        for (run in 1..RUNS) {
+            val parallel = compileChunk("parallel$run", modules, listOf("-Xbackend-threads=$MODULES"))
+            assertSameModuleOutputs(modules.keys, sequential, parallel)
+        }
+    }
+
+    // Files of one module are always generated on one thread, so the option does not change single-module compilation
+    fun testSingleModuleOutputDoesNotDependOnBackendThreads() {
+        val source = createModuleSource(File(tmpdir, "src"), 0)
+        val sequential = File(tmpdir, "sequential")
+        val parallel = File(tmpdir, "parallel")
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), listOf(source.path, "-d", sequential.path))
+        CompilerTestUtil.executeCompilerAssertSuccessful(
+            K2JVMCompiler(), listOf(source.path, "-d", parallel.path, "-Xbackend-threads=4")
+        )
+        assertSameOutput("m0", sequential, parallel)
+    }
+
+    private fun createModuleSource(sources: File, index: Int): File =
+        File(sources, "m$index.kt").apply {
+            parentFile.mkdirs()
+            val previous = index - 1
+            writeText(
+                """
+                package m$index
+
+                ${if (index > 0) "import m$previous.*" else ""}
+
+                inline fun <reified T : Any> name$index(): String = T::class.java.simpleName
+
+                open class Base$index<T>(val value: T) {
+                    open fun describe(): String = "Base$index(${'$'}value)"
+                }
+
+                class Derived$index : Base$index<List<String>>(listOf("$index")) {
+                    override fun describe(): String =
+                        super.describe() + name$index<Derived$index>() ${if (index > 0) "+ Derived$previous().describe() + name$previous<Data$index>()" else ""}
+                }
+
+                data class Data$index(val a: Int, val b: String)
+
+                fun lambdas$index(): List<() -> Int> = (1..3).map { x -> { x * $index } }
+
+                suspend fun suspending$index(): Int = ${if (index > 0) "suspending$previous() + " else ""}$index
+
+                val lazyValue$index by lazy { Derived$index().describe() }
+
+                object Registry$index {
+                    val values = mutableMapOf<String, Data$index>()
+                }
+                """.trimIndent()
+            )
+        }
+
+    private fun compileChunk(name: String, modules: Map<String, File>, extraArgs: List<String>): File {
+        val outputRoot = File(tmpdir, name)
+        val buildFile = File(tmpdir, "$name.xml").apply {
+            writeText(
+                modules.entries.joinToString("\n", prefix = "<modules>\n", postfix = "\n</modules>") { (module, source) ->
+                    """
+                    <module name="$module" outputDir="${File(outputRoot, module).path}" type="java-production">
+                        <sources path="${source.path}"/>
+                    </module>
+                    """.trimIndent()
+                }
+            )
+        }
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), listOf("-Xbuild-file=${buildFile.path}") + extraArgs)
+        return outputRoot
+    }
+
+    private fun assertSameModuleOutputs(modules: Collection<String>, expectedRoot: File, actualRoot: File) {
+        for (module in modules) {
+            assertSameOutput(module, File(expectedRoot, module), File(actualRoot, module))
+        }
+    }
+
+    private fun assertSameOutput(module: String, expectedRoot: File, actualRoot: File) {
+        val expected = readOutput(expectedRoot)
+        val actual = readOutput(actualRoot)
+        assertEquals("Different set of output files for module $module", expected.keys, actual.keys)
+        assertTrue("No output for module $module", expected.isNotEmpty())
+        for ((path, bytes) in expected) {
+            assertTrue("Output differs for $module/$path", bytes.contentEquals(actual.getValue(path)))
+        }
+    }
+
+    private fun readOutput(root: File): Map<String, ByteArray> =
+        root.walkTopDown().filter(File::isFile).associate { it.relativeTo(root).path to it.readBytes() }
+
+    companion object {
+        private const val MODULES = 6
+        private const val RUNS = 3
+    }
+}
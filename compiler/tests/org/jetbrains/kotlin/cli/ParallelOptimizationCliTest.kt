@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli
+
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.util.TraceClassVisitor
+import java.io.File
+import java.io.PrintWriter
+import java.io.StringWriter
+
+class ParallelOptimizationCliTest : TestCaseWithTmpdir() {
+    // Methods are written to the class file when the class is done, so the constant pool order may differ from the sequential mode,
+    // but the classes must be the same otherwise
+    fun testOutputDoesNotDependOnOptimizationThreads() {
+        val source = File(tmpdir, "test.kt").apply {
+            writeText(
+                """
+                package test
+
+                inline class Id(val value: Int)
+
+                inline class Name(val value: String?)
+
+                fun ids(n: Int): List<Id> = (0 until n).map { Id(it) }
+
+                fun sum(ids: List<Id>): Int {
+                    var result = 0
+                    for (id in ids) {
+                        val boxed: Any = id
+                        result += (boxed as Id).value
+                    }
+                    return result
+                }
+
+                fun name(name: Name?): String = name?.value ?: "<none>"
+
+                fun boxing(x: Int, y: Long?): Any {
+                    val a: Int? = x
+                    val b: Any = a!! + (y ?: 0L)
+                    return if (b == 1L) "one" else b
+                }
+
+                fun switch(s: String, e: Kind): Int = when (s) {
+                    "a" -> 1
+                    "b" -> when (e) { Kind.X -> 2; Kind.Y -> 3 }
+                    else -> try { s.toInt() } catch (e: NumberFormatException) { -1 } finally { println(s) }
+                }
+
+                enum class Kind { X, Y }
+
+                suspend fun suspending(block: suspend () -> Int): Int = block() + block()
+
+                class C(val ids: List<Id>) {
+                    val total by lazy { sum(ids) }
+                    fun names() = ids.map { Name(it.value.toString()) }.filter { it.value != null }
+                }
+                """.trimIndent()
+            )
+        }
+
+        val sequential = compile("sequential", source, emptyList())
+        val parallel = compile("parallel", source, listOf("-Xoptimization-threads=4"))
+
+        val expected = readClasses(sequential)
+        val actual = readClasses(parallel)
+        assertEquals(expected.keys, actual.keys)
+        assertTrue(expected.size > 5)
+        for ((path, text) in expected) {
+            assertEquals("Output differs for $path", text, actual.getValue(path))
+        }
+    }
+
+    private fun compile(name: String, source: File, extraArgs: List<String>): File {
+        val output = File(tmpdir, name)
+        CompilerTestUtil.executeCompilerAssertSuccessful(
+            K2JVMCompiler(),
+            listOf(source.path, "-d", output.path, "-XXLanguage:+InlineClasses") + extraArgs
+        )
+        return output
+    }
+
+    // The textual representation of a class does not depend on the order of its constant pool
+    private fun readClasses(root: File): Map<String, String> =
+        root.walkTopDown().filter { it.isFile && it.extension == "class" }.associate { file ->
+            val text = StringWriter()
+            ClassReader(file.readBytes()).accept(TraceClassVisitor(PrintWriter(text)), 0)
+            file.relativeTo(root).path to text.toString()
+        }
+}
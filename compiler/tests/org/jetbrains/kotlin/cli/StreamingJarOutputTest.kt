@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli
+
+import org.jetbrains.kotlin.cli.common.ExitCode
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.util.jar.Attributes
+import java.util.jar.JarFile
+
+// Output jars are written while the code is generated, see StreamingJarWriter
+class StreamingJarOutputTest : TestCaseWithTmpdir() {
+    fun testJarContainsOutputOfAllFiles() {
+        val jar = File(tmpdir, "out/output.jar")
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), sources() + listOf("-d", jar.path))
+
+        JarFile(jar).use { jarFile ->
+            val entries = jarFile.entries().toList().map { it.name }
+            // The manifest must be the first entry to be found by JarInputStream
+            assertEquals("META-INF/MANIFEST.MF", entries.first())
+            assertEquals(
+                setOf("META-INF/MANIFEST.MF", "META-INF/main.kotlin_module", "test/A.class", "test/A\$lambda\$1.class", "test/MainKt.class"),
+                entries.toSet()
+            )
+            assertEquals(entries.size, entries.toSet().size)
+            assertEquals("test.MainKt", jarFile.manifest.mainAttributes.getValue(Attributes.Name.MAIN_CLASS))
+            assertNull(jarFile.getEntry("kotlin/Unit.class"))
+        }
+        assertNoTemporaryFiles(jar)
+    }
+
+    fun testIncludeRuntime() {
+        val jar = File(tmpdir, "output.jar")
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), sources() + listOf("-d", jar.path, "-include-runtime"))
+
+        JarFile(jar).use { jarFile ->
+            assertNotNull(jarFile.getEntry("test/MainKt.class"))
+            assertNotNull(jarFile.getEntry("kotlin/Unit.class"))
+            assertEquals("test.MainKt", jarFile.manifest.mainAttributes.getValue(Attributes.Name.MAIN_CLASS))
+        }
+        assertNoTemporaryFiles(jar)
+    }
+
+    fun testNoMainClass() {
+        val jar = File(tmpdir, "output.jar")
+        val source = File(tmpdir, "lib.kt").apply { writeText("package lib\n\nfun lib() = 42\n") }
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), listOf(source.path, "-d", jar.path))
+
+        JarFile(jar).use { jarFile ->
+            assertNotNull(jarFile.getEntry("lib/LibKt.class"))
+            assertNull(jarFile.manifest.mainAttributes.getValue(Attributes.Name.MAIN_CLASS))
+        }
+    }
+
+    fun testFailedCompilationKeepsPreviousJar() {
+        val jar = File(tmpdir, "output.jar")
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), sources() + listOf("-d", jar.path))
+        val previousContent = jar.readBytes()
+
+        val broken = File(tmpdir, "broken.kt").apply { writeText("package test\n\nfun broken(): Int = \"\"\n") }
+        val (output, exitCode) = CompilerTestUtil.executeCompiler(K2JVMCompiler(), sources() + listOf(broken.path, "-d", jar.path))
+        assertEquals(output, ExitCode.COMPILATION_ERROR, exitCode)
+
+        assertTrue(previousContent.contentEquals(jar.readBytes()))
+        assertNoTemporaryFiles(jar)
+    }
+
+    private fun sources(): List<String> {
+        val a = File(tmpdir, "a.kt").apply {
+            writeText(
+                """
+                package test
+
+                class A {
+                    val lambda = { x: Int -> x + 1 }
+                }
+                """.trimIndent()
+            )
+        }
+        val main = File(tmpdir, "main.kt").apply {
+            writeText(
+                """
+                package test
+
+                fun main(args: Array<String>) {
+                    println(A().lambda(args.size))
+                }
+                """.trimIndent()
+            )
+        }
+        return listOf(a.path, main.path)
+    }
+
+    private fun assertNoTemporaryFiles(jar: File) {
+        assertEquals(listOf(jar.name), jar.absoluteFile.parentFile.list()!!.filter { it.startsWith(jar.name) })
+    }
+}
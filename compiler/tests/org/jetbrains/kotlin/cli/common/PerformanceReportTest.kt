@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.common
+
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+
+class PerformanceReportTest : TestCaseWithTmpdir() {
+    private class TestPerformanceManager : CommonCompilerPerformanceManager("Test \"compiler\"")
+
+    fun testPerFilePhasesAreAggregated() {
+        val manager = createManagerWithPhases()
+
+        val phases = manager.getMeasurementResults().filterIsInstance<PhaseMeasurement>()
+        assertEquals(listOf("FileLowering", "ModuleLowering"), phases.map { it.phaseName })
+        assertEquals(listOf(3, 1), phases.map { it.count })
+        assertEquals(listOf(6_000_000L, 10_000_000L), phases.map { it.durationNanos })
+        assertEquals(1, manager.getMeasurementResults().filterIsInstance<PeakMemoryMeasurement>().size)
+    }
+
+    fun testTextReport() {
+        val report = File(tmpdir, "report.txt")
+        createManagerWithPhases().dumpPerformanceReport(report)
+
+        val lines = report.readLines()
+        assertEquals("Test \"compiler\" performance report", lines.first())
+        assertEquals(
+            listOf("PHASE:   FileLowering in 6 ms (3 runs)", "PHASE: ModuleLowering in 10 ms"),
+            lines.filter { it.startsWith("PHASE:") }
+        )
+        assertTrue(lines.any { it.startsWith("MEMORY: peak sampled heap usage is ") })
+    }
+
+    fun testJsonReport() {
+        val report = File(tmpdir, "report.json")
+        createManagerWithPhases().dumpPerformanceReport(report)
+
+        val text = report.readText()
+        assertTrue(text.startsWith("{\n  \"compiler\": \"Test \\\"compiler\\\"\",\n  \"displayTimeUnit\": \"ms\",\n  \"measurements\": ["))
+        assertTrue(text.trimEnd().endsWith("]\n}"))
+
+        val measurements = text.substringAfter("\"measurements\": [").substringBefore("\n  ],")
+        val phaseLines = measurements.lines().filter { "\"kind\": \"PHASE\"" in it }
+        assertEquals(
+            listOf(
+                "{\"kind\": \"PHASE\", \"name\": \"FileLowering\", \"depth\": 1, \"runs\": 3, \"ms\": 6}",
+                "{\"kind\": \"PHASE\", \"name\": \"ModuleLowering\", \"depth\": 0, \"runs\": 1, \"ms\": 10}"
+            ),
+            phaseLines.map { it.trim().removeSuffix(",") }
+        )
+
+        // Every run is kept in the trace, relative to the earliest event
+        val events = text.substringAfter("\"traceEvents\": [").substringBefore("\n  ]").lines().filter { it.isNotBlank() }
+        assertEquals(4, events.size)
+        assertEquals(3, events.count { "\"name\": \"FileLowering\"" in it })
+        val threadId = Thread.currentThread().id
+        assertTrue(events.all { "\"ph\": \"X\", \"pid\": 1, \"tid\": $threadId" in it })
+        assertTrue(events.any { "\"ts\": 0, \"dur\": 10000}" in it })
+    }
+
+    fun testMeasurePhase() {
+        val manager = TestPerformanceManager()
+        manager.enableCollectingPerformanceStatistics()
+        assertEquals(42, manager.measurePhase("Phase") { 42 })
+        manager.notifyCompilationFinished()
+
+        val phase = manager.getMeasurementResults().filterIsInstance<PhaseMeasurement>().single()
+        assertEquals("Phase", phase.phaseName)
+        assertEquals(1, phase.count)
+    }
+
+    fun testCompilerPhases() {
+        val source = File(tmpdir, "source.kt")
+        source.writeText("class A {\n    fun f(x: Int) = x + 1\n}\n\nfun g() = A().f(1)\n")
+        val report = File(tmpdir, "report.txt")
+        CompilerTestUtil.executeCompilerAssertSuccessful(
+            K2JVMCompiler(), listOf(source.path, "-d", File(tmpdir, "out").path, "-Xdump-perf=${report.path}")
+        )
+
+        val phases = report.readLines().filter { it.startsWith("PHASE:") }.map {
+            it.removePrefix("PHASE: ").substringBefore(" in ")
+        }
+        assertEquals(
+            listOf(
+                "Parse files",
+                "Resolve declaration headers",
+                "Check declarations",
+                "Resolve bodies",
+                "Resolve imports and check classifier usages",
+                "Write output files"
+            ),
+            phases
+        )
+        assertTrue("Usage of the signature cache is reported", report.readLines().any { it.startsWith("SIGNATURE CACHE: ") })
+    }
+
+    fun testSignatureCacheUsageIsSummedUp() {
+        val manager = TestPerformanceManager()
+        manager.enableCollectingPerformanceStatistics()
+        manager.notifySignatureCacheUsage(hits = 3, misses = 2)
+        manager.notifySignatureCacheUsage(hits = 1, misses = 4)
+        manager.notifyCompilationFinished()
+
+        val measurement = manager.getMeasurementResults().filterIsInstance<SignatureCacheMeasurement>().single()
+        assertEquals("SIGNATURE CACHE: 4 hits, 6 misses", measurement.render())
+    }
+
+    private fun createManagerWithPhases(): TestPerformanceManager =
+        TestPerformanceManager().apply {
+            enableCollectingPerformanceStatistics()
+            notifyPhaseFinished("FileLowering", 1, 1_000_000, 1_000_000)
+            notifyPhaseFinished("FileLowering", 1, 3_000_000, 2_000_000)
+            notifyPhaseFinished("FileLowering", 1, 6_000_000, 3_000_000)
+            notifyPhaseFinished("ModuleLowering", 0, 0, 10_000_000)
+            notifyCompilationFinished()
+        }
+}
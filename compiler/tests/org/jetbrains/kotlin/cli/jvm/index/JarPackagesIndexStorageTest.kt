@@ -0,0 +1,194 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.io.URLUtil
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+import org.jetbrains.kotlin.test.TestJdkKind
+import java.io.File
+import java.util.jar.JarOutputStream
+import java.util.zip.ZipEntry
+
+class JarPackagesIndexStorageTest : KotlinTestWithEnvironment() {
+    private lateinit var tmpdir: File
+
+    override fun createEnvironment(): KotlinCoreEnvironment {
+        tmpdir = KotlinTestUtils.tmpDirForTest(this)
+        val configuration = KotlinTestUtils.newConfiguration(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK)
+        return KotlinCoreEnvironment.createForTests(testRootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+    }
+
+    fun testRoundTrip() {
+        val jar = createJar("lib.jar", "a/b/C.class", "a/D.class", "x/Y.class", "META-INF/MANIFEST.MF")
+        val storageDirectory = File(tmpdir, "storage")
+
+        val expected = setOf("a", "a/b", "x", "META-INF")
+        assertEquals(expected, JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+        assertEquals(1, storageDirectory.listFiles()!!.size)
+
+        // A new storage has nothing in memory and has to read the stored file
+        assertEquals(expected, JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+    }
+
+    fun testChangedJar() {
+        val jar = createJar("lib.jar", "a/A.class")
+        val storageDirectory = File(tmpdir, "storage")
+        val storage = JarPackagesIndexStorage(storageDirectory)
+        assertEquals(setOf("a"), storage.getPackages(jar))
+
+        createJar("lib.jar", "b/B.class", "c/C.class")
+        assertTrue(jar.setLastModified(jar.lastModified() + 10000))
+
+        assertEquals(setOf("b", "c"), storage.getPackages(jar))
+        assertEquals(setOf("b", "c"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+    }
+
+    fun testRebuiltJarWithSameEntries() {
+        val jar = createJar("lib.jar", "a/A.class")
+        val storage = JarPackagesIndexStorage(File(tmpdir, "storage"))
+        val packages = storage.getPackages(jar)
+
+        createJar("lib.jar", "a/A.class")
+        assertTrue(jar.setLastModified(jar.lastModified() + 10000))
+
+        // The checksum of the central directory is the same, so the packages are not computed again
+        assertSame(packages, storage.getPackages(jar))
+    }
+
+    fun testJarIsNotReadWhileTimestampAndLengthAreTheSame() {
+        val jar = createJar("lib.jar", "a/A.class")
+        val storageDirectory = File(tmpdir, "storage")
+        val storage = JarPackagesIndexStorage(storageDirectory)
+        assertEquals(setOf("a"), storage.getPackages(jar))
+
+        // Replace the jar with a file which is not a zip archive, but has the same timestamp and length
+        val timestamp = jar.lastModified()
+        jar.writeBytes(ByteArray(jar.length().toInt()))
+        assertTrue(jar.setLastModified(timestamp))
+
+        assertEquals(setOf("a"), storage.getPackages(jar))
+        // Stored packages are validated by the checksum when they are loaded
+        assertNull(JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+    }
+
+    fun testStoredPackagesOfJarWithSameTimestampAndLength() {
+        val jar = createJar("lib.jar", "a/A.class")
+        val storageDirectory = File(tmpdir, "storage")
+        assertEquals(setOf("a"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+
+        val timestamp = jar.lastModified()
+        val length = jar.length()
+        createJar("lib.jar", "b/B.class")
+        assertTrue(jar.setLastModified(timestamp))
+        assertEquals("Test jars are expected to have the same length", length, jar.length())
+
+        assertEquals(setOf("b"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+    }
+
+    fun testStorageFileIsReplaced() {
+        val jar = createJar("lib.jar", "a/A.class")
+        val storageDirectory = File(tmpdir, "storage")
+        assertEquals(setOf("a"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+
+        // Loading the stored packages must not keep the storage file open or mapped, otherwise it cannot be replaced on Windows
+        createJar("lib.jar", "b/B.class")
+        assertTrue(jar.setLastModified(jar.lastModified() + 10000))
+        assertEquals(setOf("b"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+        assertEquals(1, storageDirectory.listFiles()!!.size)
+        assertEquals(setOf("b"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+    }
+
+    fun testCorruptedStorage() {
+        val jar = createJar("lib.jar", "a/b/C.class")
+        val storageDirectory = File(tmpdir, "storage")
+        JarPackagesIndexStorage(storageDirectory).getPackages(jar)
+        val storageFile = storageDirectory.listFiles()!!.single()
+        val content = storageFile.readBytes()
+
+        storageFile.writeBytes(content.copyOf(content.size / 2))
+        assertEquals(setOf("a", "a/b"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+
+        storageFile.writeBytes(content.copyOf().also { it.fill(0x7F.toByte(), 8, it.size) })
+        assertEquals(setOf("a", "a/b"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+
+        storageFile.writeText("garbage")
+        assertEquals(setOf("a", "a/b"), JarPackagesIndexStorage(storageDirectory).getPackages(jar))
+    }
+
+    fun testNotAJar() {
+        val file = File(tmpdir, "lib.jar").apply { writeText("not a zip archive") }
+        assertNull(JarPackagesIndexStorage(File(tmpdir, "storage")).getPackages(file))
+    }
+
+    fun testNegativeFilterInIndex() {
+        val first = jarRoot(createJar("first.jar", "a/A.class", "common/First.class"))
+        val second = jarRoot(createJar("second.jar", "b/B.class", "common/Second.class"))
+        val roots = listOf(JavaRoot(first, JavaRoot.RootType.BINARY), JavaRoot(second, JavaRoot.RootType.BINARY))
+        val storage = JarPackagesIndexStorage(File(tmpdir, "storage"))
+
+        for (index in listOf(JvmDependenciesIndexImpl(roots, storage), JvmDependenciesIndexImpl(roots))) {
+            assertEquals(listOf(first), packageRoots(index, "a"))
+            assertEquals(listOf(second), packageRoots(index, "b"))
+            assertEquals(listOf(first, second), packageRoots(index, "common"))
+            assertEquals(emptyList<VirtualFile>(), packageRoots(index, "c"))
+
+            assertNotNull(findClassFile(index, ClassId.topLevel(FqName("b.B"))))
+            assertNotNull(findClassFile(index, ClassId.topLevel(FqName("common.First"))))
+            assertNotNull(findClassFile(index, ClassId.topLevel(FqName("common.Second"))))
+            assertNull(findClassFile(index, ClassId.topLevel(FqName("a.B"))))
+        }
+    }
+
+    fun testRootInsideJarIsNotFiltered() {
+        val jar = createJar("lib.jar", "prefix/a/A.class")
+        val root = StandardFileSystems.jar().findFileByPath(jar.path + URLUtil.JAR_SEPARATOR + "prefix")!!
+        val storage = JarPackagesIndexStorage(File(tmpdir, "storage"))
+
+        assertNull(storage.getPackages(root))
+        val index = JvmDependenciesIndexImpl(listOf(JavaRoot(root, JavaRoot.RootType.BINARY)), storage)
+        assertNotNull(findClassFile(index, ClassId.topLevel(FqName("a.A"))))
+    }
+
+    private fun packageRoots(index: JvmDependenciesIndex, packageName: String): List<VirtualFile> {
+        val result = arrayListOf<VirtualFile>()
+        index.traverseDirectoriesInPackage(FqName(packageName)) { directory, _ ->
+            result.add(StandardFileSystems.jar().findFileByPath(directory.path.substringBefore(URLUtil.JAR_SEPARATOR) + URLUtil.JAR_SEPARATOR)!!)
+            true
+        }
+        return result
+    }
+
+    private fun findClassFile(index: JvmDependenciesIndex, classId: ClassId): VirtualFile? =
+        index.findClass(classId) { directory, _ -> directory.findChild(classId.shortClassName.asString() + ".class") }
+
+    private fun jarRoot(jar: File): VirtualFile =
+        StandardFileSystems.jar().findFileByPath(jar.path + URLUtil.JAR_SEPARATOR)!!
+
+    private fun createJar(name: String, vararg entries: String): File {
+        val jar = File(tmpdir, name)
+        JarOutputStream(jar.outputStream()).use { output ->
+            for (entry in entries) {
+                output.putNextEntry(ZipEntry(entry).apply { time = ENTRY_TIME })
+                output.write(ENTRY_CONTENT)
+                output.closeEntry()
+            }
+        }
+        return jar
+    }
+
+    companion object {
+        private const val ENTRY_TIME = 1000000000000L
+        private val ENTRY_CONTENT = ByteArray(16) { it.toByte() }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.inline.*
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.commons.Method
+import org.jetbrains.org.objectweb.asm.tree.InsnNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+class CompiledInlineMethodCacheTest : TestCase() {
+    private var created = 0
+
+    fun testSameClassContentIsShared() {
+        val cache = CompiledInlineMethodCache(100)
+        val first = cache.getOrCreate(CompiledClassBytes(byteArrayOf(1, 2, 3)), CLASS, FOO) { methodNode(3) }
+        val second = cache.getOrCreate(CompiledClassBytes(byteArrayOf(1, 2, 3)), CLASS, FOO) { methodNode(3) }
+
+        assertSame(first, second)
+        assertEquals(1, created)
+    }
+
+    fun testDifferentClassContentIsNotShared() {
+        val cache = CompiledInlineMethodCache(100)
+        val first = cache.getOrCreate(CompiledClassBytes(byteArrayOf(1, 2, 3)), CLASS, FOO) { methodNode(3) }
+        val second = cache.getOrCreate(CompiledClassBytes(byteArrayOf(1, 2, 4)), CLASS, FOO) { methodNode(3) }
+        val third = cache.getOrCreate(CompiledClassBytes(byteArrayOf(1, 2, 3)), CLASS, BAR) { methodNode(3) }
+
+        assertNotSame(first, second)
+        assertNotSame(first, third)
+        assertEquals(3, created)
+    }
+
+    fun testMissingMethodIsNotCached() {
+        val cache = CompiledInlineMethodCache(100)
+        val bytes = CompiledClassBytes(byteArrayOf(1))
+        assertNull(cache.getOrCreate(bytes, CLASS, FOO) { created++; null })
+        assertNotNull(cache.getOrCreate(bytes, CLASS, FOO) { methodNode(1) })
+        assertEquals(2, created)
+    }
+
+    fun testLeastRecentlyUsedMethodsAreEvicted() {
+        val cache = CompiledInlineMethodCache(10)
+        val bytes = CompiledClassBytes(byteArrayOf(1))
+        val foo = cache.getOrCreate(bytes, CLASS, FOO) { methodNode(4) }
+        cache.getOrCreate(bytes, CLASS, BAR) { methodNode(4) }
+        // Makes `bar` the least recently used method
+        assertSame(foo, cache.getOrCreate(bytes, CLASS, FOO) { methodNode(4) })
+
+        cache.getOrCreate(bytes, CLASS, BAZ) { methodNode(4) }
+        assertEquals(3, created)
+
+        assertSame(foo, cache.getOrCreate(bytes, CLASS, FOO) { methodNode(4) })
+        cache.getOrCreate(bytes, CLASS, BAR) { methodNode(4) }
+        assertEquals(4, created)
+    }
+
+    fun testMethodLargerThanCacheIsReturned() {
+        val cache = CompiledInlineMethodCache(2)
+        val bytes = CompiledClassBytes(byteArrayOf(1))
+        val foo = cache.getOrCreate(bytes, CLASS, FOO) { methodNode(1) }
+        assertNotNull(cache.getOrCreate(bytes, CLASS, BAR) { methodNode(5) })
+
+        assertNotSame(foo, cache.getOrCreate(bytes, CLASS, FOO) { methodNode(1) })
+        assertEquals(3, created)
+    }
+
+    fun testClear() {
+        val cache = CompiledInlineMethodCache(100)
+        val bytes = CompiledClassBytes(byteArrayOf(1))
+        val foo = cache.getOrCreate(bytes, CLASS, FOO) { methodNode(1) }
+        cache.clear()
+
+        assertNotSame(foo, cache.getOrCreate(bytes, CLASS, FOO) { methodNode(1) })
+        assertEquals(2, created)
+    }
+
+    private fun methodNode(instructions: Int): SMAPAndMethodNode {
+        created++
+        val node = MethodNode(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, "test", "()V", null, null)
+        repeat(instructions) { node.instructions.add(InsnNode(Opcodes.NOP)) }
+        return SMAPAndMethodNode(node, SMAP(listOf(FileMapping.SKIP)))
+    }
+
+    companion object {
+        private const val CLASS = "test/FooKt"
+        private val FOO = Method("foo", "()V")
+        private val BAR = Method("bar", "()V")
+        private val BAZ = Method("baz", "()V")
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
+import org.jetbrains.kotlin.descriptors.*
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import org.jetbrains.kotlin.test.ConfigurationKind
+
+// Signatures are cached by the type mapper while the code is generated. They must be the same as signatures computed afterwards
+// by a new type mapper, which has nothing cached
+class SignatureCacheTest : CodegenTestCase() {
+    fun testCachedSignaturesAreTheSameAsComputed() {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.ALL)
+        myFiles = CodegenTestFiles.create(
+            "test.kt",
+            """
+            @file:JvmName("Facade")
+            package test
+
+            suspend fun suspending(x: Int): String = x.toString()
+
+            suspend fun <T> suspendingGeneric(block: suspend () -> T): List<T> = listOf(block())
+
+            @JvmName("renamed")
+            fun jvmName(list: List<String>): Int = list.size
+
+            var property: String
+                @JvmName("getRenamed") get() = ""
+                @JvmName("setRenamed") set(value) {}
+
+            inline class Id(val value: Int) {
+                fun plus(other: Id): Id = Id(value + other.value)
+                suspend fun suspendingMember(other: Id?): Id = other ?: this
+            }
+
+            fun takesId(id: Id, ids: List<Id>, nullable: Id?): Id = id
+
+            class Chars : CharSequence {
+                override val length: Int get() = 0
+                override fun get(index: Int): Char = ' '
+                override fun subSequence(startIndex: Int, endIndex: Int): CharSequence = this
+            }
+
+            abstract class Strings : Collection<String> {
+                override fun contains(element: String): Boolean = false
+                override val size: Int get() = 0
+            }
+
+            abstract class Ints : MutableList<Int> {
+                override fun remove(element: Int): Boolean = false
+                override fun removeAt(index: Int): Int = 0
+            }
+
+            abstract class StringMap : Map<String, Id> {
+                override fun get(key: String): Id? = null
+                override fun containsKey(key: String): Boolean = false
+                override val keys: Set<String> get() = emptySet()
+            }
+
+            class Generic<T : Comparable<T>>(val t: T) {
+                fun <R> map(f: (T) -> R): R = f(t)
+                suspend fun suspendingMap(f: suspend (T) -> Id): Id = f(t)
+            }
+            """.trimIndent(),
+            myEnvironment.project
+        )
+
+        val state = GenerationUtils.compileFiles(myFiles.psiFiles, myEnvironment)
+        val freshTypeMapper = KotlinTypeMapper(
+            state.bindingContext, state.classBuilderMode, state.moduleName, state.languageVersionSettings, jvmTarget = state.target
+        )
+
+        val functions = ArrayList<Pair<FunctionDescriptor, OwnerKind>>()
+        collectFunctions(state.module.getPackage(FqName("test")).memberScope, OwnerKind.IMPLEMENTATION, functions)
+        assertTrue(functions.size > 50)
+
+        for ((function, kind) in functions) {
+            for (hasSpecialBridge in listOf(false, true)) {
+                val cached = state.typeMapper.mapSignatureWithGeneric(function, kind, hasSpecialBridge)
+                val computed = freshTypeMapper.mapSignatureWithGeneric(function, kind, hasSpecialBridge)
+                val message = "$function ($kind, hasSpecialBridge = $hasSpecialBridge)"
+                assertEquals(message, computed, cached)
+                assertEquals(message, computed.genericsSignature, cached.genericsSignature)
+                assertEquals(message, computed, state.typeMapper.mapSignatureWithGeneric(function, kind, hasSpecialBridge))
+            }
+            assertEquals(function.toString(), freshTypeMapper.mapAsmMethod(function, kind), state.typeMapper.mapAsmMethod(function, kind))
+        }
+    }
+
+    private fun collectFunctions(scope: MemberScope, kind: OwnerKind, result: MutableList<Pair<FunctionDescriptor, OwnerKind>>) {
+        for (descriptor in scope.getContributedDescriptors()) {
+            when (descriptor) {
+                is FunctionDescriptor -> result.add(descriptor to kind)
+                is PropertyDescriptor -> descriptor.accessors.forEach { result.add(it to kind) }
+                is ClassDescriptor -> {
+                    collectFunctions(descriptor.unsubstitutedMemberScope, OwnerKind.IMPLEMENTATION, result)
+                    if (descriptor.isInline) {
+                        collectFunctions(descriptor.unsubstitutedMemberScope, OwnerKind.ERASED_INLINE_CLASS, result)
+                    }
+                }
+            }
+        }
+    }
+}
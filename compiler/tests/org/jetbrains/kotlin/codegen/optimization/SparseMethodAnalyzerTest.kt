@@ -0,0 +1,209 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.codegen.optimization.common.SparseMethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.ClassNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+
+class SparseMethodAnalyzerTest : TestCase() {
+    fun testStraightLineCode() {
+        val method = method("(II)I", maxLocals = 3, maxStack = 2) {
+            visitVarInsn(ILOAD, 0)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IADD)
+            visitVarInsn(ISTORE, 2)
+            visitVarInsn(ILOAD, 2)
+            visitInsn(IRETURN)
+        }
+        assertSameFrames(method)
+    }
+
+    fun testTryCatch() {
+        val method = method("(Ljava/lang/Object;)I", maxLocals = 3, maxStack = 2) {
+            val start = Label()
+            val end = Label()
+            val handler = Label()
+            val exit = Label()
+            visitTryCatchBlock(start, end, handler, "java/lang/RuntimeException")
+            visitTryCatchBlock(start, end, handler, null)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 1)
+            visitLabel(start)
+            visitVarInsn(ALOAD, 0)
+            visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I", false)
+            visitVarInsn(ISTORE, 1)
+            visitVarInsn(ALOAD, 0)
+            visitVarInsn(ASTORE, 2)
+            visitLabel(end)
+            visitJumpInsn(GOTO, exit)
+            visitLabel(handler)
+            visitVarInsn(ASTORE, 2)
+            visitInsn(ICONST_M1)
+            visitVarInsn(ISTORE, 1)
+            visitLabel(exit)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IRETURN)
+        }
+        assertSameFrames(method)
+    }
+
+    fun testHandlerStartingWithStore() {
+        val method = method("()V", maxLocals = 2, maxStack = 1) {
+            val start = Label()
+            val end = Label()
+            val handler = Label()
+            visitTryCatchBlock(start, end, handler, "java/lang/Throwable")
+            visitLabel(start)
+            visitInsn(ACONST_NULL)
+            visitVarInsn(ASTORE, 0)
+            visitLabel(end)
+            visitInsn(RETURN)
+            visitLabel(handler)
+            visitVarInsn(ASTORE, 1)
+            visitVarInsn(ALOAD, 1)
+            visitInsn(ATHROW)
+        }
+        assertSameFrames(method)
+    }
+
+    fun testSwitches() {
+        val method = method("(I)I", maxLocals = 2, maxStack = 2) {
+            val case0 = Label()
+            val case1 = Label()
+            val default = Label()
+            val lookupDefault = Label()
+            val lookupCase = Label()
+            val exit = Label()
+            visitVarInsn(ILOAD, 0)
+            visitTableSwitchInsn(0, 1, default, case0, case1)
+            visitLabel(case0)
+            visitInsn(ICONST_1)
+            visitVarInsn(ISTORE, 1)
+            visitJumpInsn(GOTO, exit)
+            visitLabel(case1)
+            visitLdcInsn(2L)
+            visitInsn(POP2)
+            visitVarInsn(ILOAD, 0)
+            visitLookupSwitchInsn(lookupDefault, intArrayOf(100), arrayOf(lookupCase))
+            visitLabel(lookupCase)
+            visitInsn(ICONST_2)
+            visitVarInsn(ISTORE, 1)
+            visitJumpInsn(GOTO, exit)
+            visitLabel(lookupDefault)
+            visitLabel(default)
+            visitInsn(ICONST_3)
+            visitVarInsn(ISTORE, 1)
+            visitLabel(exit)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IRETURN)
+        }
+        assertSameFrames(method)
+    }
+
+    fun testUnreachableCode() {
+        val method = method("(I)I", maxLocals = 1, maxStack = 1) {
+            val target = Label()
+            val deadLoop = Label()
+            visitJumpInsn(GOTO, target)
+            visitInsn(ICONST_0)
+            visitInsn(POP)
+            visitLabel(deadLoop)
+            visitInsn(NOP)
+            visitJumpInsn(GOTO, deadLoop)
+            visitLabel(target)
+            visitVarInsn(ILOAD, 0)
+            visitInsn(IRETURN)
+            visitInsn(ICONST_1)
+            visitInsn(IRETURN)
+        }
+        val frames = assertSameFrames(method)
+        assertNull(frames[1])
+        assertNotNull(frames.last { it != null })
+    }
+
+    fun testLoop() {
+        val method = method("(I)Ljava/lang/Object;", maxLocals = 2, maxStack = 2) {
+            val loop = Label()
+            val exit = Label()
+            visitInsn(ACONST_NULL)
+            visitVarInsn(ASTORE, 1)
+            visitLabel(loop)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IFEQ, exit)
+            visitLdcInsn("string")
+            visitVarInsn(ASTORE, 1)
+            visitIincInsn(0, -1)
+            visitJumpInsn(GOTO, loop)
+            visitLabel(exit)
+            visitVarInsn(ALOAD, 1)
+            visitInsn(ARETURN)
+        }
+        assertSameFrames(method)
+    }
+
+    // Code produced by the compiler: try/finally, when over enums and strings, loops, coroutine state machines
+    fun testCompiledLibraryClasses() {
+        var methods = 0
+        for (className in LIBRARY_CLASSES) {
+            val classNode = ClassNode()
+            val bytes = javaClass.classLoader.getResourceAsStream("$className.class")!!.use { it.readBytes() }
+            ClassReader(bytes).accept(classNode, 0)
+            for (method in classNode.methods) {
+                if (method.instructions.size() == 0) continue
+                assertSameFrames(method, className)
+                methods++
+            }
+        }
+        assertTrue(methods > 0)
+    }
+
+    private fun assertSameFrames(method: MethodNode, owner: String = OWNER): List<Frame<BasicValue>?> {
+        val expected = MethodTransformer.analyze(owner, method, OptimizationBasicInterpreter())
+        val actual = SparseMethodAnalyzer(owner, method, OptimizationBasicInterpreter()).analyze()
+
+        val actualFrames = (0 until method.instructions.size()).map { actual[it] }
+        for (i in expected.indices) {
+            val message = "${method.name}${method.desc}, instruction #$i"
+            assertEquals(message, expected[i] != null, actual.isReachable(i))
+            assertEquals(message, expected[i]?.render(), actualFrames[i]?.render())
+        }
+        return actualFrames
+    }
+
+    private fun Frame<BasicValue>.render(): String =
+        (0 until locals).joinToString(prefix = "locals: ") { getLocal(it)?.toString() ?: "null" } +
+                (0 until stackSize).joinToString(prefix = "; stack: ") { getStack(it)?.toString() ?: "null" }
+
+    private fun method(desc: String, maxLocals: Int, maxStack: Int, body: MethodNode.() -> Unit): MethodNode =
+        MethodNode(ACC_PUBLIC or ACC_STATIC, "test", desc, null, null).apply {
+            visitCode()
+            body()
+            visitMaxs(maxStack, maxLocals)
+            visitEnd()
+        }
+
+    companion object {
+        private const val OWNER = "Test"
+
+        private val LIBRARY_CLASSES = listOf(
+            "kotlin/io/FilesKt__UtilsKt",
+            "kotlin/io/CloseableKt",
+            "kotlin/text/StringsKt__StringsKt",
+            "kotlin/collections/CollectionsKt___CollectionsKt",
+            "kotlin/sequences/SequencesKt__SequenceBuilderKt",
+            "kotlin/sequences/SequenceBuilderIterator"
+        )
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import org.jetbrains.kotlin.codegen.AbstractBlackBoxCodegenTest
+import org.jetbrains.kotlin.codegen.coroutines.SUSPEND_FUNCTION_COMPLETION_PARAMETER_NAME
+import org.jetbrains.kotlin.codegen.optimization.common.*
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.kotlin.load.java.JvmAbi
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import java.util.*
+
+// Checks that the liveness analysis over basic blocks gives the same results as the per-instruction backward analysis
+class VariableLivenessTest : AbstractBlackBoxCodegenTest() {
+    fun testStraightLineCode() {
+        assertSameLiveness(method("(II)I", maxLocals = 3, maxStack = 2) {
+            visitVarInsn(ILOAD, 0)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IADD)
+            visitVarInsn(ISTORE, 2)
+            visitIincInsn(0, 1)
+            visitVarInsn(ILOAD, 2)
+            visitInsn(IRETURN)
+        })
+    }
+
+    fun testHandlerStartingWithStore() {
+        assertSameLiveness(method("(Ljava/lang/Object;)V", maxLocals = 3, maxStack = 1) {
+            val start = Label()
+            val end = Label()
+            val handler = Label()
+            visitTryCatchBlock(start, end, handler, "java/lang/Throwable")
+            visitLabel(start)
+            visitVarInsn(ALOAD, 0)
+            visitVarInsn(ASTORE, 1)
+            visitInsn(ACONST_NULL)
+            visitVarInsn(ASTORE, 0)
+            visitLabel(end)
+            visitVarInsn(ALOAD, 1)
+            visitInsn(POP)
+            visitInsn(RETURN)
+            visitLabel(handler)
+            visitVarInsn(ASTORE, 0)
+            visitVarInsn(ALOAD, 0)
+            visitVarInsn(ASTORE, 2)
+            visitVarInsn(ALOAD, 1)
+            visitInsn(ATHROW)
+        })
+    }
+
+    fun testStoreAtTryStart() {
+        assertSameLiveness(method("(I)I", maxLocals = 2, maxStack = 1) {
+            val start = Label()
+            val end = Label()
+            val handler = Label()
+            visitTryCatchBlock(start, end, handler, null)
+            visitLabel(start)
+            visitVarInsn(ILOAD, 0)
+            visitVarInsn(ISTORE, 1)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IRETURN)
+            visitLabel(end)
+            visitLabel(handler)
+            visitInsn(POP)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IRETURN)
+        })
+    }
+
+    fun testVariablesVisibleInDebugger() {
+        assertSameLiveness(method("(Ljava/lang/Object;Lkotlin/coroutines/Continuation;)V", maxLocals = 5, maxStack = 1) {
+            val start = Label()
+            val middle = Label()
+            val end = Label()
+            visitLabel(start)
+            visitInsn(ICONST_1)
+            visitVarInsn(ISTORE, 2)
+            visitInsn(ACONST_NULL)
+            visitVarInsn(ASTORE, 3)
+            visitLabel(middle)
+            // The slot of `x` contains an object here, so it is not considered visible
+            visitVarInsn(ALOAD, 0)
+            visitVarInsn(ASTORE, 2)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 4)
+            visitLabel(end)
+            visitInsn(RETURN)
+            visitLocalVariable("this", "Ljava/lang/Object;", null, start, end, 0)
+            visitLocalVariable(SUSPEND_FUNCTION_COMPLETION_PARAMETER_NAME, "Lkotlin/coroutines/Continuation;", null, start, end, 1)
+            visitLocalVariable("x", "I", null, start, end, 2)
+            visitLocalVariable(JvmAbi.LOCAL_VARIABLE_NAME_PREFIX_INLINE_FUNCTION + "f", "I", null, middle, end, 3)
+            visitLocalVariable(JvmAbi.LOCAL_VARIABLE_NAME_PREFIX_INLINE_ARGUMENT + "g", "I", null, middle, end, 4)
+        })
+    }
+
+    fun testLoopWithSwitch() {
+        assertSameLiveness(method("(I)I", maxLocals = 3, maxStack = 2) {
+            val loop = Label()
+            val exit = Label()
+            val first = Label()
+            val second = Label()
+            val start = Label()
+            visitLabel(start)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 1)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 2)
+            visitLabel(loop)
+            visitVarInsn(ILOAD, 1)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IF_ICMPGE, exit)
+            visitVarInsn(ILOAD, 1)
+            visitTableSwitchInsn(0, 1, loop, first, second)
+            visitLabel(first)
+            visitIincInsn(2, 1)
+            visitIincInsn(1, 1)
+            visitJumpInsn(GOTO, loop)
+            visitLabel(second)
+            visitIincInsn(1, 1)
+            visitJumpInsn(GOTO, loop)
+            visitLabel(exit)
+            visitVarInsn(ILOAD, 2)
+            visitInsn(IRETURN)
+            visitLocalVariable("i", "I", null, start, exit, 1)
+        })
+    }
+
+    fun testUnreachableCode() {
+        assertSameLiveness(method("(I)I", maxLocals = 2, maxStack = 1) {
+            visitVarInsn(ILOAD, 0)
+            visitInsn(IRETURN)
+            visitVarInsn(ILOAD, 1)
+            visitVarInsn(ISTORE, 0)
+            visitInsn(ICONST_0)
+            visitInsn(IRETURN)
+        })
+    }
+
+    // Methods generated for coroutines have many locals, try/catch blocks and debugger-visible spilled variables.
+    // The box tests also check that the generated code passes the verifier, which covers spilling of the stack around
+    // try/catch blocks and inline function calls
+    fun testCoroutineNestedTryCatch() = doCoroutineTest("nestedTryCatch.kt")
+
+    fun testCoroutineInlinedTryCatchFinally() = doCoroutineTest("inlinedTryCatchFinally.kt")
+
+    fun testCoroutineCatchWithInlineInsideSuspend() = doCoroutineTest("catchWithInlineInsideSuspend.kt")
+
+    fun testCoroutineHandleException() = doCoroutineTest("handleException.kt")
+
+    fun testCoroutineIterateOverArray() = doCoroutineTest("iterateOverArray.kt")
+
+    fun testCoroutineMergeNullAndString() = doCoroutineTest("mergeNullAndString.kt")
+
+    fun testCoroutineNullSpilling() = doCoroutineTest("varSpilling/nullSpilling.kt")
+
+    fun testCoroutineFinallyCatch() = doCoroutineTest("controlFlow/finallyCatch.kt")
+
+    fun testCoroutineMultipleCatchBlocksSuspend() = doCoroutineTest("controlFlow/multipleCatchBlocksSuspend.kt")
+
+    fun testCoroutineSwitchLikeWhen() = doCoroutineTest("controlFlow/switchLikeWhen.kt")
+
+    fun testCoroutineBreakFinally() = doCoroutineTest("controlFlow/breakFinally.kt")
+
+    private fun doCoroutineTest(path: String) {
+        doTestWithCoroutinesPackageReplacement("compiler/testData/codegen/box/coroutines/$path", "kotlin.coroutines")
+
+        var methods = 0
+        for (file in classFileFactory.asList()) {
+            if (!file.relativePath.endsWith(".class")) continue
+            val classNode = ClassNode()
+            ClassReader(file.asByteArray()).accept(classNode, ClassReader.SKIP_FRAMES)
+            for (method in classNode.methods) {
+                if (method.instructions.size() == 0) continue
+                assertSameLiveness(method, classNode.name)
+                methods++
+            }
+        }
+        assertTrue("No methods were checked", methods > 0)
+    }
+
+    private fun assertSameLiveness(method: MethodNode, owner: String = OWNER) {
+        val typeFrames = MethodTransformer.analyze(owner, method, OptimizationBasicInterpreter())
+        val expected = analyzeLivenessPerInstruction(method)
+        val actual = analyzeLiveness(method)
+        assertEquals(expected.size, actual.size)
+        for (index in expected.indices) {
+            // The results for unreachable instructions are not specified
+            if (typeFrames[index] == null) continue
+            assertEquals(
+                "Different live variables in $owner.${method.name}${method.desc} at instruction $index",
+                expected[index].render(), actual[index].render()
+            )
+        }
+    }
+
+    private fun VariableLivenessFrame.render(): String =
+        (0 until maxLocals).filter { isAlive(it) }.joinToString(prefix = "[", postfix = "]")
+
+    private fun method(desc: String, maxLocals: Int, maxStack: Int, body: MethodNode.() -> Unit): MethodNode =
+        MethodNode(ACC_PUBLIC or ACC_STATIC, "test", desc, null, null).apply {
+            visitCode()
+            body()
+            visitMaxs(maxStack, maxLocals)
+            visitEnd()
+        }
+
+    companion object {
+        private const val OWNER = "Test"
+
+        // The per-instruction analysis which was used before the analysis over basic blocks
+        private fun analyzeLivenessPerInstruction(node: MethodNode): List<VariableLivenessFrame> {
+            val typeFrames = MethodTransformer.analyze("fake", node, OptimizationBasicInterpreter())
+            val visible = Array(node.instructions.size()) { BitSet(node.maxLocals) }
+            for (local in node.localVariables.orEmpty()) {
+                if (local.name.startsWith(JvmAbi.LOCAL_VARIABLE_NAME_PREFIX_INLINE_ARGUMENT) ||
+                    local.name.startsWith(JvmAbi.LOCAL_VARIABLE_NAME_PREFIX_INLINE_FUNCTION) ||
+                    local.name == SUSPEND_FUNCTION_COMPLETION_PARAMETER_NAME
+                ) continue
+                for (index in node.instructions.indexOf(local.start) until node.instructions.indexOf(local.end)) {
+                    if (Type.getType(local.desc).sort == typeFrames[index]?.getLocal(local.index)?.type?.sort) {
+                        visible[index].set(local.index)
+                    }
+                }
+            }
+
+            return analyze(node, object : BackwardAnalysisInterpreter<VariableLivenessFrame> {
+                override fun newFrame(maxLocals: Int) = VariableLivenessFrame(maxLocals)
+
+                override fun def(frame: VariableLivenessFrame, insn: AbstractInsnNode) {
+                    if (insn is VarInsnNode && insn.isStoreOperation()) {
+                        frame.markDead(insn.`var`)
+                    }
+                }
+
+                override fun use(frame: VariableLivenessFrame, insn: AbstractInsnNode) {
+                    frame.markAllAlive(visible[node.instructions.indexOf(insn)])
+                    if (insn is VarInsnNode && insn.isLoadOperation()) {
+                        frame.markAlive(insn.`var`)
+                    } else if (insn is IincInsnNode) {
+                        frame.markAlive(insn.`var`)
+                    }
+                }
+            })
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+class CompilationAdmissionControlTest : TestCase() {
+    @Volatile
+    private var heapUsage = 0.0
+
+    private val events = Collections.synchronizedList(arrayListOf<String>())
+
+    private fun createControl(maxParallelCompilations: Int = 2) =
+        CompilationAdmissionControl(maxParallelCompilations, maxHeapUsageAfterGc = 0.5, heapUsage = { heapUsage })
+
+    fun testSingleCompilationIsAlwaysAdmitted() {
+        val control = createControl()
+        heapUsage = 0.9
+        control.acquire()
+        assertEquals(1, control.runningCompilations)
+        control.release()
+        assertEquals(0, control.runningCompilations)
+    }
+
+    fun testParallelCompilationsAreLimitedBySlots() {
+        val control = createControl(maxParallelCompilations = 2)
+        control.acquire()
+        control.acquire()
+
+        val third = acquireInThread(control, "third")
+        assertFalse("Third compilation should wait for a free slot", third.await(200, TimeUnit.MILLISECONDS))
+
+        control.release()
+        assertTrue(third.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(2, control.runningCompilations)
+    }
+
+    fun testParallelCompilationsAreLimitedByHeapUsage() {
+        val control = createControl(maxParallelCompilations = 4)
+        control.acquire()
+
+        heapUsage = 0.7
+        val second = acquireInThread(control, "second")
+        assertFalse("Second compilation should wait while heap usage is high", second.await(200, TimeUnit.MILLISECONDS))
+
+        // Heap usage is rechecked periodically, even if no compilation finishes
+        heapUsage = 0.1
+        assertTrue(second.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(2, control.runningCompilations)
+    }
+
+    fun testWhenIdleWaitsForRunningCompilationsAndBlocksNewOnes() {
+        val control = createControl(maxParallelCompilations = 4)
+        control.acquire()
+
+        val idleActionDone = CountDownLatch(1)
+        thread {
+            control.whenIdle { events.add("idle action") }
+            idleActionDone.countDown()
+        }
+        waitUntil { control.isDraining }
+
+        val next = acquireInThread(control, "next compilation")
+        assertFalse("New compilations should not be admitted while draining", next.await(200, TimeUnit.MILLISECONDS))
+        assertFalse(idleActionDone.await(100, TimeUnit.MILLISECONDS))
+
+        control.release()
+        assertTrue(idleActionDone.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertTrue(next.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(listOf("idle action", "next compilation"), events.toList())
+    }
+
+    fun testWhenIdleRunsImmediatelyWithoutCompilations() {
+        val control = createControl()
+        assertEquals(42, control.whenIdle { 42 })
+        control.acquire()
+        assertEquals(1, control.runningCompilations)
+    }
+
+    fun testFailedIdleActionDoesNotBlockAdmission() {
+        val control = createControl()
+        try {
+            control.whenIdle { throw IllegalStateException() }
+            fail()
+        } catch (e: IllegalStateException) {
+        }
+
+        val compilation = acquireInThread(control, "compilation")
+        assertTrue(compilation.await(WAIT_SECONDS, TimeUnit.SECONDS))
+    }
+
+    private fun acquireInThread(control: CompilationAdmissionControl, name: String): CountDownLatch {
+        val admitted = CountDownLatch(1)
+        thread(isDaemon = true) {
+            control.acquire()
+            events.add(name)
+            admitted.countDown()
+        }
+        return admitted
+    }
+
+    private fun waitUntil(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(WAIT_SECONDS)
+        while (!condition()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    companion object {
+        private const val WAIT_SECONDS = 10L
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.config.IncrementalCompilation
+import org.jetbrains.kotlin.daemon.IncrementalCompilationFlags.Values
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+class IncrementalCompilationFlagsTest : TestCase() {
+    private val events = Collections.synchronizedList(arrayListOf<String>())
+
+    private var jvmBackup = false
+    private var jsBackup = false
+
+    override fun setUp() {
+        super.setUp()
+        jvmBackup = IncrementalCompilation.isEnabledForJvm()
+        jsBackup = IncrementalCompilation.isEnabledForJs()
+        IncrementalCompilation.setIsEnabledForJvm(false)
+        IncrementalCompilation.setIsEnabledForJs(false)
+    }
+
+    override fun tearDown() {
+        IncrementalCompilation.setIsEnabledForJvm(jvmBackup)
+        IncrementalCompilation.setIsEnabledForJs(jsBackup)
+        super.tearDown()
+    }
+
+    fun testFlagsAreSetForCompilationAndRestored() {
+        val flags = IncrementalCompilationFlags()
+        assertEquals(Values(jvm = false, js = false), flags.defaults)
+
+        flags.withFlags(JVM_IC) {
+            assertTrue(IncrementalCompilation.isEnabledForJvm())
+            assertFalse(IncrementalCompilation.isEnabledForJs())
+        }
+        assertFalse(IncrementalCompilation.isEnabledForJvm())
+        assertEquals(0, flags.runningCompilations)
+    }
+
+    fun testCompilationsWithSameFlagsRunInParallel() {
+        val flags = IncrementalCompilationFlags()
+        flags.acquire(JVM_IC)
+
+        val second = acquireInThread(flags, JVM_IC, "second")
+        assertTrue(second.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(2, flags.runningCompilations)
+
+        flags.release()
+        assertTrue("Flags are kept while a compilation needs them", IncrementalCompilation.isEnabledForJvm())
+        flags.release()
+        assertFalse(IncrementalCompilation.isEnabledForJvm())
+    }
+
+    fun testCompilationWithOtherFlagsWaits() {
+        val flags = IncrementalCompilationFlags()
+        flags.acquire(JVM_IC)
+
+        val js = acquireInThread(flags, JS_IC, "js")
+        assertFalse("Compilation with other flags should wait", js.await(200, TimeUnit.MILLISECONDS))
+        assertTrue(IncrementalCompilation.isEnabledForJvm())
+        assertFalse(IncrementalCompilation.isEnabledForJs())
+
+        flags.release()
+        assertTrue(js.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertFalse(IncrementalCompilation.isEnabledForJvm())
+        assertTrue(IncrementalCompilation.isEnabledForJs())
+    }
+
+    fun testWaitingCompilationIsNotStarved() {
+        val flags = IncrementalCompilationFlags()
+        flags.acquire(JVM_IC)
+
+        val nonIncremental = acquireInThread(flags, flags.defaults, "non-incremental")
+        waitUntil { flags.waitingCompilations == 1 }
+
+        val jvm = acquireInThread(flags, JVM_IC, "jvm")
+        assertFalse("Compilation with the current flags should wait for the waiting one", jvm.await(200, TimeUnit.MILLISECONDS))
+
+        flags.release()
+        assertTrue(nonIncremental.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertFalse(IncrementalCompilation.isEnabledForJvm())
+        assertFalse(jvm.await(200, TimeUnit.MILLISECONDS))
+
+        flags.release()
+        assertTrue(jvm.await(WAIT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(listOf("non-incremental", "jvm"), events.toList())
+    }
+
+    private fun acquireInThread(flags: IncrementalCompilationFlags, values: Values, name: String): CountDownLatch {
+        val admitted = CountDownLatch(1)
+        thread(isDaemon = true) {
+            flags.acquire(values)
+            events.add(name)
+            admitted.countDown()
+        }
+        return admitted
+    }
+
+    private fun waitUntil(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(WAIT_SECONDS)
+        while (!condition()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    companion object {
+        private const val WAIT_SECONDS = 10L
+
+        private val JVM_IC = Values(jvm = true, js = false)
+        private val JS_IC = Values(jvm = false, js = true)
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.cli.common.arguments.K2JSCompilerArguments
+import org.jetbrains.kotlin.cli.common.arguments.K2JVMCompilerArguments
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class JarCacheTrackerTest : TestCaseWithTmpdir() {
+    private var heapUsage = 0.0
+
+    private fun createTracker(keepCachesBetweenSessions: Boolean = true) =
+        JarCacheTracker(maxHeapUsageAfterGc = 0.6, keepCachesBetweenSessions = keepCachesBetweenSessions, heapUsage = { heapUsage })
+
+    fun testChangedClasspathJar() {
+        val tracker = createTracker()
+        val jar = createJar("a.jar", "first")
+        val arguments = jvmArguments(classpath = listOf(jar))
+
+        assertFalse(tracker.registerCompilation(arguments))
+        assertFalse(tracker.registerCompilation(arguments))
+        assertFalse(tracker.shouldClearAfterSession())
+
+        rewrite(jar, "second version")
+        assertTrue(tracker.registerCompilation(arguments))
+        assertFalse("The new state of the jar is remembered", tracker.registerCompilation(arguments))
+    }
+
+    fun testRebuiltJarWithSameEntries() {
+        val tracker = createTracker()
+        val jar = File(tmpdir, "a.jar")
+        writeZip(jar, "a/A.class" to "first")
+        val arguments = jvmArguments(classpath = listOf(jar))
+
+        assertFalse(tracker.registerCompilation(arguments))
+        val timestamp = jar.lastModified()
+        writeZip(jar, "a/A.class" to "first")
+        jar.setLastModified(timestamp + 2000)
+        assertFalse("Jar with the same entries is not changed", tracker.registerCompilation(arguments))
+
+        writeZip(jar, "a/A.class" to "other")
+        jar.setLastModified(timestamp + 4000)
+        assertTrue(tracker.registerCompilation(arguments))
+    }
+
+    fun testJarChangedBetweenCompilationsOfDifferentModules() {
+        val tracker = createTracker()
+        val library = createJar("library.jar", "first")
+        val other = createJar("other.jar", "other")
+
+        assertFalse(tracker.registerCompilation(jvmArguments(classpath = listOf(library))))
+        rewrite(library, "second version")
+        assertTrue(tracker.registerCompilation(jvmArguments(classpath = listOf(other, library))))
+    }
+
+    fun testFriendPathsPluginsAndJdkAreTracked() {
+        val tracker = createTracker()
+        val friend = createJar("friend.jar", "friend")
+        val plugin = createJar("plugin.jar", "plugin")
+        val jdkHome = File(tmpdir, "jdk")
+        val rtJar = File(jdkHome, "jre/lib/rt.jar").apply {
+            parentFile.mkdirs()
+            writeText("rt")
+        }
+        val arguments = jvmArguments(friendPaths = listOf(friend), pluginClasspath = listOf(plugin), jdkHome = jdkHome)
+
+        assertFalse(tracker.registerCompilation(arguments))
+        for (jar in listOf(friend, plugin, rtJar)) {
+            rewrite(jar, "changed " + jar.name)
+            assertTrue("Change of ${jar.name} is not detected", tracker.registerCompilation(arguments))
+        }
+    }
+
+    fun testDeletedJarIsPruned() {
+        val tracker = createTracker()
+        val jar = createJar("a.jar", "first")
+        val other = createJar("b.jar", "other")
+
+        assertFalse(tracker.registerCompilation(jvmArguments(classpath = listOf(jar))))
+        assertTrue(jar.delete())
+        assertTrue(tracker.registerCompilation(jvmArguments(classpath = listOf(other))))
+        assertFalse(tracker.registerCompilation(jvmArguments(classpath = listOf(other))))
+    }
+
+    fun testTooManyTrackedJars() {
+        val tracker = createTracker()
+        val jar = createJar("a.jar", "first")
+        val paths = (0..JarCacheTracker.MAX_TRACKED_JARS).map { File(tmpdir, "missing$it.jar") }
+
+        assertTrue(tracker.registerCompilation(jvmArguments(classpath = paths + jar)))
+        rewrite(jar, "second version")
+        assertTrue("Jars of the compilation are still tracked", tracker.registerCompilation(jvmArguments(classpath = listOf(jar))))
+    }
+
+    fun testClearAfterSession() {
+        val tracker = createTracker()
+        assertFalse(tracker.shouldClearAfterSession())
+
+        heapUsage = 0.7
+        assertTrue(tracker.shouldClearAfterSession())
+        heapUsage = 0.0
+
+        assertFalse(tracker.registerCompilation(jvmArguments(buildFile = File(tmpdir, "build.xml"))))
+        assertTrue("Jars from build files are not tracked", tracker.shouldClearAfterSession())
+        tracker.reset()
+        assertFalse(tracker.shouldClearAfterSession())
+
+        assertFalse(tracker.registerCompilation(K2JSCompilerArguments()))
+        assertTrue("Jars of JS compilations are not tracked", tracker.shouldClearAfterSession())
+    }
+
+    fun testCachesAreNotKeptWhenDisabled() {
+        val tracker = createTracker(keepCachesBetweenSessions = false)
+        assertFalse(tracker.registerCompilation(jvmArguments(classpath = listOf(createJar("a.jar", "first")))))
+        assertTrue(tracker.shouldClearAfterSession())
+    }
+
+    private fun jvmArguments(
+        classpath: List<File> = emptyList(),
+        friendPaths: List<File> = emptyList(),
+        pluginClasspath: List<File> = emptyList(),
+        jdkHome: File? = null,
+        buildFile: File? = null
+    ) = K2JVMCompilerArguments().apply {
+        this.classpath = classpath.joinToString(File.pathSeparator) { it.path }
+        this.friendPaths = friendPaths.map { it.path }.toTypedArray()
+        this.pluginClasspaths = pluginClasspath.map { it.path }.toTypedArray()
+        this.jdkHome = jdkHome?.path
+        this.buildFile = buildFile?.path
+    }
+
+    // Entries have a fixed time, so the same entries give the same central directory
+    private fun writeZip(file: File, vararg entries: Pair<String, String>) {
+        ZipOutputStream(file.outputStream()).use { output ->
+            for ((name, content) in entries) {
+                output.putNextEntry(ZipEntry(name).apply { time = 0 })
+                output.write(content.toByteArray())
+                output.closeEntry()
+            }
+        }
+    }
+
+    private fun createJar(name: String, content: String): File =
+        File(tmpdir, name).apply { writeText(content) }
+
+    // Content of a different length, so the change is detected even if the timestamp has not changed
+    private fun rewrite(file: File, content: String) {
+        val timestamp = file.lastModified()
+        file.writeText(content)
+        file.setLastModified(timestamp + 2000)
+    }
+}
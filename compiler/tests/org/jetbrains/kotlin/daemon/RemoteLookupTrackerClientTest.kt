@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
+import org.jetbrains.kotlin.incremental.components.LookupInfo
+import org.jetbrains.kotlin.incremental.components.Position
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.lang.reflect.Proxy
+
+@Suppress("DEPRECATION")
+class RemoteLookupTrackerClientTest : TestCase() {
+    private val recordedChunks = arrayListOf<List<LookupInfo>>()
+
+    private val facade = Proxy.newProxyInstance(
+        javaClass.classLoader, arrayOf(CompilerCallbackServicesFacade::class.java)
+    ) { _, method, args ->
+        when (method.name) {
+            "lookupTracker_isDoNothing", "lookupTracker_requiresPosition" -> false
+            "lookupTracker_record" -> {
+                @Suppress("UNCHECKED_CAST")
+                recordedChunks.add(ArrayList(args[0] as Collection<LookupInfo>))
+                null
+            }
+            else -> throw UnsupportedOperationException(method.name)
+        }
+    } as CompilerCallbackServicesFacade
+
+    fun testChunksAreSentWhileRecording() {
+        val eventManager = EventManagerImpl()
+        val tracker = RemoteLookupTrackerClient(facade, eventManager, flushChunkSize = 3)
+
+        tracker.record("a.kt", "foo", "x")
+        tracker.record("a.kt", "foo", "x")
+        tracker.record("a.kt", "foo", "y")
+        assertEquals("Duplicates should not be counted", 0, recordedChunks.size)
+
+        tracker.record("b.kt", "bar", "z")
+        assertEquals(1, recordedChunks.size)
+        assertEquals(setOf("a.kt:foo#x", "a.kt:foo#y", "b.kt:bar#z"), recordedChunks.single().render())
+
+        tracker.record("b.kt", "bar", "z")
+        tracker.record("c.kt", "baz", "w")
+        assertEquals(1, recordedChunks.size)
+
+        eventManager.fireCompilationFinished()
+        assertEquals(2, recordedChunks.size)
+        assertEquals(setOf("b.kt:bar#z", "c.kt:baz#w"), recordedChunks[1].render())
+
+        eventManager.fireCompilationFinished()
+        assertEquals("Nothing is sent when there are no new lookups", 2, recordedChunks.size)
+    }
+
+    fun testFinalFlushIsChunked() {
+        val eventManager = EventManagerImpl()
+        val tracker = RemoteLookupTrackerClient(facade, eventManager)
+
+        val count = RemoteLookupTrackerClient.FLUSH_CHUNK_SIZE - 1
+        for (i in 0 until count) {
+            tracker.record("file${i % 10}.kt", "scope", "name$i")
+        }
+        assertEquals(0, recordedChunks.size)
+
+        eventManager.fireCompilationFinished()
+        assertEquals(1, recordedChunks.size)
+        assertEquals(count, recordedChunks.single().size)
+        assertTrue(recordedChunks.single().all { it.position == Position.NO_POSITION && it.scopeKind == ScopeKind.CLASSIFIER })
+    }
+
+    private fun RemoteLookupTrackerClient.record(filePath: String, scopeFqName: String, name: String) {
+        record(filePath, Position.NO_POSITION, scopeFqName, ScopeKind.PACKAGE, name)
+    }
+
+    private fun List<LookupInfo>.render(): Set<String> =
+        mapTo(HashSet()) { "${it.filePath}:${it.scopeFqName}#${it.name}" }
+}
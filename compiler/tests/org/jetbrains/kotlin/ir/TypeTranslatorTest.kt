@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.ir
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns
+import org.jetbrains.kotlin.config.LanguageVersionSettingsImpl
+import org.jetbrains.kotlin.descriptors.ClassDescriptor
+import org.jetbrains.kotlin.descriptors.ClassKind
+import org.jetbrains.kotlin.descriptors.Modality
+import org.jetbrains.kotlin.descriptors.SourceElement
+import org.jetbrains.kotlin.descriptors.annotations.Annotations
+import org.jetbrains.kotlin.descriptors.impl.ClassDescriptorImpl
+import org.jetbrains.kotlin.descriptors.impl.ModuleDescriptorImpl
+import org.jetbrains.kotlin.descriptors.impl.MutablePackageFragmentDescriptor
+import org.jetbrains.kotlin.ir.types.IrSimpleType
+import org.jetbrains.kotlin.ir.types.IrType
+import org.jetbrains.kotlin.ir.util.ConstantValueGenerator
+import org.jetbrains.kotlin.ir.util.SymbolTable
+import org.jetbrains.kotlin.ir.util.TypeTranslator
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.types.KotlinType
+import org.jetbrains.kotlin.types.KotlinTypeFactory
+import org.jetbrains.kotlin.types.TypeProjectionImpl
+import org.jetbrains.kotlin.types.typeUtil.makeNullable
+
+// Types which do not depend on the scope are translated once and shared, see TypeTranslator.scopeIndependentTypes
+class TypeTranslatorTest : TestCase() {
+    private val builtIns = DefaultBuiltIns.Instance
+    private val symbolTable = SymbolTable()
+    private val module = createModule("module")
+    private val typeTranslator = TypeTranslator(symbolTable, LanguageVersionSettingsImpl.DEFAULT, builtIns).also {
+        it.constantValueGenerator = ConstantValueGenerator(module, symbolTable)
+    }
+
+    fun testScopeIndependentTypeIsShared() {
+        val klass = createClass(module)
+        val translated = typeTranslator.translateType(type(klass))
+        assertSame(translated, typeTranslator.translateType(type(klass)))
+        assertNotSame(translated, typeTranslator.translateType(type(klass).makeNullable()))
+    }
+
+    fun testClassesWithSameNameFromDifferentModules() {
+        val first = createClass(module)
+        val second = createClass(createModule("other"))
+        assertEquals("Types of classes with the same name are equal", type(first), type(second))
+
+        assertSame(first, typeTranslator.translateType(type(first)).classDescriptor)
+        assertSame(second, typeTranslator.translateType(type(second)).classDescriptor)
+    }
+
+    fun testTypeArgumentsFromDifferentModules() {
+        val first = createClass(module)
+        val second = createClass(createModule("other"))
+        val firstList = listType(type(first))
+        val secondList = listType(type(second))
+        assertEquals(firstList, secondList)
+
+        assertNotSame(typeTranslator.translateType(firstList), typeTranslator.translateType(secondList))
+        assertSame(typeTranslator.translateType(firstList), typeTranslator.translateType(listType(type(first))))
+    }
+
+    private val IrType.classDescriptor: ClassDescriptor
+        get() = (this as IrSimpleType).classifier.descriptor as ClassDescriptor
+
+    private fun type(klass: ClassDescriptor): KotlinType =
+        KotlinTypeFactory.simpleNotNullType(Annotations.EMPTY, klass, emptyList())
+
+    private fun listType(argument: KotlinType): KotlinType =
+        KotlinTypeFactory.simpleNotNullType(Annotations.EMPTY, builtIns.list, listOf(TypeProjectionImpl(argument)))
+
+    private fun createModule(name: String): ModuleDescriptorImpl =
+        ModuleDescriptorImpl(Name.special("<$name>"), LockBasedStorageManager.NO_LOCKS, builtIns)
+
+    private fun createClass(module: ModuleDescriptorImpl): ClassDescriptor =
+        ClassDescriptorImpl(
+            MutablePackageFragmentDescriptor(module, FqName("test")), Name.identifier("A"), Modality.FINAL, ClassKind.CLASS,
+            listOf(builtIns.anyType), SourceElement.NO_SOURCE, false, LockBasedStorageManager.NO_LOCKS
+        ).apply {
+            initialize(MemberScope.Empty, emptySet(), null)
+        }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.io.URLUtil
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.codegen.forTestCompile.ForTestCompileRuntime
+import org.jetbrains.kotlin.daemon.clearJarFileSystemCaches
+import org.jetbrains.kotlin.load.kotlin.KotlinBinaryClassCache
+import org.jetbrains.kotlin.load.kotlin.KotlinClassFinder
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+import java.io.File
+
+class KotlinBinaryClassCacheTest : KotlinTestWithEnvironment() {
+    override fun createEnvironment(): KotlinCoreEnvironment =
+        KotlinTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(testRootDisposable)
+
+    fun testKotlinClassHit() {
+        val file = classFile(ForTestCompileRuntime.runtimeJarForTests(), "kotlin/Unit.class")
+        val result = read(file)
+        assertNotNull(result.toKotlinJvmBinaryClass())
+        assertSame(result, read(file))
+    }
+
+    fun testJavaClassFileContentHit() {
+        val file = classFile(KotlinTestUtils.findMockJdkRtJar(), "java/lang/Object.class")
+        val result = read(file)
+        assertTrue(result is KotlinClassFinder.Result.ClassFileContent)
+        assertSame(result, read(file))
+    }
+
+    fun testNonClassFileIsNotRead() {
+        val manifest = StandardFileSystems.jar().findFileByPath(
+            ForTestCompileRuntime.runtimeJarForTests().path + URLUtil.JAR_SEPARATOR + "META-INF/MANIFEST.MF"
+        )!!
+        assertNull(KotlinBinaryClassCache.getKotlinBinaryClassOrClassFileContent(manifest))
+    }
+
+    fun testMissAfterClear() {
+        val file = classFile(ForTestCompileRuntime.runtimeJarForTests(), "kotlin/Unit.class")
+        val result = read(file)
+
+        KotlinBinaryClassCache.clearCache()
+        val afterClear = read(file)
+        assertNotSame(result, afterClear)
+        assertEquals(result.toKotlinJvmBinaryClass()!!.classId, afterClear.toKotlinJvmBinaryClass()!!.classId)
+        assertSame(afterClear, read(file))
+    }
+
+    fun testMissAfterClearingJarCaches() {
+        val file = classFile(ForTestCompileRuntime.runtimeJarForTests(), "kotlin/Unit.class")
+        val result = read(file)
+
+        // Called by the daemon when classpath jars may have changed
+        clearJarFileSystemCaches()
+        assertNotSame(result, read(file))
+    }
+
+    fun testLocalClassFileHit() {
+        val classFile = File(KotlinTestUtils.tmpDirForTest(this), "Unit.class")
+        classFile.writeBytes(classFile(ForTestCompileRuntime.runtimeJarForTests(), "kotlin/Unit.class").contentsToByteArray())
+
+        // The local file system creates a new instance of the file for each lookup
+        val result = read(localFile(classFile))
+        assertSame(result, read(localFile(classFile)))
+    }
+
+    fun testMissAfterLocalClassFileChanged() {
+        val runtimeJar = ForTestCompileRuntime.runtimeJarForTests()
+        val classFile = File(KotlinTestUtils.tmpDirForTest(this), "Unit.class")
+        classFile.writeBytes(classFile(runtimeJar, "kotlin/Unit.class").contentsToByteArray())
+        val timeStamp = classFile.lastModified()
+        val result = read(localFile(classFile))
+
+        // Files of the core VFS have the same modification stamp before and after the change
+        val newContent = classFile(runtimeJar, "kotlin/Pair.class").contentsToByteArray()
+        classFile.writeBytes(newContent)
+        classFile.setLastModified(timeStamp + 2000)
+        val afterChange = read(localFile(classFile))
+        assertNotSame(result, afterChange)
+        assertEquals("kotlin/Pair", afterChange.toKotlinJvmBinaryClass()!!.classId.asString())
+
+        // The same length, but another time stamp
+        classFile.setLastModified(timeStamp + 4000)
+        assertNotSame(afterChange, read(localFile(classFile)))
+    }
+
+    fun testLeastRecentlyUsedResultIsEvicted() {
+        // More classes than the cache holds
+        val files = classFiles(ForTestCompileRuntime.runtimeJarForTests(), "kotlin", 1000)
+        assertEquals(1000, files.size)
+
+        val first = read(files.first())
+        val second = read(files[1])
+        for (file in files.drop(2)) {
+            // The second class is used all the time, so it is not evicted
+            assertSame(second, read(files[1]))
+            read(file)
+        }
+
+        assertNotSame(first, read(files.first()))
+        assertSame(second, read(files[1]))
+    }
+
+    private fun read(file: VirtualFile): KotlinClassFinder.Result =
+        KotlinBinaryClassCache.getKotlinBinaryClassOrClassFileContent(file)!!
+
+    private fun localFile(file: File): VirtualFile =
+        StandardFileSystems.local().findFileByPath(file.path)!!
+
+    private fun classFile(jar: File, path: String): VirtualFile =
+        StandardFileSystems.jar().findFileByPath(jar.path + URLUtil.JAR_SEPARATOR + path)!!
+
+    private fun classFiles(jar: File, directory: String, count: Int): List<VirtualFile> {
+        val result = ArrayList<VirtualFile>()
+        fun collect(file: VirtualFile) {
+            if (result.size == count) return
+            if (file.isDirectory) {
+                file.children.forEach(::collect)
+            } else if (file.extension == "class" && file.name != "module-info.class") {
+                result.add(file)
+            }
+        }
+        collect(StandardFileSystems.jar().findFileByPath(jar.path + URLUtil.JAR_SEPARATOR + directory)!!)
+        return result
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.serialization
+
+import org.jetbrains.kotlin.metadata.ProtoBuf
+import org.jetbrains.kotlin.metadata.deserialization.MemberProtoIndex
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmProtoBufUtil
+import org.jetbrains.kotlin.protobuf.MessageLite
+import org.jetbrains.kotlin.protobuf.Parser
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+
+class MemberProtoIndexTest : KtUsefulTestCase() {
+    private fun metadata(className: String): Metadata = Class.forName(className).getAnnotation(Metadata::class.java)
+
+    private fun <M : MessageLite> assertMembers(
+        expected: List<M>,
+        index: MemberProtoIndex,
+        ranges: Map<Int, IntArray>,
+        parser: Parser<M>,
+        getName: (M) -> Int
+    ) {
+        val actual = ranges.mapValues { (_, memberRanges) -> index.parse(memberRanges, parser, JvmProtoBufUtil.EXTENSION_REGISTRY) }
+        assertEquals(
+            expected.groupBy(getName).mapValues { (_, protos) -> protos.map { it.toByteArray().toList() } },
+            actual.mapValues { (_, protos) -> protos.map { it.toByteArray().toList() } }
+        )
+    }
+
+    fun testClass() {
+        val metadata = metadata("kotlin.text.Regex")
+        val (_, fullProto) = JvmProtoBufUtil.readClassDataFrom(metadata.data1, metadata.data2)
+        val (_, proto, index) = JvmProtoBufUtil.readClassDataWithMemberIndexFrom(metadata.data1, metadata.data2)
+
+        val expected = fullProto.toBuilder().clearFunction().clearProperty().clearTypeAlias().build()
+        assertEquals(expected.toByteArray().toList(), proto.toByteArray().toList())
+
+        assertMembers(fullProto.functionList, index, index.functions, ProtoBuf.Function.PARSER) { it.name }
+        assertMembers(fullProto.propertyList, index, index.properties, ProtoBuf.Property.PARSER) { it.name }
+        assertTrue(index.typeAliases.isEmpty())
+    }
+
+    fun testPackageWithOverloads() {
+        val metadata = metadata("kotlin.collections.CollectionsKt___CollectionsKt")
+        val (_, fullProto) = JvmProtoBufUtil.readPackageDataFrom(metadata.data1, metadata.data2)
+        val (_, proto, index) = JvmProtoBufUtil.readPackageDataWithMemberIndexFrom(metadata.data1, metadata.data2)
+
+        val expected = fullProto.toBuilder().clearFunction().clearProperty().clearTypeAlias().build()
+        assertEquals(expected.toByteArray().toList(), proto.toByteArray().toList())
+
+        assertMembers(fullProto.functionList, index, index.functions, ProtoBuf.Function.PARSER) { it.name }
+        assertMembers(fullProto.propertyList, index, index.properties, ProtoBuf.Property.PARSER) { it.name }
+    }
+
+    fun testCreate() {
+        val functions = listOf(0, 1, 0).map { ProtoBuf.Function.newBuilder().setName(it).build() }
+        val properties = listOf(ProtoBuf.Property.newBuilder().setName(2).build())
+        val index = MemberProtoIndex.create(functions, properties, emptyList())
+
+        assertMembers(functions, index, index.functions, ProtoBuf.Function.PARSER) { it.name }
+        assertMembers(properties, index, index.properties, ProtoBuf.Property.PARSER) { it.name }
+    }
+}
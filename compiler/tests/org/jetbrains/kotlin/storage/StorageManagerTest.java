@@ -26,9 +26,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.*;
 
 public class StorageManagerTest extends TestCase {
 
+    private static final long TIMEOUT_SECONDS = 10;
+
     private StorageManager m;
 
     @Override
@@ -411,6 +414,71 @@ public class StorageManagerTest extends TestCase {
         assertEquals(2, c.getCount());
     }
 
+    // Thread safety
+
+    public void testComputedValuesAreReadWithoutLock() throws Exception {
+        NotNullLazyValue<String> value = m.createLazyValue(new CounterValue());
+        MemoizedFunctionToNotNull<String, String> function = m.createMemoizedFunction(new CounterFunction());
+        MemoizedFunctionToNullable<String, String> exceptionFunction = m.createMemoizedFunctionWithNullableValues(new ExceptionCounterFunction());
+        String computedValue = value.invoke();
+        String computedFunctionValue = function.invoke("a");
+        try {
+            exceptionFunction.invoke("b");
+            fail();
+        }
+        catch (UnsupportedOperationException ignored) {
+        }
+
+        CountDownLatch lockAcquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        NotNullLazyValue<String> blocking = m.createLazyValue(() -> {
+            lockAcquired.countDown();
+            try {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return "blocking";
+        });
+
+        Thread thread = new Thread(blocking::invoke);
+        thread.start();
+        try {
+            assertTrue(lockAcquired.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            // The storage manager lock is held by another thread now. The values are read on a separate thread, so that the test
+            // fails instead of hanging if reading waits for the lock
+            FutureTask<Void> reads = new FutureTask<>(() -> {
+                assertEquals(computedValue, value.invoke());
+                assertEquals(computedFunctionValue, function.invoke("a"));
+                try {
+                    exceptionFunction.invoke("b");
+                    fail();
+                }
+                catch (UnsupportedOperationException ignored) {
+                }
+                return null;
+            });
+            new Thread(reads).start();
+            try {
+                reads.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (TimeoutException e) {
+                fail("Computed values are not read while the storage manager lock is held by another thread");
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e;
+            }
+        }
+        finally {
+            release.countDown();
+            thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        }
+        assertFalse(thread.isAlive());
+    }
+
     // ExceptionHandlingStrategy
 
     public void testExceptionHandlingStrategyForLazyValues() throws Exception {
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Checks that SlicePartitionedSlicedMap behaves as SlicedMapImpl for both partitioned and other slices
+public class SlicePartitionedSlicedMapTest extends TestCase {
+    private final List<String> rewrites = new ArrayList<>();
+
+    // Records rewrites and only allows them for equal values
+    private final RewritePolicy recordingPolicy = new RewritePolicy() {
+        @Override
+        public <K> boolean rewriteProcessingNeeded(K key) {
+            return !"any".equals(key);
+        }
+
+        @Override
+        public <K, V> boolean processRewrite(WritableSlice<K, V> slice, K key, V oldValue, V newValue) {
+            rewrites.add(slice + " " + key + ": " + oldValue + " -> " + newValue);
+            return oldValue.equals(newValue);
+        }
+    };
+
+    private final WritableSlice<String, Integer> partitioned = slice("PARTITIONED", recordingPolicy, false);
+    private final WritableSlice<String, Integer> partitionedCollective = slice("PARTITIONED_COLLECTIVE", recordingPolicy, true);
+    private final WritableSlice<String, Integer> other = slice("OTHER", recordingPolicy, false);
+    private final WritableSlice<String, Integer> otherCollective = slice("OTHER_COLLECTIVE", recordingPolicy, true);
+    private final WritableSlice<String, Boolean> otherSet = Slices.createSimpleSetSlice();
+
+    @SuppressWarnings("unchecked")
+    private final WritableSlice<String, Integer> withFurtherLookup = Slices.<String, Integer>sliceBuilder()
+            .setFurtherLookupSlices(partitioned, other)
+            .setDebugName("WITH_FURTHER_LOOKUP")
+            .build();
+
+    private final List<WritableSlice<String, ?>> slices =
+            Arrays.asList(partitioned, partitionedCollective, other, otherCollective, otherSet, withFurtherLookup);
+
+    public void testPutAndGet() {
+        assertSameBehavior(false, map -> {
+            for (WritableSlice<String, Integer> slice : Arrays.asList(partitioned, partitionedCollective, other, otherCollective)) {
+                map.put(slice, "a", 1);
+                map.put(slice, "b", 2);
+            }
+            map.put(otherSet, "a", true);
+            map.put(partitioned, "c", 3);
+            map.put(other, "d", 4);
+        });
+    }
+
+    public void testRewritePolicy() {
+        List<String> expectedRewrites = assertSameBehavior(false, map -> {
+            for (WritableSlice<String, Integer> slice : Arrays.asList(partitioned, partitionedCollective, other, otherCollective)) {
+                map.put(slice, "a", 1);
+                map.put(slice, "a", 1);
+                map.put(slice, "a", 2);
+                map.put(slice, "any", 1);
+                map.put(slice, "any", 2);
+            }
+        });
+        assertEquals(8, expectedRewrites.size());
+    }
+
+    public void testAlwaysAllowRewrite() {
+        List<String> expectedRewrites = assertSameBehavior(true, map -> {
+            for (WritableSlice<String, Integer> slice : Arrays.asList(partitioned, partitionedCollective, other, otherCollective)) {
+                map.put(slice, "a", 1);
+                map.put(slice, "a", 2);
+            }
+        });
+        assertTrue(expectedRewrites.isEmpty());
+    }
+
+    public void testCollectiveKeys() {
+        assertSameBehavior(false, map -> {
+            map.put(partitionedCollective, "a", 1);
+            map.put(partitionedCollective, "b", 2);
+            map.put(partitionedCollective, "a", 3);
+            map.put(otherCollective, "b", 1);
+            map.put(otherCollective, "a", 2);
+        });
+    }
+
+    public void testClear() {
+        assertSameBehavior(false, map -> {
+            map.put(partitioned, "a", 1);
+            map.put(partitionedCollective, "a", 1);
+            map.put(other, "a", 1);
+            map.put(otherCollective, "a", 1);
+            map.clear();
+            map.put(partitioned, "b", 2);
+            map.put(other, "c", 3);
+        });
+    }
+
+    private List<String> assertSameBehavior(boolean alwaysAllowRewrite, Consumer<MutableSlicedMap> operations) {
+        SlicedMapImpl expectedMap = new SlicedMapImpl(alwaysAllowRewrite);
+        operations.accept(expectedMap);
+        List<String> expectedRewrites = new ArrayList<>(rewrites);
+        rewrites.clear();
+
+        SlicePartitionedSlicedMap actualMap =
+                new SlicePartitionedSlicedMap(alwaysAllowRewrite, Arrays.asList(partitioned, partitionedCollective));
+        operations.accept(actualMap);
+        assertEquals(expectedRewrites, rewrites);
+
+        for (WritableSlice<String, ?> slice : slices) {
+            assertEquals(slice.toString(), expectedMap.getSliceContents(slice), actualMap.getSliceContents(slice));
+            for (String key : Arrays.asList("a", "b", "c", "d", "any")) {
+                assertEquals(slice + " " + key, expectedMap.get(slice, key), actualMap.get(slice, key));
+            }
+            if (slice.isCollective()) {
+                assertEquals(slice.toString(), new ArrayList<>(expectedMap.getKeys(slice)), new ArrayList<>(actualMap.getKeys(slice)));
+            }
+        }
+
+        // The order of entries differs, see SlicePartitionedSlicedMap
+        assertEquals(entries(expectedMap), entries(actualMap));
+
+        Map<WritableSlice<?, ?>, Integer> expectedSizes = new HashMap<>();
+        for (WritableSlice<String, ?> slice : slices) {
+            int size = expectedMap.getSliceContents(slice).size();
+            if (size > 0) {
+                expectedSizes.put(slice, size);
+            }
+        }
+        assertEquals(expectedSizes, actualMap.getSliceSizes());
+
+        return expectedRewrites;
+    }
+
+    private static Set<String> entries(MutableSlicedMap map) {
+        Set<String> result = new HashSet<>();
+        map.forEach((slice, key, value) -> {
+            assertTrue("Duplicate entry " + slice + " " + key, result.add(slice + " " + key + " " + value));
+            return null;
+        });
+        return result;
+    }
+
+    private static WritableSlice<String, Integer> slice(String name, RewritePolicy rewritePolicy, boolean isCollective) {
+        BasicWritableSlice<String, Integer> slice = new BasicWritableSlice<>(rewritePolicy, isCollective);
+        slice.setDebugName(name);
+        return slice;
+    }
+}
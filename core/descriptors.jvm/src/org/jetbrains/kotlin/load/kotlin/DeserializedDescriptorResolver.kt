@@ -49,24 +49,24 @@ class DeserializedDescriptorResolver {
     internal fun readClassData(kotlinClass: KotlinJvmBinaryClass): ClassData? {
         val data = readData(kotlinClass, KOTLIN_CLASS) ?: return null
         val strings = kotlinClass.classHeader.strings ?: return null
-        val (nameResolver, classProto) = parseProto(kotlinClass) {
-            JvmProtoBufUtil.readClassDataFrom(data, strings)
+        val (nameResolver, classProto, memberProtos) = parseProto(kotlinClass) {
+            JvmProtoBufUtil.readClassDataWithMemberIndexFrom(data, strings)
         } ?: return null
         val source = KotlinJvmBinarySourceElement(kotlinClass, kotlinClass.incompatibility, kotlinClass.isPreReleaseInvisible)
-        return ClassData(nameResolver, classProto, kotlinClass.classHeader.metadataVersion, source)
+        return ClassData(nameResolver, classProto, kotlinClass.classHeader.metadataVersion, source, memberProtos)
     }
 
     fun createKotlinPackagePartScope(descriptor: PackageFragmentDescriptor, kotlinClass: KotlinJvmBinaryClass): MemberScope? {
         val data = readData(kotlinClass, KOTLIN_FILE_FACADE_OR_MULTIFILE_CLASS_PART) ?: return null
         val strings = kotlinClass.classHeader.strings ?: return null
-        val (nameResolver, packageProto) = parseProto(kotlinClass) {
-            JvmProtoBufUtil.readPackageDataFrom(data, strings)
+        val (nameResolver, packageProto, memberProtos) = parseProto(kotlinClass) {
+            JvmProtoBufUtil.readPackageDataWithMemberIndexFrom(data, strings)
         } ?: return null
         val source = JvmPackagePartSource(
             kotlinClass, packageProto, nameResolver, kotlinClass.incompatibility, kotlinClass.isPreReleaseInvisible
         )
         return DeserializedPackageMemberScope(
-            descriptor, packageProto, nameResolver, kotlinClass.classHeader.metadataVersion, source, components
+            descriptor, packageProto, nameResolver, kotlinClass.classHeader.metadataVersion, source, components, memberProtos
         ) {
             // All classes are included into Java scope
             emptyList()
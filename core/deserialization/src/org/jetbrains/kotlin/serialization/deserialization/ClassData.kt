@@ -8,11 +8,14 @@ package org.jetbrains.kotlin.serialization.deserialization
 import org.jetbrains.kotlin.descriptors.SourceElement
 import org.jetbrains.kotlin.metadata.ProtoBuf
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
+import org.jetbrains.kotlin.metadata.deserialization.MemberProtoIndex
 import org.jetbrains.kotlin.metadata.deserialization.NameResolver
 
 data class ClassData(
     val nameResolver: NameResolver,
     val classProto: ProtoBuf.Class,
     val metadataVersion: BinaryVersion,
-    val sourceElement: SourceElement
+    val sourceElement: SourceElement,
+    // If not null, functions, properties and type aliases of the class are only stored here and are missing from [classProto]
+    val memberProtos: MemberProtoIndex? = null
 )
@@ -34,7 +34,8 @@ class DeserializedClassDescriptor(
     val classProto: ProtoBuf.Class,
     nameResolver: NameResolver,
     val metadataVersion: BinaryVersion,
-    private val sourceElement: SourceElement
+    private val sourceElement: SourceElement,
+    memberProtos: MemberProtoIndex? = null
 ) : AbstractClassDescriptor(
     outerContext.storageManager,
     nameResolver.getClassId(classProto.fqName).shortClassName
@@ -52,7 +53,9 @@ class DeserializedClassDescriptor(
 
     private val staticScope = if (kind == ClassKind.ENUM_CLASS) StaticScopeForKotlinEnum(c.storageManager, this) else MemberScope.Empty
     private val typeConstructor = DeserializedClassTypeConstructor()
-    private val memberScope = DeserializedClassMemberScope()
+    private val memberScope = DeserializedClassMemberScope(
+        memberProtos ?: MemberProtoIndex.create(classProto.functionList, classProto.propertyList, classProto.typeAliasList)
+    )
     private val enumEntries = if (kind == ClassKind.ENUM_CLASS) EnumEntryClassDescriptors() else null
 
     private val containingDeclaration = outerContext.containingDeclaration
@@ -200,8 +203,8 @@ class DeserializedClassDescriptor(
             get() = SupertypeLoopChecker.EMPTY
     }
 
-    private inner class DeserializedClassMemberScope : DeserializedMemberScope(
-        c, classProto.functionList, classProto.propertyList, classProto.typeAliasList,
+    private inner class DeserializedClassMemberScope(memberProtos: MemberProtoIndex) : DeserializedMemberScope(
+        c, memberProtos,
         classProto.nestedClassNameList.map(c.nameResolver::getName).let { { it } } // workaround KT-13454
     ) {
         private val classDescriptor: DeserializedClassDescriptor get() = this@DeserializedClassDescriptor
@@ -336,8 +339,9 @@ class DeserializedClassDescriptor(
                 }
             }
 
-            return classProto.functionList.mapTo(result) { c.nameResolver.getName(it.name) } +
-                    classProto.propertyList.mapTo(result) { c.nameResolver.getName(it.name) }
+            result.addAll(memberScope.declaredFunctionNames)
+            result.addAll(memberScope.declaredVariableNames)
+            return result
         }
 
         fun all(): Collection<ClassDescriptor> =
@@ -19,9 +19,9 @@ package org.jetbrains.kotlin.serialization.deserialization.descriptors
 import org.jetbrains.kotlin.descriptors.*
 import org.jetbrains.kotlin.incremental.components.LookupLocation
 import org.jetbrains.kotlin.metadata.ProtoBuf
+import org.jetbrains.kotlin.metadata.deserialization.MemberProtoIndex
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
-import org.jetbrains.kotlin.protobuf.AbstractMessageLite
 import org.jetbrains.kotlin.protobuf.MessageLite
 import org.jetbrains.kotlin.protobuf.Parser
 import org.jetbrains.kotlin.resolve.MemberComparator
@@ -33,34 +33,33 @@ import org.jetbrains.kotlin.storage.getValue
 import org.jetbrains.kotlin.utils.Printer
 import org.jetbrains.kotlin.utils.addIfNotNull
 import org.jetbrains.kotlin.utils.compact
-import java.io.ByteArrayInputStream
-import java.io.ByteArrayOutputStream
 import java.util.*
 
 abstract class DeserializedMemberScope protected constructor(
     protected val c: DeserializationContext,
-    functionList: Collection<ProtoBuf.Function>,
-    propertyList: Collection<ProtoBuf.Property>,
-    typeAliasList: Collection<ProtoBuf.TypeAlias>,
+    private val memberProtos: MemberProtoIndex,
     classNames: () -> Collection<Name>
 ) : MemberScopeImpl() {
 
-    private val functionProtosBytes = functionList.groupByName { it.name }.packToByteArray()
+    private val functionProtos = memberProtos.functions.groupByName()
 
-    private val propertyProtosBytes = propertyList.groupByName { it.name }.packToByteArray()
+    private val propertyProtos = memberProtos.properties.groupByName()
 
-    private val typeAliasBytes =
+    private val typeAliasProtos =
         if (c.components.configuration.typeAliasesAllowed)
-            typeAliasList.groupByName { it.name }.packToByteArray()
+            memberProtos.typeAliases.groupByName()
         else
             emptyMap()
 
-    private fun Map<Name, Collection<AbstractMessageLite>>.packToByteArray(): Map<Name, ByteArray> =
-        mapValues { entry ->
-            val byteArrayOutputStream = ByteArrayOutputStream()
-            entry.value.map { proto -> proto.writeDelimitedTo(byteArrayOutputStream) }
-            byteArrayOutputStream.toByteArray()
+    // Different name indices may denote the same name if the string table is not deduplicated
+    private fun Map<Int, IntArray>.groupByName(): Map<Name, IntArray> {
+        val result = LinkedHashMap<Name, IntArray>(size)
+        for ((nameIndex, ranges) in this) {
+            val name = c.nameResolver.getName(nameIndex)
+            result[name] = result[name]?.plus(ranges) ?: ranges
         }
+        return result
+    }
 
     private val functions =
         c.storageManager.createMemoizedFunction<Name, Collection<SimpleFunctionDescriptor>> { computeFunctions(it) }
@@ -70,14 +69,18 @@ abstract class DeserializedMemberScope protected constructor(
         c.storageManager.createMemoizedFunctionWithNullableValues<Name, TypeAliasDescriptor> { createTypeAlias(it) }
 
     private val functionNamesLazy by c.storageManager.createLazyValue {
-        functionProtosBytes.keys + getNonDeclaredFunctionNames()
+        functionProtos.keys + getNonDeclaredFunctionNames()
     }
 
     private val variableNamesLazy by c.storageManager.createLazyValue {
-        propertyProtosBytes.keys + getNonDeclaredVariableNames()
+        propertyProtos.keys + getNonDeclaredVariableNames()
     }
 
-    private val typeAliasNames: Set<Name> get() = typeAliasBytes.keys
+    private val typeAliasNames: Set<Name> get() = typeAliasProtos.keys
+
+    internal val declaredFunctionNames: Set<Name> get() = functionProtos.keys
+
+    internal val declaredVariableNames: Set<Name> get() = propertyProtos.keys
 
     internal val classNames by c.storageManager.createLazyValue { classNames().toSet() }
 
@@ -89,14 +92,10 @@ abstract class DeserializedMemberScope protected constructor(
         return name !in functionNamesLazy && name !in variableNamesLazy && name !in classNames && name !in typeAliasNames
     }
 
-    private inline fun <M : MessageLite> Collection<M>.groupByName(
-        getNameIndex: (M) -> Int
-    ) = groupBy { c.nameResolver.getName(getNameIndex(it)) }
-
     private fun computeFunctions(name: Name) =
         computeDescriptors(
             name,
-            functionProtosBytes,
+            functionProtos,
             ProtoBuf.Function.PARSER,
             { c.memberDeserializer.loadFunction(it) },
             { computeNonDeclaredFunctions(name, it) }
@@ -104,18 +103,13 @@ abstract class DeserializedMemberScope protected constructor(
 
     private inline fun <M : MessageLite, D : DeclarationDescriptor> computeDescriptors(
         name: Name,
-        bytesByName: Map<Name, ByteArray>,
+        protosByName: Map<Name, IntArray>,
         parser: Parser<M>,
         factory: (M) -> D,
         computeNonDeclared: (MutableCollection<D>) -> Unit
     ): Collection<D> =
         computeDescriptors(
-            bytesByName[name]?.let {
-                val inputStream = ByteArrayInputStream(it)
-                generateSequence {
-                    parser.parseDelimitedFrom(inputStream, c.components.extensionRegistryLite)
-                }.toList()
-            } ?: emptyList(),
+            protosByName[name]?.let { memberProtos.parse(it, parser, c.components.extensionRegistryLite) } ?: emptyList(),
             factory,
             computeNonDeclared
         )
@@ -142,7 +136,7 @@ abstract class DeserializedMemberScope protected constructor(
     private fun computeProperties(name: Name) =
         computeDescriptors(
             name,
-            propertyProtosBytes,
+            propertyProtos,
             ProtoBuf.Property.PARSER,
             { c.memberDeserializer.loadProperty(it) },
             { computeNonDeclaredProperties(name, it) }
@@ -152,11 +146,9 @@ abstract class DeserializedMemberScope protected constructor(
     }
 
     private fun createTypeAlias(name: Name): TypeAliasDescriptor? {
-        val byteArray = typeAliasBytes[name] ?: return null
+        val ranges = typeAliasProtos[name] ?: return null
         val proto =
-            ProtoBuf.TypeAlias.parseDelimitedFrom(
-                ByteArrayInputStream(byteArray), c.components.extensionRegistryLite
-            ) ?: return null
+            memberProtos.parse(ranges, ProtoBuf.TypeAlias.PARSER, c.components.extensionRegistryLite).firstOrNull() ?: return null
         return c.memberDeserializer.loadTypeAlias(proto)
     }
 
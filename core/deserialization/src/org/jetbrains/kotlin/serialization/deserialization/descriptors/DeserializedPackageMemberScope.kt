@@ -24,6 +24,7 @@ import org.jetbrains.kotlin.incremental.components.NoLookupLocation
 import org.jetbrains.kotlin.incremental.record
 import org.jetbrains.kotlin.metadata.ProtoBuf
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
+import org.jetbrains.kotlin.metadata.deserialization.MemberProtoIndex
 import org.jetbrains.kotlin.metadata.deserialization.NameResolver
 import org.jetbrains.kotlin.metadata.deserialization.TypeTable
 import org.jetbrains.kotlin.metadata.deserialization.VersionRequirementTable
@@ -39,14 +40,28 @@ open class DeserializedPackageMemberScope(
     metadataVersion: BinaryVersion,
     containerSource: DeserializedContainerSource?,
     components: DeserializationComponents,
+    memberProtos: MemberProtoIndex,
     classNames: () -> Collection<Name>
 ) : DeserializedMemberScope(
     components.createContext(
         packageDescriptor, nameResolver, TypeTable(proto.typeTable),
         VersionRequirementTable.create(proto.versionRequirementTable), metadataVersion, containerSource
     ),
-    proto.functionList, proto.propertyList, proto.typeAliasList, classNames
+    memberProtos, classNames
 ) {
+    constructor(
+        packageDescriptor: PackageFragmentDescriptor,
+        proto: ProtoBuf.Package,
+        nameResolver: NameResolver,
+        metadataVersion: BinaryVersion,
+        containerSource: DeserializedContainerSource?,
+        components: DeserializationComponents,
+        classNames: () -> Collection<Name>
+    ) : this(
+        packageDescriptor, proto, nameResolver, metadataVersion, containerSource, components,
+        MemberProtoIndex.create(proto.functionList, proto.propertyList, proto.typeAliasList), classNames
+    )
+
     private val packageFqName = packageDescriptor.fqName
 
     override fun getContributedDescriptors(kindFilter: DescriptorKindFilter, nameFilter: (Name) -> Boolean) =
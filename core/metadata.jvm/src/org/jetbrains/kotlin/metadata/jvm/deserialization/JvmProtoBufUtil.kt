@@ -42,6 +42,44 @@ object JvmProtoBufUtil {
         return Pair(input.readNameResolver(strings), ProtoBuf.Package.parseFrom(input, EXTENSION_REGISTRY))
     }
 
+    /**
+     * Reads the class like [readClassDataFrom], but only indexes its functions, properties and type aliases, so that they can be
+     * parsed later from the returned [MemberProtoIndex]. The returned class contains no functions, properties and type aliases.
+     */
+    @JvmStatic
+    fun readClassDataWithMemberIndexFrom(
+        data: Array<String>,
+        strings: Array<String>
+    ): Triple<JvmNameResolver, ProtoBuf.Class, MemberProtoIndex> {
+        val bytes = BitEncoding.decodeBytes(data)
+        val input = ByteArrayInputStream(bytes)
+        val nameResolver = input.readNameResolver(strings)
+        val (classProto, memberProtos) = MemberProtoIndex.split(
+            bytes, bytes.size - input.available(), ProtoBuf.Class.PARSER, EXTENSION_REGISTRY,
+            ProtoBuf.Class.FUNCTION_FIELD_NUMBER, ProtoBuf.Class.PROPERTY_FIELD_NUMBER, ProtoBuf.Class.TYPE_ALIAS_FIELD_NUMBER
+        )
+        return Triple(nameResolver, classProto, memberProtos)
+    }
+
+    /**
+     * Reads the package like [readPackageDataFrom], but only indexes its functions, properties and type aliases, so that they can be
+     * parsed later from the returned [MemberProtoIndex]. The returned package contains no functions, properties and type aliases.
+     */
+    @JvmStatic
+    fun readPackageDataWithMemberIndexFrom(
+        data: Array<String>,
+        strings: Array<String>
+    ): Triple<JvmNameResolver, ProtoBuf.Package, MemberProtoIndex> {
+        val bytes = BitEncoding.decodeBytes(data)
+        val input = ByteArrayInputStream(bytes)
+        val nameResolver = input.readNameResolver(strings)
+        val (packageProto, memberProtos) = MemberProtoIndex.split(
+            bytes, bytes.size - input.available(), ProtoBuf.Package.PARSER, EXTENSION_REGISTRY,
+            ProtoBuf.Package.FUNCTION_FIELD_NUMBER, ProtoBuf.Package.PROPERTY_FIELD_NUMBER, ProtoBuf.Package.TYPE_ALIAS_FIELD_NUMBER
+        )
+        return Triple(nameResolver, packageProto, memberProtos)
+    }
+
     @JvmStatic
     fun readFunctionDataFrom(data: Array<String>, strings: Array<String>): Pair<JvmNameResolver, ProtoBuf.Function> {
         val input = ByteArrayInputStream(BitEncoding.decodeBytes(data))
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.metadata.deserialization
+
+import org.jetbrains.kotlin.metadata.ProtoBuf
+import org.jetbrains.kotlin.protobuf.*
+import java.io.ByteArrayOutputStream
+
+/**
+ * Serialized functions, properties and type aliases of a class or a package, grouped by the index of their name in the string table.
+ * Members with the given name are only parsed when they are requested (see DeserializedMemberScope).
+ *
+ * Members of serialized metadata can be indexed without parsing them (see [split]), so that members of large library classes
+ * which are never referenced are never parsed.
+ */
+class MemberProtoIndex private constructor(
+    private val bytes: ByteArray,
+    // Offsets and lengths of the serialized members with each name in [bytes], in the order of serialization
+    val functions: Map<Int, IntArray>,
+    val properties: Map<Int, IntArray>,
+    val typeAliases: Map<Int, IntArray>
+) {
+    fun <M : MessageLite> parse(ranges: IntArray, parser: Parser<M>, extensionRegistry: ExtensionRegistryLite): List<M> =
+        (0 until ranges.size / 2).map { i ->
+            parser.parseFrom(bytes, ranges[2 * i], ranges[2 * i + 1], extensionRegistry)
+        }
+
+    private class Ranges {
+        private var array = IntArray(2)
+        private var size = 0
+
+        fun add(offset: Int, length: Int) {
+            if (size == array.size) {
+                array = array.copyOf(size * 2)
+            }
+            array[size++] = offset
+            array[size++] = length
+        }
+
+        fun toIntArray(): IntArray = array.copyOf(size)
+    }
+
+    companion object {
+        private const val TAG_TYPE_BITS = 3
+        private const val TAG_TYPE_MASK = (1 shl TAG_TYPE_BITS) - 1
+
+        // The same for ProtoBuf.Function, ProtoBuf.Property and ProtoBuf.TypeAlias
+        private const val MEMBER_NAME_FIELD_NUMBER = 2
+
+        fun create(
+            functions: Collection<ProtoBuf.Function>,
+            properties: Collection<ProtoBuf.Property>,
+            typeAliases: Collection<ProtoBuf.TypeAlias>
+        ): MemberProtoIndex {
+            val output = ByteArrayOutputStream()
+
+            fun <M : MessageLite> Collection<M>.writeTo(getName: (M) -> Int): Map<Int, IntArray> {
+                val rangesByName = LinkedHashMap<Int, Ranges>()
+                for (proto in this) {
+                    val offset = output.size()
+                    proto.writeTo(output)
+                    rangesByName.getOrPut(getName(proto), ::Ranges).add(offset, output.size() - offset)
+                }
+                return rangesByName.mapValues { it.value.toIntArray() }
+            }
+
+            val functionRanges = functions.writeTo { it.name }
+            val propertyRanges = properties.writeTo { it.name }
+            val typeAliasRanges = typeAliases.writeTo { it.name }
+            return MemberProtoIndex(output.toByteArray(), functionRanges, propertyRanges, typeAliasRanges)
+        }
+
+        /**
+         * Parses a message serialized in [bytes] after [offset], except for the members in the fields [functionField], [propertyField]
+         * and [typeAliasField], which are only indexed. Returns the message without these members, and the index of the members.
+         */
+        fun <M : MessageLite> split(
+            bytes: ByteArray,
+            offset: Int,
+            parser: Parser<M>,
+            extensionRegistry: ExtensionRegistryLite,
+            functionField: Int,
+            propertyField: Int,
+            typeAliasField: Int
+        ): Pair<M, MemberProtoIndex> {
+            val functions = LinkedHashMap<Int, Ranges>()
+            val properties = LinkedHashMap<Int, Ranges>()
+            val typeAliases = LinkedHashMap<Int, Ranges>()
+            val rest = ByteArrayOutputStream(bytes.size - offset)
+
+            val input = CodedInputStream.newInstance(bytes, offset, bytes.size - offset)
+            while (true) {
+                val start = offset + input.totalBytesRead
+                val tag = input.readTag()
+                if (tag == 0) break
+
+                val members = when (tag ushr TAG_TYPE_BITS) {
+                    functionField -> functions
+                    propertyField -> properties
+                    typeAliasField -> typeAliases
+                    else -> null
+                }
+                if (members != null && (tag and TAG_TYPE_MASK) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                    val length = input.readRawVarint32()
+                    val memberOffset = offset + input.totalBytesRead
+                    members.getOrPut(readMemberName(input, length), ::Ranges).add(memberOffset, length)
+                } else {
+                    input.skipField(tag)
+                    rest.write(bytes, start, offset + input.totalBytesRead - start)
+                }
+            }
+
+            val message = parser.parseFrom(rest.toByteArray(), extensionRegistry)
+            return message to MemberProtoIndex(
+                bytes, functions.mapValues { it.value.toIntArray() }, properties.mapValues { it.value.toIntArray() },
+                typeAliases.mapValues { it.value.toIntArray() }
+            )
+        }
+
+        // Reads the name of the member of the given length, leaving the input at the end of the member
+        private fun readMemberName(input: CodedInputStream, length: Int): Int {
+            val limit = input.pushLimit(length)
+            var name = 0
+            while (!input.isAtEnd) {
+                val tag = input.readTag()
+                if (tag ushr TAG_TYPE_BITS == MEMBER_NAME_FIELD_NUMBER && (tag and TAG_TYPE_MASK) == WireFormat.WIRETYPE_VARINT) {
+                    name = input.readInt32()
+                    break
+                }
+                input.skipField(tag)
+            }
+            input.skipRawBytes(input.bytesUntilLimit)
+            input.popLimit(limit)
+            return name
+        }
+    }
+}
@@ -32,6 +32,14 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Values which are already computed (including stored exceptions) are read without taking the lock: lazy values keep them in a
+ * volatile field and memoized functions in a concurrent map, and both check it before locking.
+ *
+ * All computations of one storage manager are performed under a single lock. Computations routinely call other lazy values and
+ * memoized functions, so locking per key or per stripe would allow two threads to acquire the same locks in a different order
+ * and deadlock; it would also make recursion detection depend on scheduling.
+ */
 public class LockBasedStorageManager implements StorageManager {
     private static final String PACKAGE_NAME = StringsKt.substringBeforeLast(LockBasedStorageManager.class.getCanonicalName(), ".", "");
 
@@ -318,6 +326,7 @@ public class LockBasedStorageManager implements StorageManager {
 
         @Override
         public T invoke() {
+            // Lock-free fast path for computed values
             Object _value = value;
             if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
@@ -423,6 +432,7 @@ public class LockBasedStorageManager implements StorageManager {
         @Override
         @Nullable
         public V invoke(K input) {
+            // Lock-free fast path for computed values
             Object value = cache.get(input);
             if (value != null && value != NotValue.COMPUTING) return WrappedValues.unescapeExceptionOrNull(value);
 